@@ -0,0 +1,98 @@
+package de.tuebingen.sfs.cldfjava.benchmarks;
+
+import de.tuebingen.sfs.cldfjava.data.CLDFForm;
+import de.tuebingen.sfs.cldfjava.data.CLDFWordlistDatabase;
+import de.tuebingen.sfs.cldfjava.data.FormDistances;
+import de.tuebingen.sfs.cldfjava.data.FormSearch;
+import de.tuebingen.sfs.cldfjava.io.CLDFImport;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The indexes and queries of {@link CLDFWordlistDatabase}. Index builds start from a database without cached
+ * indexes; lookups run against built indexes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatabaseBenchmark {
+    private CLDFWordlistDatabase database;
+    private List<String> langIDs;
+    private List<String> paramIDs;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void load(DatasetState dataset) {
+        database = new CLDFImport().load(dataset.directory.toString());
+        langIDs = database.getLangIDs();
+        paramIDs = List.copyOf(database.getConceptMap().keySet());
+    }
+
+    //drops the cached indexes, so that the next query builds them again
+    private void invalidate() {
+        database.replaceForms(database.getFormsMap(), database.getOriginalFormIds());
+    }
+
+    @Benchmark
+    public void cacheFormsByLanguage() {
+        invalidate();
+        database.cacheFormsByLanguage();
+    }
+
+    @Benchmark
+    public Map<String, List<CLDFForm>> buildFormsByLanguageByParamID() {
+        invalidate();
+        return database.getFormsByLanguageByParamID(paramIDs.get(0));
+    }
+
+    @Benchmark
+    public Map<String, List<CLDFForm>> getFormsByLanguageByParamID() {
+        next = (next + 1) % paramIDs.size();
+        return database.getFormsByLanguageByParamID(paramIDs.get(next));
+    }
+
+    @Benchmark
+    public List<CLDFForm> getFormsByLanguage() {
+        next = (next + 1) % langIDs.size();
+        return database.getFormsByLanguage(langIDs.get(next));
+    }
+
+    @Benchmark
+    public Map<String, Set<Integer>> getCogsetToCognates() {
+        return database.getCogsetToCognates();
+    }
+
+    @Benchmark
+    public List<Integer> listFormIdsForLangId() {
+        next = (next + 1) % langIDs.size();
+        return database.listFormIdsForLangId(langIDs.get(next));
+    }
+
+    @Benchmark
+    public void listFormIdsForAllLanguages(Blackhole blackhole) {
+        for (String langID : langIDs) {
+            blackhole.consume(database.listFormIdsForLangId(langID));
+        }
+    }
+
+    //the distance matrices of all concepts, handed out as they finish
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void formDistances(Blackhole blackhole) {
+        new FormDistances(database, FormSearch.Source.FORM).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void segmentDistances(Blackhole blackhole) {
+        new FormDistances(database, FormSearch.Source.SEGMENTS).forEach(blackhole::consume);
+    }
+}
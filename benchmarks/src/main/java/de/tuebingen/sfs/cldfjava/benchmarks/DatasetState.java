@@ -0,0 +1,64 @@
+package de.tuebingen.sfs.cldfjava.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.tuebingen.sfs.cldfjava.io.CLDFImport;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A synthetic dataset generated into a temporary directory for the duration of a benchmark trial.
+ */
+@State(Scope.Benchmark)
+public class DatasetState {
+    @Param({"100"})
+    public int languages;
+
+    @Param({"200"})
+    public int concepts;
+
+    @Param({"50000"})
+    public int forms;
+
+    @Param({"1000"})
+    public int cognateSets;
+
+    public Path directory;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        directory = Files.createTempDirectory("cldf-benchmark");
+        new SyntheticDataset(languages, concepts, forms, cognateSets, 42).write(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    public String file(String name) {
+        return directory.resolve(name).toString();
+    }
+
+    /**
+     * @return the column property map of a table, as used by the CLDFImport table readers
+     */
+    public Map<String, String> propertyColumns(String url) throws IOException {
+        JsonNode tables = new ObjectMapper().readTree(directory.resolve("Wordlist-metadata.json").toFile()).get("tables");
+        for (int i = 0; i < tables.size(); i++) {
+            if (tables.get(i).get("url").asText().equals(url)) {
+                return CLDFImport.createColumnPropertyMap(i, tables);
+            }
+        }
+        throw new IllegalArgumentException("no table " + url);
+    }
+}
@@ -0,0 +1,76 @@
+package de.tuebingen.sfs.cldfjava.benchmarks;
+
+import de.tuebingen.sfs.cldfjava.data.CLDFForm;
+import de.tuebingen.sfs.cldfjava.data.CLDFWordlistDatabase;
+import de.tuebingen.sfs.cldfjava.data.FormSearch;
+import de.tuebingen.sfs.cldfjava.io.CLDFImport;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Top-10 queries of {@link FormSearch} on a synthetic dataset of 1000 languages by 1000 concepts with one million
+ * forms. The queries are forms of the dataset, so every query has at least one exact match. The nearest-neighbour
+ * queries widen their threshold up to the same maximal distance as the searches. Sampled, so that the results show
+ * the median and the tail of the query latency:
+ * <pre>java -jar target/benchmarks.jar FormSearchBenchmark</pre>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FormSearchBenchmark {
+    @Param({"FORM", "SEGMENTS"})
+    public FormSearch.Source source;
+
+    @Param({"0.2", "0.34", "0.5"})
+    public double maxDistance;
+
+    private FormSearch search;
+    private int[][] queries;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void build() throws IOException {
+        Path directory = Files.createTempDirectory("cldf-benchmark");
+        CLDFWordlistDatabase database;
+        try {
+            new SyntheticDataset(1000, 1000, 1_000_000, 5000, 42).write(directory);
+            database = new CLDFImport().load(directory.toString());
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+        search = database.getFormSearch(source);
+        List<CLDFForm> forms = List.copyOf(database.getFormsMap().values());
+        SplittableRandom random = new SplittableRandom(42);
+        queries = new int[1000][];
+        for (int i = 0; i < queries.length; i++) {
+            CLDFForm form = forms.get(random.nextInt(forms.size()));
+            queries[i] = search.encode(source == FormSearch.Source.FORM ? form.getForm() : String.join(" ", form.getSegments()));
+        }
+    }
+
+    @Benchmark
+    public List<FormSearch.Match> search() {
+        next = (next + 1) % queries.length;
+        return search.search(queries[next], maxDistance, 10, null);
+    }
+
+    @Benchmark
+    public List<FormSearch.Match> nearest() {
+        next = (next + 1) % queries.length;
+        return search.nearest(queries[next], 10, maxDistance, null);
+    }
+}
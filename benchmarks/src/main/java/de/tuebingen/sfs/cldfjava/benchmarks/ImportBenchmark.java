@@ -0,0 +1,89 @@
+package de.tuebingen.sfs.cldfjava.benchmarks;
+
+import de.tuebingen.sfs.cldfjava.data.CLDFCognateJudgement;
+import de.tuebingen.sfs.cldfjava.data.CLDFCognateSet;
+import de.tuebingen.sfs.cldfjava.data.CLDFForm;
+import de.tuebingen.sfs.cldfjava.data.CLDFLanguage;
+import de.tuebingen.sfs.cldfjava.data.CLDFParameter;
+import de.tuebingen.sfs.cldfjava.data.CLDFWordlistDatabase;
+import de.tuebingen.sfs.cldfjava.io.CLDFImport;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The table readers of {@link CLDFImport}, each on its own, and a full load, from the CSV files and from a snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+    private CLDFImport importer;
+    private Map<String, String> formColumns;
+    private Map<String, String> languageColumns;
+    private Map<String, String> parameterColumns;
+    private Map<String, String> cognateColumns;
+    private Map<String, String> cognateSetColumns;
+    private File snapshotDirectory;
+
+    @Setup(Level.Trial)
+    public void prepare(DatasetState dataset) throws IOException {
+        importer = new CLDFImport();
+        formColumns = dataset.propertyColumns("forms.csv");
+        languageColumns = dataset.propertyColumns("languages.csv");
+        parameterColumns = dataset.propertyColumns("parameters.csv");
+        cognateColumns = dataset.propertyColumns("cognates.csv");
+        cognateSetColumns = dataset.propertyColumns("cognatesets.csv");
+        //the cognate reader translates form IDs with the mapping built by the form reader
+        importer.readFormTable(dataset.file("forms.csv"), formColumns);
+        //the first load writes the snapshot, inside the dataset directory so that it is deleted with it
+        snapshotDirectory = Files.createDirectories(dataset.directory.resolve("snapshots")).toFile();
+        CLDFImport snapshotImport = new CLDFImport();
+        snapshotImport.setSnapshotDirectory(snapshotDirectory);
+        snapshotImport.load(dataset.directory.toString());
+    }
+
+    @Benchmark
+    public Map<Integer, CLDFForm> readFormCsv(DatasetState dataset) {
+        return importer.readFormTable(dataset.file("forms.csv"), formColumns);
+    }
+
+    @Benchmark
+    public Map<String, CLDFLanguage> readLanguageCsv(DatasetState dataset) {
+        return importer.readLanguageTable(dataset.file("languages.csv"), languageColumns);
+    }
+
+    @Benchmark
+    public Map<String, CLDFParameter> readParameterCsv(DatasetState dataset) {
+        return importer.readParameterTable(dataset.file("parameters.csv"), parameterColumns);
+    }
+
+    @Benchmark
+    public Map<Integer, CLDFCognateJudgement> readCognateCsv(DatasetState dataset) {
+        return importer.readCognateTable(dataset.file("cognates.csv"), cognateColumns);
+    }
+
+    @Benchmark
+    public Map<String, CLDFCognateSet> readCognateSetCsv(DatasetState dataset) {
+        return importer.readCognateSetTable(dataset.file("cognatesets.csv"), cognateSetColumns);
+    }
+
+    @Benchmark
+    public CLDFWordlistDatabase load(DatasetState dataset) {
+        return new CLDFImport().load(dataset.directory.toString());
+    }
+
+    @Benchmark
+    public CLDFWordlistDatabase loadFromSnapshot(DatasetState dataset) {
+        CLDFImport snapshotImport = new CLDFImport();
+        snapshotImport.setSnapshotDirectory(snapshotDirectory);
+        return snapshotImport.load(dataset.directory.toString());
+    }
+}
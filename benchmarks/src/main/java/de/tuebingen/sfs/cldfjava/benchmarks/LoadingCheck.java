@@ -0,0 +1,104 @@
+package de.tuebingen.sfs.cldfjava.benchmarks;
+
+import de.tuebingen.sfs.cldfjava.data.CLDFForm;
+import de.tuebingen.sfs.cldfjava.data.CLDFLanguage;
+import de.tuebingen.sfs.cldfjava.data.CLDFWordlistDatabase;
+import de.tuebingen.sfs.cldfjava.io.CLDFImport;
+import de.tuebingen.sfs.cldfjava.io.FormTableReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Checks that the sequential, streaming and memory-mapped readers load the same forms from a synthetic dataset
+ * whose CSV files start with a UTF-8 byte order mark and contain non-ASCII segments. The readers have to decode
+ * UTF-8 regardless of the platform charset, so the check is meant to be run under a non-UTF-8 default as well:
+ * <pre>java -Dfile.encoding=ANSI_X3.4-1968 -cp target/benchmarks.jar de.tuebingen.sfs.cldfjava.benchmarks.LoadingCheck</pre>
+ * Exits with status 1 if the readers disagree.
+ */
+public class LoadingCheck {
+    private static final String[] TABLES = {"forms.csv", "languages.csv", "parameters.csv", "cognates.csv", "cognatesets.csv"};
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("cldf-check");
+        try {
+            new SyntheticDataset(20, 50, 5000, 100, 7).write(directory);
+            for (String table : TABLES) {
+                Path file = directory.resolve(table);
+                byte[] content = Files.readAllBytes(file);
+                byte[] withMark = new byte[content.length + 3];
+                withMark[0] = (byte) 0xEF;
+                withMark[1] = (byte) 0xBB;
+                withMark[2] = (byte) 0xBF;
+                System.arraycopy(content, 0, withMark, 3, content.length);
+                Files.write(file, withMark);
+            }
+
+            CLDFWordlistDatabase sequential = new CLDFImport().load(directory.toString());
+            CLDFImport mappedImport = new CLDFImport();
+            mappedImport.setMemoryMapped(true);
+            CLDFWordlistDatabase mapped = mappedImport.load(directory.toString());
+            List<String> streamed = new ArrayList<>();
+            try (FormTableReader reader = new CLDFImport().openFormTable(directory.toString())) {
+                reader.forEachRemaining(form -> streamed.add(describe(form)));
+            }
+
+            List<String> failures = new ArrayList<>();
+            List<String> expected = describeForms(sequential);
+            if (expected.size() != 5000) {
+                failures.add("sequential: " + expected.size() + " of 5000 forms, " + sequential.getExceptions().size() + " row errors");
+            }
+            if (!expected.equals(describeForms(mapped))) {
+                failures.add("memory-mapped forms differ from sequential forms");
+            }
+            if (!expected.equals(streamed)) {
+                failures.add("streamed forms differ from sequential forms");
+            }
+            if (!describeLanguages(sequential).equals(describeLanguages(mapped)) || sequential.getLanguageMap().size() != 20) {
+                failures.add("languages differ or are missing");
+            }
+            if (expected.stream().noneMatch(form -> form.chars().anyMatch(c -> c > 127))) {
+                failures.add("no non-ASCII forms were read");
+            }
+            if (expected.stream().anyMatch(form -> form.indexOf('\uFFFD') >= 0 || form.indexOf('\uFEFF') >= 0)) {
+                failures.add("forms contain replacement characters or a byte order mark");
+            }
+
+            if (failures.isEmpty()) {
+                System.out.println("OK: " + expected.size() + " forms, same in all readers (file.encoding="
+                        + System.getProperty("file.encoding") + ")");
+            } else {
+                failures.forEach(System.out::println);
+                System.exit(1);
+            }
+        } finally {
+            for (String table : TABLES) {
+                Files.deleteIfExists(directory.resolve(table));
+            }
+            Files.deleteIfExists(directory.resolve("Wordlist-metadata.json"));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static List<String> describeForms(CLDFWordlistDatabase database) {
+        List<String> forms = new ArrayList<>();
+        for (CLDFForm form : new TreeMap<>(database.getFormsMap()).values()) {
+            forms.add(describe(form));
+        }
+        return forms;
+    }
+
+    private static String describe(CLDFForm form) {
+        return form + "\t" + form.getOrigValue() + "\t" + Arrays.toString(form.getSegments()) + "\t" + form.getComment();
+    }
+
+    private static Set<String> describeLanguages(CLDFWordlistDatabase database) {
+        Set<String> languages = new TreeSet<>();
+        for (CLDFLanguage language : database.getLanguageMap().values()) {
+            languages.add(language.getLangID() + "\t" + language.getName() + "\t" + language.getMacroarea());
+        }
+        return languages;
+    }
+}
@@ -0,0 +1,51 @@
+package de.tuebingen.sfs.cldfjava.benchmarks;
+
+import de.tuebingen.sfs.cldfjava.io.CSVParser;
+import de.tuebingen.sfs.cldfjava.io.IPAFormCanonization;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row tokenization and form canonization, measured per pass over all rows of the FormTable.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParsingBenchmark {
+    private String[] rows;
+    private String[] rawForms;
+
+    @Setup(Level.Trial)
+    public void readRows(DatasetState dataset) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(dataset.file("forms.csv")), StandardCharsets.UTF_8);
+        rows = lines.subList(1, lines.size()).toArray(new String[0]);
+        rawForms = new String[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            rawForms[i] = CSVParser.getColumns(rows[i]).get(4);
+        }
+    }
+
+    @Benchmark
+    public void getColumns(Blackhole blackhole) {
+        for (String row : rows) {
+            blackhole.consume(CSVParser.getColumns(row));
+        }
+    }
+
+    @Benchmark
+    public void canonizeForms(Blackhole blackhole) {
+        for (String rawForm : rawForms) {
+            blackhole.consume(IPAFormCanonization.process(rawForm));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package de.tuebingen.sfs.cldfjava.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a synthetic CLDF Wordlist dataset. The output only depends on the parameters and the seed,
+ * so benchmark runs on different machines and commits read the same data.
+ * Forms are built from IPA segments with diacritics and ASCII substitutes, so that form canonization has work to do,
+ * and some values contain quoted commas.
+ */
+public class SyntheticDataset {
+    private static final String[] SEGMENTS = {"p", "t", "k", "b", "d", "ɡ", "g", "m", "n", "ŋ", "s", "ʃ", "h", "l", "r",
+            "a", "e", "i", "o", "u", "ɛ", "ɔ", "ə", "aː", "iː", "tʰ", "kʰ", "ts", "ã", "ẽ", "ʔ", ":", "'"};
+    private static final String[] MACROAREAS = {"Africa", "Australia", "Eurasia", "North America", "Papunesia", "South America"};
+
+    private final int languages;
+    private final int concepts;
+    private final int forms;
+    private final int cognateSets;
+    private final long seed;
+
+    /**
+     * @param languages   number of languages
+     * @param concepts    number of concepts (parameters)
+     * @param forms       number of forms, distributed randomly over languages and concepts
+     * @param cognateSets number of cognate sets, distributed evenly over the concepts
+     * @param seed        the random seed
+     */
+    public SyntheticDataset(int languages, int concepts, int forms, int cognateSets, long seed) {
+        this.languages = languages;
+        this.concepts = concepts;
+        this.forms = forms;
+        this.cognateSets = Math.max(cognateSets, concepts);
+        this.seed = seed;
+    }
+
+    /**
+     * Writes the metadata JSON and the CSV files into a directory, which is created if necessary.
+     */
+    public void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        SplittableRandom random = new SplittableRandom(seed);
+        writeMetadata(directory.resolve("Wordlist-metadata.json"));
+
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("languages.csv"), StandardCharsets.UTF_8)) {
+            out.write("ID,Name,Glottocode,ISO639P3code,Macroarea,Latitude,Longitude,Family\n");
+            for (int l = 0; l < languages; l++) {
+                out.write("lang" + l + ",Language " + l + ",glot" + (1000 + l) + "," + isoCode(l) + ","
+                        + MACROAREAS[random.nextInt(MACROAREAS.length)] + ","
+                        + String.format(Locale.ROOT, "%.4f,%.4f", random.nextDouble(-60, 70), random.nextDouble(-180, 180))
+                        + ",Family " + (l % 17) + "\n");
+            }
+        }
+
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("parameters.csv"), StandardCharsets.UTF_8)) {
+            out.write("ID,Name,Concepticon_ID,Concepticon_Gloss,Semantic_Field\n");
+            for (int c = 0; c < concepts; c++) {
+                out.write("concept" + c + ",concept " + c + "," + (c + 1) + ",CONCEPT" + c + ",field " + (c % 22) + "\n");
+            }
+        }
+
+        int setsPerConcept = cognateSets / concepts;
+        try (BufferedWriter formOut = Files.newBufferedWriter(directory.resolve("forms.csv"), StandardCharsets.UTF_8);
+             BufferedWriter cognateOut = Files.newBufferedWriter(directory.resolve("cognates.csv"), StandardCharsets.UTF_8)) {
+            formOut.write("ID,Language_ID,Parameter_ID,Value,Form,Segments,Comment,Source\n");
+            cognateOut.write("ID,Form_ID,Cognateset_ID\n");
+            StringBuilder form = new StringBuilder();
+            StringBuilder segments = new StringBuilder();
+            for (int f = 0; f < forms; f++) {
+                int language = random.nextInt(languages);
+                int concept = random.nextInt(concepts);
+                form.setLength(0);
+                segments.setLength(0);
+                int length = 2 + random.nextInt(7);
+                for (int s = 0; s < length; s++) {
+                    String segment = SEGMENTS[random.nextInt(SEGMENTS.length)];
+                    form.append(segment);
+                    segments.append(s == 0 ? "" : " ").append(segment);
+                }
+                String value = random.nextInt(10) == 0 ? "\"" + form + ", " + form + "\"" : form.toString();
+                String comment = random.nextInt(20) == 0 ? "uncertain" : "";
+                //a few forms express two concepts
+                String parameter = random.nextInt(50) == 0 ? "concept" + concept + ";concept" + random.nextInt(concepts) : "concept" + concept;
+                formOut.write("form" + f + ",lang" + language + "," + parameter + "," + value + "," + form + "," + segments
+                        + "," + comment + ",src" + random.nextInt(100) + "\n");
+                int cognateSet = concept * setsPerConcept + random.nextInt(setsPerConcept);
+                cognateOut.write("cog" + f + ",form" + f + ",cogset" + cognateSet + "\n");
+            }
+        }
+
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("cognatesets.csv"), StandardCharsets.UTF_8)) {
+            out.write("ID,Description,Source\n");
+            for (int s = 0; s < concepts * setsPerConcept; s++) {
+                out.write("cogset" + s + ",cognate set " + s + ",src" + (s % 100) + "\n");
+            }
+        }
+    }
+
+    private static String isoCode(int language) {
+        return "" + (char) ('a' + language / 676 % 26) + (char) ('a' + language / 26 % 26) + (char) ('a' + language % 26);
+    }
+
+    private static void writeMetadata(Path file) throws IOException {
+        String terms = "http://cldf.clld.org/v1.0/terms.rdf#";
+        String metadata = "{\n"
+                + " \"dc:conformsTo\": \"" + terms + "Wordlist\",\n"
+                + " \"tables\": [\n"
+                + table("forms.csv", "FormTable", terms, "ID:id", "Language_ID:languageReference", "Parameter_ID:parameterReference",
+                "Value:value", "Form:form", "Segments:segments", "Comment:comment", "Source:source") + ",\n"
+                + table("languages.csv", "LanguageTable", terms, "ID:id", "Name:name", "Glottocode:glottocode",
+                "ISO639P3code:iso639P3code", "Macroarea:macroarea", "Latitude:latitude", "Longitude:longitude", "Family") + ",\n"
+                + table("parameters.csv", "ParameterTable", terms, "ID:id", "Name:name", "Concepticon_ID:concepticonReference",
+                "Concepticon_Gloss", "Semantic_Field") + ",\n"
+                + table("cognates.csv", "CognateTable", terms, "ID:id", "Form_ID:formReference", "Cognateset_ID:cognatesetReference") + ",\n"
+                + table("cognatesets.csv", "CognatesetTable", terms, "ID:id", "Description:description", "Source:source") + "\n"
+                + " ]\n"
+                + "}\n";
+        Files.writeString(file, metadata, StandardCharsets.UTF_8);
+    }
+
+    //columns are given as "Name:property", or just "Name" for columns without a CLDF property
+    private static String table(String url, String type, String terms, String... columns) {
+        StringBuilder table = new StringBuilder("  {\"url\": \"" + url + "\", \"dc:conformsTo\": \"" + terms + type + "\",\n"
+                + "   \"tableSchema\": {\"columns\": [");
+        for (int i = 0; i < columns.length; i++) {
+            String[] column = columns[i].split(":");
+            table.append(i == 0 ? "\n" : ",\n").append("     {\"name\": \"").append(column[0]).append("\"");
+            if (column.length > 1) {
+                table.append(", \"propertyUrl\": \"").append(terms).append(column[1]).append("\"");
+            }
+            table.append("}");
+        }
+        return table.append("\n   ]}}").toString();
+    }
+
+    /**
+     * Usage: SyntheticDataset directory [languages concepts forms cognateSets [seed]]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: SyntheticDataset directory [languages concepts forms cognateSets [seed]]");
+            System.exit(1);
+        }
+        int languages = args.length > 4 ? Integer.parseInt(args[1]) : 100;
+        int concepts = args.length > 4 ? Integer.parseInt(args[2]) : 200;
+        int forms = args.length > 4 ? Integer.parseInt(args[3]) : 50000;
+        int cognateSets = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 42;
+        new SyntheticDataset(languages, concepts, forms, cognateSets, seed).write(Paths.get(args[0]));
+    }
+}
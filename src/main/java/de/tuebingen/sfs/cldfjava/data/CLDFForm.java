@@ -31,6 +31,13 @@ public class CLDFForm {
         orthography = "";
     }
 
+    /**
+     * Creates a form without initializing its fields, for views that read them from elsewhere.
+     */
+    CLDFForm(int id) {
+        this.id = id;
+    }
+
     public String[] getSegments() {
         return segments;
     }
@@ -104,6 +111,8 @@ public class CLDFForm {
     }
 
     public void addParamID(String paramID) {
+        //imported lists have a fixed size, so they are copied before they grow
+        this.paramIDs = new ArrayList<>(this.paramIDs);
         this.paramIDs.add(paramID);
     }
 
@@ -10,6 +10,7 @@ public class CLDFLanguage {
     String glottocode;
     String name;
     String family;
+    String macroarea;
     float latitude;
     float longitude;
     Map<String, String> properties; //to store additional info and remaining properties
@@ -20,6 +21,7 @@ public class CLDFLanguage {
         glottocode = "";
         name = "";
         family = "";
+        macroarea = "";
         latitude = Float.NaN;
         longitude = Float.NaN;
         properties = new HashMap<>();
@@ -73,6 +75,14 @@ public class CLDFLanguage {
         this.family = family;
     }
 
+    public String getMacroarea() {
+        return macroarea;
+    }
+
+    public void setMacroarea(String macroarea) {
+        this.macroarea = macroarea;
+    }
+
     public float getLatitude() {
         return latitude;
     }
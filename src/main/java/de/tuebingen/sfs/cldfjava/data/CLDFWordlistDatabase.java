@@ -1,7 +1,14 @@
 package de.tuebingen.sfs.cldfjava.data;
 
+import de.tuebingen.sfs.cldfjava.util.DenseIntMap;
+import de.tuebingen.sfs.cldfjava.util.NGrams;
+import de.tuebingen.sfs.cldfjava.util.SegmentAlphabet;
+
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 /**
  * Represents a CLDF database in an object-oriented fashion. Created using CLDFImport.
@@ -19,18 +26,35 @@ public class CLDFWordlistDatabase {
 	List<String> langIDs; // store langIDs as ordered list to facilitate indexing
 	Map<String, Map<String, List<CLDFForm>>> formsByLanguageByParamID;
 	Map<String, List<CLDFForm>> formsByLanguage;
+	ColumnarFormTable formTable; //the columnar backend of idToForm, if enabled
 
 	//TODO: is it really needed?
 	Map<Integer, CLDFCognateJudgement> cognateIDToCognate; //cognateID to cognate object
 	Map<String, CLDFCognateSet> cogsetIDToCogset; //only fill this if in separate table, store within CLDFForm if it's just cognate set IDs
 	List<String[]> exceptions;
+	Map<String, String> fileFingerprints; //fingerprints of the files the database was read from, by file name
+	//secondary indexes by column, built on first use and dropped when their table is replaced
+	final Map<String, SecondaryIndex<CLDFForm>> formIndexes = new ConcurrentHashMap<>();
+	final Map<String, SecondaryIndex<CLDFLanguage>> languageIndexes = new ConcurrentHashMap<>();
+	final Map<String, SecondaryIndex<CLDFParameter>> parameterIndexes = new ConcurrentHashMap<>();
+	//the derived indexes below are built once on first use, under the lock of the database, so that concurrent
+	//first calls share one index; the computeIfAbsent caches above and below build each entry once as well
+	volatile CognateIndex cognateIndex; //built on first use, dropped when the cognate table is replaced
+	volatile FormQuery formQuery; //the bitmap query engine, dropped when any table it reads is replaced
+	volatile LanguageConceptMatrix matrix; //built on first use, dropped when the forms, languages or parameters are replaced
+	volatile FormsByConcept formsByConcept; //derived from the matrix
+	volatile LanguageSpatialIndex spatialIndex; //built on first use, dropped when the languages are replaced
+	volatile SegmentAlphabet segmentAlphabet; //set by CLDFImport to the alphabet shared by its loads, else created on first use
+	volatile SegmentPool segmentPool; //built on first use, dropped when the forms are replaced
+	final Map<String, NGramIndex> ngramIndexes = new ConcurrentHashMap<>(); //by source and n, dropped with the forms
+	final Map<FormSearch.Source, FormSearch> formSearches = new ConcurrentHashMap<>(); //dropped with the forms
 
 	public CLDFWordlistDatabase() {
 		this.langIDToLang = new HashMap<>();
 		this.paramIDToParam = new HashMap<>();
-		this.idToForm = new HashMap<>();
-		this.cognateIDToCognate = new HashMap<>();
-		this.originalFormIds = new HashMap<>();
+		this.idToForm = new DenseIntMap<>();
+		this.cognateIDToCognate = new DenseIntMap<>();
+		this.originalFormIds = new DenseIntMap<>();
 		this.langIDs = new ArrayList<>();
 	}
 
@@ -53,10 +77,448 @@ public class CLDFWordlistDatabase {
         this.exceptions = exceptions;
     }
 
+    /**
+     * Creates an immutable snapshot of this database with all indexes built, which can be shared between threads
+     * without locking. Index building is parallelized over the forms. Later changes to this database do not affect
+     * the snapshot, but the row objects are shared and must no longer be modified.
+     *
+     * @return the frozen database
+     */
+    public FrozenWordlistDatabase freeze() {
+        return new FrozenWordlistDatabase(this);
+    }
+
+    /**
+     * @return the fingerprints of the metadata and table files the database was read from, by file name;
+     * used by CLDFImport to detect changed tables on reload
+     */
+    public Map<String, String> getFileFingerprints() {
+        return fileFingerprints;
+    }
+
+    public void setFileFingerprints(Map<String, String> fileFingerprints) {
+        this.fileFingerprints = fileFingerprints;
+    }
+
+    /**
+     * Replaces the form table, e.g. after the FormTable file was re-read, and drops all indexes derived from it.
+     * The columnar backend is dropped as well, since the new IDs may not be dense.
+     */
+    public void replaceForms(Map<Integer, CLDFForm> idToForm, Map<Integer, String> originalFormIds) {
+        this.idToForm = idToForm;
+        this.originalFormIds = originalFormIds;
+        this.formTable = null;
+        this.formsByLanguage = null;
+        this.formsByLanguageByParamID = null;
+        this.formIndexes.clear();
+        this.cognateIndex = null;
+        this.formQuery = null;
+        this.matrix = null;
+        this.formsByConcept = null;
+        this.segmentPool = null;
+        this.ngramIndexes.clear();
+        this.formSearches.clear();
+    }
+
+    public void replaceLanguages(Map<String, CLDFLanguage> langIDToLang) {
+        this.langIDToLang = langIDToLang;
+        this.langIDs = new ArrayList<>(langIDToLang.keySet());
+        this.languageIndexes.clear();
+        this.spatialIndex = null;
+        this.formQuery = null;
+        this.matrix = null;
+        this.formsByConcept = null;
+    }
+
+    public void replaceParameters(Map<String, CLDFParameter> paramIDToParam) {
+        this.paramIDToParam = paramIDToParam;
+        this.parameterIndexes.clear();
+        this.formQuery = null;
+        this.matrix = null;
+        this.formsByConcept = null;
+    }
+
+    public void replaceCognates(Map<Integer, CLDFCognateJudgement> cognateIDToCognate) {
+        this.cognateIDToCognate = cognateIDToCognate;
+        this.cognateIndex = null;
+        this.formQuery = null;
+    }
+
+    public void replaceCognateSets(Map<String, CLDFCognateSet> cogsetIDToCogset) {
+        this.cogsetIDToCogset = cogsetIDToCogset;
+    }
+
+    /**
+     * @return the cognate sets and their forms in compressed sparse row layout, built on first use
+     */
+    public CognateIndex getCognateIndex() {
+        CognateIndex index = cognateIndex;
+        if (index == null) {
+            synchronized (this) {
+                if (cognateIndex == null) {
+                    cognateIndex = CognateIndex.build(getCognateArray());
+                }
+                index = cognateIndex;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Moves the forms into a {@link ColumnarFormTable}. Afterwards, the form map is a read-only view of the
+     * columnar table, and scans over all forms walk its arrays. Requires the dense form IDs assigned by CLDFImport.
+     */
+    public void useColumnarForms() {
+        if (formTable == null) {
+            formTable = ColumnarFormTable.of(idToForm, getSegmentAlphabet());
+            idToForm = formTable.asMap();
+            //everything derived from the form objects is rebuilt over the views
+            formsByLanguage = null;
+            formsByLanguageByParamID = null;
+            formIndexes.clear();
+            cognateIndex = null;
+            formQuery = null;
+            matrix = null;
+            formsByConcept = null;
+            segmentPool = null;
+            ngramIndexes.clear();
+            formSearches.clear();
+        }
+    }
+
+    /**
+     * @return the bitmap query engine over the current tables, created on first use
+     */
+    public FormQuery getFormQuery() {
+        FormQuery query = formQuery;
+        if (query == null) {
+            synchronized (this) {
+                if (formQuery == null) {
+                    formQuery = new FormQuery(this);
+                }
+                query = formQuery;
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Selects the forms matching a filter, see {@link FormFilter}.
+     */
+    public FormSelection selectForms(FormFilter filter) {
+        return getFormQuery().select(filter);
+    }
+
+    /**
+     * @return the forms by language and concept as a dense matrix, built on first use
+     */
+    public LanguageConceptMatrix getLanguageConceptMatrix() {
+        LanguageConceptMatrix result = matrix;
+        if (result == null) {
+            synchronized (this) {
+                if (matrix == null) {
+                    matrix = LanguageConceptMatrix.build(getFormArray(), getLangIDs(), new TreeSet<>(getConceptMap().keySet()));
+                }
+                result = matrix;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the spatial index over the language coordinates, built on first use
+     */
+    public LanguageSpatialIndex getSpatialIndex() {
+        LanguageSpatialIndex result = spatialIndex;
+        if (result == null) {
+            synchronized (this) {
+                if (spatialIndex == null) {
+                    List<CLDFLanguage> languages = new ArrayList<>();
+                    for (String langID : getLangIDs()) {
+                        languages.add(getLanguageMap().get(langID));
+                    }
+                    spatialIndex = new LanguageSpatialIndex(languages);
+                }
+                result = spatialIndex;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the alphabet the segments of this database are coded in
+     */
+    public SegmentAlphabet getSegmentAlphabet() {
+        SegmentAlphabet alphabet = segmentAlphabet;
+        if (alphabet == null) {
+            synchronized (this) {
+                if (segmentAlphabet == null) {
+                    segmentAlphabet = new SegmentAlphabet();
+                }
+                alphabet = segmentAlphabet;
+            }
+        }
+        return alphabet;
+    }
+
+    /**
+     * Sets the alphabet to code segments in, e.g. one shared with other databases so that their codes are comparable.
+     * The segment pool is rebuilt on next use; a columnar form table keeps the alphabet it was built with.
+     */
+    public void setSegmentAlphabet(SegmentAlphabet segmentAlphabet) {
+        this.segmentAlphabet = segmentAlphabet;
+        this.segmentPool = null;
+        this.ngramIndexes.keySet().removeIf(key -> key.startsWith("segments/"));
+        this.formSearches.remove(FormSearch.Source.SEGMENTS);
+    }
+
+    /**
+     * @return the segments of all forms as codes of {@link #getSegmentAlphabet()}; the pool of the columnar
+     * form table if there is one, else built on first use
+     */
+    public SegmentPool getSegmentPool() {
+        ColumnarFormTable columnar = getColumnarForms();
+        if (columnar != null) {
+            return columnar.getSegmentPool();
+        }
+        SegmentPool result = segmentPool;
+        if (result == null) {
+            synchronized (this) {
+                if (segmentPool == null) {
+                    segmentPool = SegmentPool.build(getFormArray(), getSegmentAlphabet());
+                }
+                result = segmentPool;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the inverted index over the padded n-grams of the segments of all forms, building it on first use.
+     * Symbols are the codes of {@link #getSegmentAlphabet()}.
+     *
+     * @param n the length of the n-grams, at most {@link NGrams#maxN(int)} of the alphabet's bit width
+     */
+    public NGramIndex getSegmentNGramIndex(int n) {
+        return ngramIndexes.computeIfAbsent("segments/" + n, key -> {
+            SegmentPool pool = getSegmentPool();
+            int bits = NGrams.bitsPerSymbol(pool.getAlphabet().size());
+            return NGramIndex.build(pool.size(), languagePartitions(), id -> pool.hasSegments(id) ? pool.getCodes(id) : null, n, bits);
+        });
+    }
+
+    /**
+     * Returns the inverted index over the padded n-grams of the code points of the form column, building it on first use.
+     *
+     * @param n the length of the n-grams, at most 3
+     */
+    public NGramIndex getFormNGramIndex(int n) {
+        return ngramIndexes.computeIfAbsent("form/" + n, key -> {
+            CLDFForm[] forms = getFormArray();
+            return NGramIndex.build(forms.length, languagePartitions(),
+                    id -> forms[id] == null || forms[id].getForm() == null ? null : NGrams.codePoints(forms[id].getForm()),
+                    n, NGrams.CODE_POINT_BITS);
+        });
+    }
+
+    /**
+     * Returns the approximate search over the forms or their segments, building it on first use.
+     */
+    public FormSearch getFormSearch(FormSearch.Source source) {
+        return formSearches.computeIfAbsent(source, s -> new FormSearch(this, s));
+    }
+
+    //the form IDs of each language, for index builds that run in parallel per language
+    private List<int[]> languagePartitions() {
+        SecondaryIndex<CLDFForm> byLanguage = getFormIndex("langID");
+        List<int[]> partitions = new ArrayList<>();
+        for (String langID : byLanguage.getValues()) {
+            partitions.add(byLanguage.getRowIds(langID));
+        }
+        return partitions;
+    }
+
+    /**
+     * @return the forms in concept-major order, built on first use
+     */
+    public FormsByConcept getFormsByConcept() {
+        FormsByConcept result = formsByConcept;
+        if (result == null) {
+            synchronized (this) {
+                if (formsByConcept == null) {
+                    formsByConcept = FormsByConcept.build(getLanguageConceptMatrix(), getFormArray());
+                }
+                result = formsByConcept;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of a FormTable column, building it on first use. Row IDs are form IDs.
+     *
+     * @param column one of "langID", "paramID", "form", "value", "comment", "orthography", or a key of the form properties
+     * @throws IllegalArgumentException if the column is neither of these
+     */
+    public SecondaryIndex<CLDFForm> getFormIndex(String column) {
+        return formIndexes.computeIfAbsent(column, c -> {
+            CLDFForm[] rows = getFormArray();
+            return c.equals("paramID")
+                    ? SecondaryIndex.buildMultiValued(c, rows, CLDFForm::getParamIDs)
+                    : SecondaryIndex.build(c, rows, formColumn(c, rows));
+        });
+    }
+
+    /**
+     * Returns the index of a LanguageTable column, building it on first use. Row IDs are positions in {@link #getLangIDs()}.
+     *
+     * @param column one of "langID", "iso", "glottocode", "name", "family", "macroarea", or a key of the language properties
+     * @throws IllegalArgumentException if the column is neither of these
+     */
+    public SecondaryIndex<CLDFLanguage> getLanguageIndex(String column) {
+        return languageIndexes.computeIfAbsent(column, c -> {
+            Map<String, CLDFLanguage> languages = getLanguageMap();
+            List<String> ids = getLangIDs();
+            CLDFLanguage[] rows = new CLDFLanguage[ids.size()];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = languages.get(ids.get(i));
+            }
+            return SecondaryIndex.build(c, rows, languageColumn(c, rows));
+        });
+    }
+
+    /**
+     * Returns the index of a ParameterTable column, building it on first use. Row IDs are positions in the sorted parameter IDs.
+     *
+     * @param column one of "paramID", "name", "concepticonID", "concepticon", "semanticField", or a key of the parameter properties
+     * @throws IllegalArgumentException if the column is neither of these
+     */
+    public SecondaryIndex<CLDFParameter> getParameterIndex(String column) {
+        return parameterIndexes.computeIfAbsent(column, c -> {
+            CLDFParameter[] rows = new TreeMap<>(getConceptMap()).values().toArray(new CLDFParameter[0]);
+            return SecondaryIndex.build(c, rows, parameterColumn(c, rows));
+        });
+    }
+
+    private static Function<CLDFForm, String> formColumn(String column, CLDFForm[] rows) {
+        switch (column) {
+            case "langID":
+                return CLDFForm::getLangID;
+            case "form":
+                return CLDFForm::getForm;
+            case "value":
+                return CLDFForm::getOrigValue;
+            case "comment":
+                return CLDFForm::getComment;
+            case "orthography":
+                return CLDFForm::getOrthography;
+            default:
+                requireProperty("FormTable", column, rows, CLDFForm::getProperties);
+                return form -> property(form.getProperties(), column);
+        }
+    }
+
+    private static Function<CLDFLanguage, String> languageColumn(String column, CLDFLanguage[] rows) {
+        switch (column) {
+            case "langID":
+                return CLDFLanguage::getLangID;
+            case "iso":
+                return CLDFLanguage::getIso;
+            case "glottocode":
+                return CLDFLanguage::getGlottocode;
+            case "name":
+                return CLDFLanguage::getName;
+            case "family":
+                return CLDFLanguage::getFamily;
+            case "macroarea":
+                return CLDFLanguage::getMacroarea;
+            default:
+                requireProperty("LanguageTable", column, rows, CLDFLanguage::getProperties);
+                return language -> property(language.getProperties(), column);
+        }
+    }
+
+    private static Function<CLDFParameter, String> parameterColumn(String column, CLDFParameter[] rows) {
+        switch (column) {
+            case "paramID":
+                return CLDFParameter::getParamID;
+            case "name":
+                return CLDFParameter::getName;
+            case "concepticonID":
+                return CLDFParameter::getConcepticonID;
+            case "concepticon":
+                return CLDFParameter::getConcepticon;
+            case "semanticField":
+                return CLDFParameter::getSemanticField;
+            default:
+                requireProperty("ParameterTable", column, rows, CLDFParameter::getProperties);
+                return parameter -> property(parameter.getProperties(), column);
+        }
+    }
+
+    private static String property(Map<String, String> properties, String key) {
+        return properties == null ? null : properties.get(key);
+    }
+
+    //a misspelled column would otherwise silently match nothing; an empty table has nothing to match anyway
+    private static <T> void requireProperty(String table, String key, T[] rows, Function<T, Map<String, String>> properties) {
+        if (rows.length == 0) {
+            return;
+        }
+        for (T row : rows) {
+            Map<String, String> values = row == null ? null : properties.apply(row);
+            if (values != null && values.containsKey(key)) {
+                return;
+            }
+        }
+        throw new IllegalArgumentException("unknown " + table + " column " + key);
+    }
+
+    /**
+     * @return the columnar form table, or null if the forms are stored as objects
+     */
+    public ColumnarFormTable getColumnarForms() {
+        return formTable;
+    }
+
     public Map<Integer, String> getOriginalFormIds() {
         return this.originalFormIds;
     }
 
+    /**
+     * @return the forms indexed by their IDs, null where there is no form; a copy, so hot loops can skip the boxed map lookups
+     */
+    public CLDFForm[] getFormArray() {
+        return toArray(getFormsMap(), CLDFForm[]::new);
+    }
+
+    /**
+     * @return the cognate judgements indexed by their IDs, null where there is no judgement
+     */
+    public CLDFCognateJudgement[] getCognateArray() {
+        return toArray(getCognateMap(), CLDFCognateJudgement[]::new);
+    }
+
+    /**
+     * @return the original (CSV) form IDs indexed by the dense form IDs
+     */
+    public String[] getOriginalFormIdArray() {
+        return toArray(getOriginalFormIds(), String[]::new);
+    }
+
+    static <V> V[] toArray(Map<Integer, V> map, IntFunction<V[]> generator) {
+        if (map instanceof DenseIntMap) {
+            return ((DenseIntMap<V>) map).toArray(generator);
+        }
+        int length = 0;
+        for (int key : map.keySet()) {
+            length = Math.max(length, key + 1);
+        }
+        V[] array = generator.apply(length);
+        map.forEach((key, value) -> array[key] = value);
+        return array;
+    }
+
     public String getCurrentPath() {
         return currentPath;
     }
@@ -77,6 +539,14 @@ public class CLDFWordlistDatabase {
         return paramIDToParam;
     }
 
+    public Map<Integer, CLDFCognateJudgement> getCognateMap() {
+        return cognateIDToCognate;
+    }
+
+    public Map<String, CLDFCognateSet> getCognateSetMap() {
+        return cogsetIDToCogset;
+    }
+
 	public List<String> getLangIDs() {
 		return langIDs;
 	}
@@ -89,18 +559,21 @@ public class CLDFWordlistDatabase {
 	}
 
 
+    /**
+     * @return a new map from the cognate sets to the IDs of their forms; loops should use {@link #getCognateIndex()} instead
+     */
     public Map<String, Set<Integer>> getCogsetToCognates() {
-        Map<String, Set<Integer>> cognateSets = new HashMap<>();
-
-        for (Map.Entry<Integer, CLDFCognateJudgement> entry : cognateIDToCognate.entrySet()) {
-            int cognateID = entry.getKey();
-            String cogsetID = cognateIDToCognate.get(cognateID).getCognatesetReference();
-            int formID = entry.getValue().getFormReference();
-
-            cognateSets.putIfAbsent(cogsetID, new HashSet<>());
-            cognateSets.get(cogsetID).add(formID);
+        CognateIndex index = getCognateIndex();
+        int[] offsets = index.getOffsets();
+        int[] formIds = index.getFormIds();
+        Map<String, Set<Integer>> cognateSets = new HashMap<>(index.size() * 4 / 3 + 1);
+        for (int cogset = 0; cogset < index.size(); cogset++) {
+            Set<Integer> forms = new HashSet<>(index.getMemberCount(cogset) * 4 / 3 + 1);
+            for (int i = offsets[cogset]; i < offsets[cogset + 1]; i++) {
+                forms.add(formIds[i]);
+            }
+            cognateSets.put(index.getCogsetId(cogset), forms);
         }
-
         return cognateSets;
     }
 
@@ -113,42 +586,51 @@ public class CLDFWordlistDatabase {
     }
 
     public List<Integer> listFormIdsForLangId(String langID) {
-        List<Integer> formIDs = new LinkedList<Integer>();
-        for (int formID : idToForm.keySet()) {
-            if (langID.equals(idToForm.get(formID).getLangID()))
-                formIDs.add(formID);
+        int[] ids = getFormIndex("langID").getRowIds(langID);
+        List<Integer> formIDs = new ArrayList<>(ids.length);
+        for (int formID : ids) {
+            formIDs.add(formID);
         }
         return formIDs;
     }
 
     public String searchLangIdForIsoCode(String isoCode) {
-        for (CLDFLanguage lang : langIDToLang.values()) {
-            if (isoCode.equals(lang.iso)) {
-                return lang.langID;
-            }
-        }
-        return null;
+        CLDFLanguage lang = getLanguageIndex("iso").getFirst(isoCode);
+        return lang == null ? null : lang.langID;
     }
 
 
+	/**
+	 * @return a random form of the language, or null if it has none; use {@link #createSampler(long)} for reproducible draws
+	 */
 	public CLDFForm getRandomFormForLanguage(String langID) {
-		if (formsByLanguage == null) {
-			cacheFormsByLanguage();
-		}
-		List<CLDFForm> allFormsOfTargetLanguage = formsByLanguage.get(langID);
-
-		CLDFForm randomForm;
-		try {
-			int randomIndex = (int) (Math.random() * allFormsOfTargetLanguage.size());
-			randomForm = allFormsOfTargetLanguage.get(randomIndex);
-		} catch (Exception e) {
-			randomForm = null; // return null if something goes wrong
-		}
-		return randomForm;
+		SecondaryIndex<CLDFForm> index = getFormIndex("langID");
+		int[] formIDs = index.getRowIds(langID);
+		return formIDs.length == 0 ? null : index.getRow(formIDs[ThreadLocalRandom.current().nextInt(formIDs.length)]);
+	}
+
+	/**
+	 * @return a sampler of the current forms, seeded for reproducible draws
+	 */
+	public FormSampler createSampler(long seed) {
+		return new FormSampler(this, seed);
 	}
 
 	public void cacheFormsByLanguage() {
 		formsByLanguage = new HashMap<>();
+		if (formTable != null) {
+			//group by language index instead of hashing the language ID of every form
+			List<List<CLDFForm>> formsByIndex = new ArrayList<>();
+			for (String langID : formTable.getLanguages()) {
+				List<CLDFForm> forms = new ArrayList<>();
+				formsByIndex.add(forms);
+				formsByLanguage.put(langID, forms);
+			}
+			for (int formID = 0; formID < formTable.size(); formID++) {
+				formsByIndex.get(formTable.getLanguageIndex(formID)).add(formTable.get(formID));
+			}
+			return;
+		}
 		for (CLDFForm form : idToForm.values()) {
 			String langID = form.getLangID();
 			if (formsByLanguage.containsKey(langID)) {
@@ -193,12 +675,10 @@ public class CLDFWordlistDatabase {
 		return formsByLanguageByParamID.get(paramID);
 	}
 
-	public List<CLDFForm> getFormsByParamID(String paramID) {
-		Map<String, List<CLDFForm>> conceptMapByLanguage = getFormsByLanguageByParamID(paramID);
-		List<List<CLDFForm>> conceptsByLanguage = new ArrayList<>(conceptMapByLanguage.values());
-		// "flatten" List of Lists to one List containing all values
-		return conceptsByLanguage.stream()
-				.flatMap(Collection::stream)
-				.collect(Collectors.toList());
-	}
+    /**
+     * @return the forms of a concept, ordered by language; an unmodifiable view, empty for unknown concepts
+     */
+    public List<CLDFForm> getFormsByParamID(String paramID) {
+        return getFormsByConcept().get(paramID);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,209 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import java.util.*;
+
+/**
+ * The cognate judgements of a database, grouped by cognate set in compressed sparse row layout.
+ * Cognate sets are numbered 0..n-1 in the order of their first judgement; the form IDs of set i are
+ * formIds[offsets[i]..offsets[i+1]], in ascending order and without duplicates. A form can be judged cognate with
+ * several sets, so the reverse direction has the same layout: the sets of form f are
+ * formCogsets[formOffsets[f]..formOffsets[f+1]], in ascending order.
+ * The accessors return the internal arrays without copying them, so they must not be modified.
+ * The index is not updated when the cognate table changes; CLDFWordlistDatabase rebuilds it after a table is replaced.
+ */
+public class CognateIndex {
+    private final String[] cogsetIds;
+    private final Map<String, Integer> cogsetLookup;
+    private final int[] offsets;
+    private final int[] formIds;
+    private final int[] formOffsets;
+    private final int[] formCogsets;
+
+    private CognateIndex(String[] cogsetIds, Map<String, Integer> cogsetLookup, int[] offsets, int[] formIds,
+                         int[] formOffsets, int[] formCogsets) {
+        this.cogsetIds = cogsetIds;
+        this.cogsetLookup = cogsetLookup;
+        this.offsets = offsets;
+        this.formIds = formIds;
+        this.formOffsets = formOffsets;
+        this.formCogsets = formCogsets;
+    }
+
+    /**
+     * @param cognates the cognate judgements by cognate ID; null entries are skipped
+     */
+    public static CognateIndex build(CLDFCognateJudgement[] cognates) {
+        //first pass: number the sets, count their members and find the largest form ID
+        Map<String, Integer> lookup = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        int[] counts = new int[16];
+        int[] setOfCognate = new int[cognates.length];
+        int maxFormId = -1;
+        for (int i = 0; i < cognates.length; i++) {
+            setOfCognate[i] = -1;
+            CLDFCognateJudgement cognate = cognates[i];
+            if (cognate == null || cognate.getCognatesetReference() == null || cognate.getFormReference() < 0) {
+                continue;
+            }
+            Integer set = lookup.get(cognate.getCognatesetReference());
+            if (set == null) {
+                set = ids.size();
+                lookup.put(cognate.getCognatesetReference(), set);
+                ids.add(cognate.getCognatesetReference());
+                if (set == counts.length) {
+                    counts = Arrays.copyOf(counts, set * 2);
+                }
+            }
+            counts[set]++;
+            setOfCognate[i] = set;
+            maxFormId = Math.max(maxFormId, cognate.getFormReference());
+        }
+
+        //second pass: place the form IDs at the offsets of their sets
+        int setCount = ids.size();
+        int[] offsets = new int[setCount + 1];
+        for (int set = 0; set < setCount; set++) {
+            offsets[set + 1] = offsets[set] + counts[set];
+        }
+        int[] formIds = new int[offsets[setCount]];
+        int[] next = Arrays.copyOf(offsets, setCount);
+        for (int i = 0; i < cognates.length; i++) {
+            int set = setOfCognate[i];
+            if (set != -1) {
+                formIds[next[set]++] = cognates[i].getFormReference();
+            }
+        }
+
+        //sort the members of each set and drop repeated judgements of a form for the same set, shifting the sets left
+        int[] formCounts = new int[maxFormId + 2];
+        int size = 0;
+        for (int set = 0; set < setCount; set++) {
+            int from = offsets[set];
+            int to = offsets[set + 1];
+            Arrays.sort(formIds, from, to);
+            offsets[set] = size;
+            for (int i = from; i < to; i++) {
+                if (i == from || formIds[i] != formIds[i - 1]) {
+                    formIds[size++] = formIds[i];
+                    formCounts[formIds[i] + 1]++;
+                }
+            }
+        }
+        offsets[setCount] = size;
+        if (size < formIds.length) {
+            formIds = Arrays.copyOf(formIds, size);
+        }
+
+        //third pass: the sets of each form, in ascending order since the sets are visited in order
+        int[] formOffsets = formCounts;
+        for (int formId = 0; formId <= maxFormId; formId++) {
+            formOffsets[formId + 1] += formOffsets[formId];
+        }
+        int[] formCogsets = new int[size];
+        int[] formNext = Arrays.copyOf(formOffsets, maxFormId + 1);
+        for (int set = 0; set < setCount; set++) {
+            for (int i = offsets[set]; i < offsets[set + 1]; i++) {
+                formCogsets[formNext[formIds[i]]++] = set;
+            }
+        }
+        return new CognateIndex(ids.toArray(new String[0]), lookup, offsets, formIds, formOffsets, formCogsets);
+    }
+
+    /**
+     * @return the number of cognate sets
+     */
+    public int size() {
+        return cogsetIds.length;
+    }
+
+    public String getCogsetId(int cogset) {
+        return cogsetIds[cogset];
+    }
+
+    /**
+     * @return the index of a cognate set, or -1 if it has no judgements
+     */
+    public int indexOf(String cogsetID) {
+        Integer cogset = cogsetLookup.get(cogsetID);
+        return cogset == null ? -1 : cogset;
+    }
+
+    /**
+     * @return the offsets of the cognate sets into {@link #getFormIds()}, of length size() + 1
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * @return the form IDs of all cognate sets, one set after the other
+     */
+    public int[] getFormIds() {
+        return formIds;
+    }
+
+    /**
+     * @return the offsets of the forms into {@link #getFormCogsets()}, of length (largest judged form ID) + 2;
+     * may be shorter than the form table
+     */
+    public int[] getFormOffsets() {
+        return formOffsets;
+    }
+
+    /**
+     * @return the set indices of all judged forms, one form after the other
+     */
+    public int[] getFormCogsets() {
+        return formCogsets;
+    }
+
+    public int getMemberCount(int cogset) {
+        return offsets[cogset + 1] - offsets[cogset];
+    }
+
+    /**
+     * @return the number of cognate sets a form is judged to belong to
+     */
+    public int getCogsetCount(int formId) {
+        return formId >= 0 && formId < formOffsets.length - 1 ? formOffsets[formId + 1] - formOffsets[formId] : 0;
+    }
+
+    /**
+     * @return the index of the first cognate set of a form (in the order of the sets), or -1;
+     * see {@link #cogsetsOf(int)} for forms in several sets
+     */
+    public int cogsetOf(int formId) {
+        return getCogsetCount(formId) == 0 ? -1 : formCogsets[formOffsets[formId]];
+    }
+
+    /**
+     * @return the indices of all cognate sets of a form, in ascending order
+     */
+    public int[] cogsetsOf(int formId) {
+        if (getCogsetCount(formId) == 0) {
+            return new int[0];
+        }
+        return Arrays.copyOfRange(formCogsets, formOffsets[formId], formOffsets[formId + 1]);
+    }
+
+    /**
+     * @return the ID of the first cognate set of a form (in the order of the sets), or null;
+     * see {@link #getCogsetIdsOf(int)} for forms in several sets
+     */
+    public String getCogsetIdOf(int formId) {
+        int cogset = cogsetOf(formId);
+        return cogset == -1 ? null : cogsetIds[cogset];
+    }
+
+    /**
+     * @return the IDs of all cognate sets of a form
+     */
+    public List<String> getCogsetIdsOf(int formId) {
+        int count = getCogsetCount(formId);
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(cogsetIds[formCogsets[formOffsets[formId] + i]]);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,500 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import de.tuebingen.sfs.cldfjava.util.SegmentAlphabet;
+
+import java.util.*;
+
+/**
+ * A read-only FormTable stored as parallel arrays indexed by the dense form IDs 0..n-1.
+ * Language and parameter references are stored as indices into small reference tables (parameters in CSR layout:
+ * the indices of form i are paramIndices[paramOffsets[i]..paramOffsets[i+1]]), text columns as offsets into
+ * shared char pools, and segments in a {@link SegmentPool}.
+ * Forms are handed out as lightweight {@link CLDFForm} views that read from the arrays; they cannot be modified.
+ * The views cache nothing: every call to a text getter decodes a new String from its pool, getParamIDs() returns a
+ * new list view and getSegments() a new array. Code that reads the same form in a hot loop should read each value
+ * once, or work on the indices ({@link #getLanguageIndex(int)}, {@link #getParameterIndices(int)}) and the segment
+ * codes of the {@link SegmentPool} directly.
+ */
+public class ColumnarFormTable {
+    private final int size;
+
+    private final String[] languages; //language IDs by language index
+    private final int[] languageIndex; //language index of each form
+    private final String[] parameters; //parameter IDs by parameter index
+    private final int[] paramOffsets;
+    private final int[] paramIndices;
+
+    private final StringColumn forms;
+    private final StringColumn values;
+    private final StringColumn comments;
+    private final StringColumn orthographies;
+
+    private final SegmentPool segmentPool;
+
+    private final Map<String, String>[] properties;
+
+    private final Map<String, Integer> languageLookup;
+    private final Map<String, Integer> parameterLookup;
+
+    private ColumnarFormTable(Builder builder) {
+        this.size = builder.size;
+        this.languages = builder.languages.toArray(new String[0]);
+        this.languageIndex = Arrays.copyOf(builder.languageIndex, size);
+        this.parameters = builder.parameters.toArray(new String[0]);
+        this.paramOffsets = Arrays.copyOf(builder.paramOffsets, size + 1);
+        this.paramIndices = Arrays.copyOf(builder.paramIndices, paramOffsets[size]);
+        this.forms = builder.forms.trim();
+        this.values = builder.values.trim();
+        this.comments = builder.comments.trim();
+        this.orthographies = builder.orthographies.trim();
+        this.segmentPool = builder.segments.build();
+        this.properties = Arrays.copyOf(builder.properties, size);
+        this.languageLookup = builder.languageLookup;
+        this.parameterLookup = builder.parameterLookup;
+    }
+
+    /**
+     * Copies a form table with dense IDs, as created by CLDFImport.
+     *
+     * @param idToForm forms by their IDs, which have to be 0..n-1
+     * @throws IllegalArgumentException if the IDs are not dense
+     */
+    public static ColumnarFormTable of(Map<Integer, CLDFForm> idToForm) {
+        return of(idToForm, new SegmentAlphabet());
+    }
+
+    /**
+     * Copies a form table with dense IDs, as created by CLDFImport.
+     *
+     * @param idToForm forms by their IDs, which have to be 0..n-1
+     * @param alphabet the alphabet to code the segments in
+     * @throws IllegalArgumentException if the IDs are not dense
+     */
+    public static ColumnarFormTable of(Map<Integer, CLDFForm> idToForm, SegmentAlphabet alphabet) {
+        Builder builder = new Builder(alphabet);
+        for (int id = 0; id < idToForm.size(); id++) {
+            CLDFForm form = idToForm.get(id);
+            if (form == null) {
+                throw new IllegalArgumentException("form IDs are not dense, missing form " + id);
+            }
+            builder.add(form);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the segments of the forms, by form ID
+     */
+    public SegmentPool getSegmentPool() {
+        return segmentPool;
+    }
+
+    /**
+     * @return a view of the form with the given ID
+     */
+    public CLDFForm get(int id) {
+        Objects.checkIndex(id, size);
+        return new FormView(id);
+    }
+
+    /**
+     * @return the language IDs, in the order of their indices
+     */
+    public List<String> getLanguages() {
+        return Collections.unmodifiableList(Arrays.asList(languages));
+    }
+
+    /**
+     * @return the index of a language ID, or -1 if no form refers to it
+     */
+    public int indexOfLanguage(String langID) {
+        return languageLookup.getOrDefault(langID, -1);
+    }
+
+    public int getLanguageIndex(int id) {
+        return languageIndex[id];
+    }
+
+    /**
+     * @return the parameter IDs, in the order of their indices
+     */
+    public List<String> getParameters() {
+        return Collections.unmodifiableList(Arrays.asList(parameters));
+    }
+
+    /**
+     * @return the index of a parameter ID, or -1 if no form refers to it
+     */
+    public int indexOfParameter(String paramID) {
+        return parameterLookup.getOrDefault(paramID, -1);
+    }
+
+    /**
+     * @return the parameter indices of a form
+     */
+    public int[] getParameterIndices(int id) {
+        return Arrays.copyOfRange(paramIndices, paramOffsets[id], paramOffsets[id + 1]);
+    }
+
+    /**
+     * @return the IDs of all forms of a language, in ascending order
+     */
+    public int[] formIdsForLanguage(String langID) {
+        int language = indexOfLanguage(langID);
+        if (language == -1) {
+            return new int[0];
+        }
+        int count = 0;
+        for (int id = 0; id < size; id++) {
+            if (languageIndex[id] == language) count++;
+        }
+        int[] ids = new int[count];
+        count = 0;
+        for (int id = 0; id < size; id++) {
+            if (languageIndex[id] == language) ids[count++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * @return a read-only map view from form IDs to form views, which can replace the form map of a database
+     */
+    public Map<Integer, CLDFForm> asMap() {
+        return new AbstractMap<>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof Integer && (Integer) key >= 0 && (Integer) key < size;
+            }
+
+            @Override
+            public CLDFForm get(Object key) {
+                return containsKey(key) ? new FormView((Integer) key) : null;
+            }
+
+            @Override
+            public Set<Integer> keySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Integer> iterator() {
+                        return new Iterator<>() {
+                            int next = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < size;
+                            }
+
+                            @Override
+                            public Integer next() {
+                                if (next >= size) throw new NoSuchElementException();
+                                return next++;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+
+                    @Override
+                    public boolean contains(Object key) {
+                        return containsKey(key);
+                    }
+                };
+            }
+
+            @Override
+            public Set<Entry<Integer, CLDFForm>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<Integer, CLDFForm>> iterator() {
+                        return new Iterator<>() {
+                            int next = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < size;
+                            }
+
+                            @Override
+                            public Entry<Integer, CLDFForm> next() {
+                                if (next >= size) throw new NoSuchElementException();
+                                int id = next++;
+                                return new SimpleImmutableEntry<>(id, new FormView(id));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * A form backed by the arrays of the table. Views of the same form are equal.
+     * The getters allocate their result on every call, see the class comment.
+     */
+    private class FormView extends CLDFForm {
+        FormView(int id) {
+            super(id);
+        }
+
+        @Override
+        public String getLangID() {
+            return languages[languageIndex[id]];
+        }
+
+        @Override
+        public List<String> getParamIDs() {
+            int from = paramOffsets[id];
+            int to = paramOffsets[id + 1];
+            return new AbstractList<>() {
+                @Override
+                public String get(int i) {
+                    Objects.checkIndex(i, to - from);
+                    return parameters[paramIndices[from + i]];
+                }
+
+                @Override
+                public int size() {
+                    return to - from;
+                }
+            };
+        }
+
+        @Override
+        public String getForm() {
+            return forms.get(id);
+        }
+
+        @Override
+        public String getOrigValue() {
+            return values.get(id);
+        }
+
+        @Override
+        public String getComment() {
+            return comments.get(id);
+        }
+
+        @Override
+        public String getOrthography() {
+            return orthographies.get(id);
+        }
+
+        @Override
+        public String[] getSegments() {
+            return segmentPool.getSegments(id);
+        }
+
+        @Override
+        public Map<String, String> getProperties() {
+            return ColumnarFormTable.this.properties[id];
+        }
+
+        @Override
+        public void setId(int id) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setLangID(String langID) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setParamIDs(List<String> paramIDs) {
+            throw readOnly();
+        }
+
+        @Override
+        public void addParamID(String paramID) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setForm(String form) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setOrigValue(String origValue) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setComment(String comment) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setOrthography(String orthography) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setSegments(String[] segments) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setProperties(Map<String, String> properties) {
+            throw readOnly();
+        }
+
+        private UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("forms of a columnar form table are read-only");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FormView && ((FormView) o).id == id && ((FormView) o).table() == ColumnarFormTable.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        private ColumnarFormTable table() {
+            return ColumnarFormTable.this;
+        }
+
+        @Override
+        public String toString() {
+            return id + "\t" + getForm() + "\t" + getLangID() + "\t" + String.join("; ", getParamIDs()) + "\t" + getProperties();
+        }
+    }
+
+    /**
+     * The strings of a text column, concatenated into one char pool. Null values are kept as such.
+     */
+    private static class StringColumn {
+        private char[] pool = new char[1024];
+        private int[] offsets = new int[17];
+        private BitSet nulls;
+        private int size = 0;
+
+        void add(String value) {
+            int start = offsets[size];
+            if (value == null) {
+                if (nulls == null) nulls = new BitSet();
+                nulls.set(size);
+                value = "";
+            }
+            if (start + value.length() > pool.length) {
+                pool = Arrays.copyOf(pool, Math.max(pool.length * 2, start + value.length()));
+            }
+            value.getChars(0, value.length(), pool, start);
+            if (size + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[++size] = start + value.length();
+        }
+
+        StringColumn trim() {
+            pool = Arrays.copyOf(pool, offsets[size]);
+            offsets = Arrays.copyOf(offsets, size + 1);
+            return this;
+        }
+
+        String get(int i) {
+            if (nulls != null && nulls.get(i)) {
+                return null;
+            }
+            return new String(pool, offsets[i], offsets[i + 1] - offsets[i]);
+        }
+    }
+
+    /**
+     * Appends forms in ID order; the i-th form added gets the ID i.
+     */
+    public static class Builder {
+        private int size = 0;
+        private final List<String> languages = new ArrayList<>();
+        private final Map<String, Integer> languageLookup = new HashMap<>();
+        private int[] languageIndex = new int[16];
+        private final List<String> parameters = new ArrayList<>();
+        private final Map<String, Integer> parameterLookup = new HashMap<>();
+        private int[] paramOffsets = new int[17];
+        private int[] paramIndices = new int[16];
+        private final StringColumn forms = new StringColumn();
+        private final StringColumn values = new StringColumn();
+        private final StringColumn comments = new StringColumn();
+        private final StringColumn orthographies = new StringColumn();
+        private final SegmentPool.Builder segments;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Map<String, String>[] properties = new Map[16];
+
+        public Builder() {
+            this(new SegmentAlphabet());
+        }
+
+        /**
+         * @param alphabet the alphabet to code the segments in
+         */
+        public Builder(SegmentAlphabet alphabet) {
+            this.segments = new SegmentPool.Builder(alphabet);
+        }
+
+        public Builder add(CLDFForm form) {
+            if (size + 2 > paramOffsets.length) {
+                int capacity = paramOffsets.length * 2;
+                languageIndex = Arrays.copyOf(languageIndex, capacity);
+                paramOffsets = Arrays.copyOf(paramOffsets, capacity);
+                properties = Arrays.copyOf(properties, capacity);
+            }
+            languageIndex[size] = code(form.getLangID(), languages, languageLookup);
+
+            List<String> paramIDs = form.getParamIDs();
+            int paramCount = paramOffsets[size];
+            if (paramCount + paramIDs.size() > paramIndices.length) {
+                paramIndices = Arrays.copyOf(paramIndices, Math.max(paramIndices.length * 2, paramCount + paramIDs.size()));
+            }
+            for (String paramID : paramIDs) {
+                paramIndices[paramCount++] = code(paramID, parameters, parameterLookup);
+            }
+            paramOffsets[size + 1] = paramCount;
+
+            forms.add(form.getForm());
+            values.add(form.getOrigValue());
+            comments.add(form.getComment());
+            orthographies.add(form.getOrthography());
+
+            segments.add(form.getSegments());
+
+            //the forms are read-only, so are their properties
+            properties[size] = form.getProperties() == null ? null : Collections.unmodifiableMap(form.getProperties());
+            size++;
+            return this;
+        }
+
+        private static int code(String value, List<String> inventory, Map<String, Integer> lookup) {
+            Integer code = lookup.get(value);
+            if (code == null) {
+                code = inventory.size();
+                inventory.add(value);
+                lookup.put(value, code);
+            }
+            return code;
+        }
+
+        public ColumnarFormTable build() {
+            return new ColumnarFormTable(this);
+        }
+    }
+}
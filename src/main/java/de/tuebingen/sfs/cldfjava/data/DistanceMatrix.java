@@ -0,0 +1,108 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The distances between the forms of one concept, as a triangular matrix of floats: the distance of the forms
+ * i < j is distances[index(i, j)], row by row. Pairs of forms of the same language and pairs with a form that has
+ * nothing to compare (no form string or no segments) are NaN. Computed by {@link FormDistances}.
+ */
+public class DistanceMatrix {
+    private final String paramID;
+    private final int[] formIds;
+    private final float[] distances;
+
+    DistanceMatrix(String paramID, int[] formIds, float[] distances) {
+        this.paramID = paramID;
+        this.formIds = formIds;
+        this.distances = distances;
+    }
+
+    public String getParamID() {
+        return paramID;
+    }
+
+    /**
+     * @return the number of forms
+     */
+    public int size() {
+        return formIds.length;
+    }
+
+    /**
+     * @return the ID of the i-th form, in the order of {@link FormsByConcept}
+     */
+    public int getFormId(int i) {
+        return formIds[i];
+    }
+
+    public int[] getFormIds() {
+        return Arrays.copyOf(formIds, formIds.length);
+    }
+
+    /**
+     * @return the distance between the forms i and j, 0 for i == j
+     */
+    public float get(int i, int j) {
+        if (i == j) {
+            return 0;
+        }
+        return i < j ? distances[index(i, j, formIds.length)] : distances[index(j, i, formIds.length)];
+    }
+
+    /**
+     * @return the position of the pair i < j in {@link #getDistances()} for a matrix of n forms
+     */
+    public static int index(int i, int j, int n) {
+        return (int) ((long) i * (2L * n - i - 1) / 2) + (j - i - 1);
+    }
+
+    /**
+     * @return the distances of the pairs i < j, row by row; must not be modified
+     */
+    public float[] getDistances() {
+        return distances;
+    }
+
+    /**
+     * Writes the matrix: concept ID, number of forms, form IDs and distances.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(paramID);
+        out.writeInt(formIds.length);
+        for (int formId : formIds) {
+            out.writeInt(formId);
+        }
+        for (float distance : distances) {
+            out.writeFloat(distance);
+        }
+    }
+
+    /**
+     * Reads a matrix written by {@link #writeTo(DataOutput)}.
+     */
+    public static DistanceMatrix readFrom(DataInput in) throws IOException {
+        String paramID = in.readUTF();
+        int n = in.readInt();
+        if (n < 0) {
+            throw new IOException("invalid matrix size " + n);
+        }
+        int[] formIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            formIds[i] = in.readInt();
+        }
+        float[] distances = new float[(int) ((long) n * (n - 1) / 2)];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = in.readFloat();
+        }
+        return new DistanceMatrix(paramID, formIds, distances);
+    }
+
+    @Override
+    public String toString() {
+        return paramID + ": " + formIds.length + " forms";
+    }
+}
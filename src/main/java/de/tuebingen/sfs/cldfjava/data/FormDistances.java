@@ -0,0 +1,408 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import de.tuebingen.sfs.cldfjava.util.NGrams;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Computes the distances between all forms of each concept that belong to different languages, as one
+ * {@link DistanceMatrix} per concept. Distances are normalized edit distances (the Levenshtein distance divided by
+ * the length of the longer sequence) over code points or segments, or weighted segment distances with costs from
+ * {@link SegmentWeights}, normalized the same way.
+ * <p>
+ * Concepts are processed in parallel on the common fork-join pool, split by {@link FormsByConcept#spliterator()}.
+ * Each thread reuses one workspace (the match masks of the bit-parallel edit distance of Myers, which handles forms of
+ * up to 64 symbols, and the rows of the dynamic program for longer forms and weights), so nothing is allocated per pair.
+ * The sequences of all forms are coded once, when the engine is created; it does not follow later changes of the database.
+ */
+public class FormDistances {
+    private static final int MAGIC = 0x434C444D; //"CLDM"
+    private static final int VERSION = 1;
+    private static final int MAX_TABULATED_SEGMENTS = 1024; //larger alphabets ask the weights for each pair
+
+    /**
+     * Costs for the weighted segment distance, by segment code of {@link CLDFWordlistDatabase#getSegmentAlphabet()}.
+     * Substitution costs should be symmetric, since each pair of forms is compared once. With costs between 0 and 1,
+     * normalized distances are between 0 and 1 as well.
+     */
+    public interface SegmentWeights {
+        float substitution(int code1, int code2);
+
+        /**
+         * @return the cost of inserting or deleting a segment
+         */
+        float gap(int code);
+    }
+
+    private final FormsByConcept concepts;
+    private final SegmentWeights weights; //null for unit costs
+    private final float[] substitutions; //by code1 * alphabetSize + code2, null if not tabulated
+    private final float[] gaps;
+    private final int alphabetSize;
+    private final int[] offsets; //the symbols of form i are symbols[offsets[i]..offsets[i+1]]
+    private final int[] symbols;
+    private final BitSet coded; //forms with a sequence
+    private final ThreadLocal<Workspace> workspaces;
+
+    /**
+     * Distances by normalized edit distance.
+     */
+    public FormDistances(CLDFWordlistDatabase database, FormSearch.Source source) {
+        this(database, source, null);
+    }
+
+    /**
+     * Distances by weighted segment distance.
+     */
+    public FormDistances(CLDFWordlistDatabase database, SegmentWeights weights) {
+        this(database, FormSearch.Source.SEGMENTS, Objects.requireNonNull(weights));
+    }
+
+    private FormDistances(CLDFWordlistDatabase database, FormSearch.Source source, SegmentWeights weights) {
+        this.concepts = database.getFormsByConcept();
+        this.weights = weights;
+        CLDFForm[] forms = database.getFormArray();
+        this.offsets = new int[forms.length + 1];
+        this.coded = new BitSet(forms.length);
+        if (source == FormSearch.Source.SEGMENTS) {
+            SegmentPool pool = database.getSegmentPool();
+            this.alphabetSize = pool.getAlphabet().size();
+            this.symbols = new int[pool.totalSegments()];
+            for (int id = 0; id < forms.length; id++) {
+                offsets[id + 1] = offsets[id];
+                if (pool.hasSegments(id)) {
+                    offsets[id + 1] += pool.copyCodes(id, symbols, offsets[id]);
+                    coded.set(id);
+                }
+            }
+        } else {
+            //code points as small codes, so that the match masks are an array
+            Map<Integer, Integer> codes = new HashMap<>();
+            int[] pool = new int[64];
+            for (int id = 0; id < forms.length; id++) {
+                offsets[id + 1] = offsets[id];
+                if (forms[id] != null && forms[id].getForm() != null) {
+                    int[] codePoints = NGrams.codePoints(forms[id].getForm());
+                    if (offsets[id] + codePoints.length > pool.length) {
+                        pool = Arrays.copyOf(pool, Math.max(pool.length * 2, offsets[id] + codePoints.length));
+                    }
+                    for (int codePoint : codePoints) {
+                        pool[offsets[id + 1]++] = codes.computeIfAbsent(codePoint, c -> codes.size());
+                    }
+                    coded.set(id);
+                }
+            }
+            this.alphabetSize = codes.size();
+            this.symbols = Arrays.copyOf(pool, offsets[forms.length]);
+        }
+        if (weights != null && alphabetSize <= MAX_TABULATED_SEGMENTS) {
+            this.substitutions = new float[alphabetSize * alphabetSize];
+            this.gaps = new float[alphabetSize];
+            for (int code1 = 0; code1 < alphabetSize; code1++) {
+                gaps[code1] = weights.gap(code1);
+                for (int code2 = 0; code2 < alphabetSize; code2++) {
+                    substitutions[code1 * alphabetSize + code2] = weights.substitution(code1, code2);
+                }
+            }
+        } else {
+            this.substitutions = null;
+            this.gaps = null;
+        }
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(alphabetSize));
+    }
+
+    /**
+     * @return the distances between the forms of a concept, empty for unknown concepts
+     */
+    public DistanceMatrix compute(String paramID) {
+        List<CLDFForm> forms = concepts.get(paramID);
+        if (forms instanceof FormsByConcept.ConceptSlice) {
+            return compute((FormsByConcept.ConceptSlice) forms);
+        }
+        return new DistanceMatrix(paramID, new int[0], new float[0]);
+    }
+
+    /**
+     * @return the distance matrices of all concepts, in the order of {@link FormsByConcept}; they take
+     * 4 bytes per pair of forms, see {@link #forEach(Consumer)} and {@link #write(Path)} for streaming them instead
+     */
+    public Map<String, DistanceMatrix> computeAll() {
+        DistanceMatrix[] matrices = new DistanceMatrix[concepts.conceptCount()];
+        Map<String, Integer> positions = new HashMap<>();
+        for (int concept = 0; concept < matrices.length; concept++) {
+            positions.put(concepts.get(concept).getParamID(), concept);
+        }
+        forEach(matrix -> matrices[positions.get(matrix.getParamID())] = matrix);
+        Map<String, DistanceMatrix> result = new LinkedHashMap<>();
+        for (DistanceMatrix matrix : matrices) {
+            result.put(matrix.getParamID(), matrix);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the distance matrices of all concepts in parallel and passes each to an action as soon as it is done,
+     * so that only the matrices in progress are in memory.
+     *
+     * @param action receives the matrices in no particular order, from several threads at once
+     */
+    public void forEach(Consumer<? super DistanceMatrix> action) {
+        concepts.parallelStream().forEach(slice -> action.accept(compute(slice)));
+    }
+
+    /**
+     * Computes the distance matrices of all concepts and streams them to a file as they are done, see
+     * {@link #read(Path, Consumer)}. The file is written to a temporary file first and then moved into place.
+     * <p>
+     * Layout (big-endian): magic, version, then each matrix (see {@link DistanceMatrix#writeTo(DataOutput)})
+     * after a true boolean, and a false boolean at the end.
+     */
+    public void write(Path file) throws IOException {
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                forEach(matrix -> {
+                    synchronized (out) {
+                        try {
+                            out.writeBoolean(true);
+                            matrix.writeTo(out);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+                out.writeBoolean(false);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads the matrices of a file written by {@link #write(Path)}, one at a time.
+     */
+    public static void read(Path file, Consumer<? super DistanceMatrix> action) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a distance matrix file: " + file);
+            }
+            while (in.readBoolean()) {
+                action.accept(DistanceMatrix.readFrom(in));
+            }
+        }
+    }
+
+    private DistanceMatrix compute(FormsByConcept.ConceptSlice slice) {
+        int n = slice.size();
+        int[] formIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            formIds[i] = slice.get(i).getId();
+        }
+        float[] distances = new float[(int) ((long) n * (n - 1) / 2)];
+        Workspace workspace = workspaces.get();
+        int[] languageEnds = workspace.languageEnds(slice);
+        workspace.gather(formIds, offsets, symbols, coded);
+        int[] sequences = workspace.sequences;
+        int[] starts = workspace.starts;
+        int[] lengths = workspace.lengths;
+        int position = 0;
+        for (int i = 0; i < n; i++) {
+            //the forms of a language are contiguous, and pairs within a language are not compared
+            int next = languageEnds[i];
+            Arrays.fill(distances, position, position + next - i - 1, Float.NaN);
+            position += next - i - 1;
+            int from1 = starts[i];
+            int length1 = lengths[i];
+            if (length1 < 0) {
+                Arrays.fill(distances, position, position + n - next, Float.NaN);
+                position += n - next;
+                continue;
+            }
+            boolean bitParallel = weights == null && length1 <= 64;
+            if (bitParallel) {
+                workspace.setPattern(sequences, from1, length1);
+            }
+            for (int j = next; j < n; j++) {
+                int from2 = starts[j];
+                int length2 = lengths[j];
+                if (length2 < 0) {
+                    distances[position++] = Float.NaN;
+                    continue;
+                }
+                int longer = Math.max(length1, length2);
+                float distance;
+                if (longer == 0) {
+                    distance = 0;
+                } else if (bitParallel) {
+                    distance = workspace.myers(length1, sequences, from2, length2);
+                } else if (weights == null) {
+                    distance = workspace.levenshtein(sequences, from1, length1, from2, length2);
+                } else {
+                    distance = workspace.weighted(sequences, from1, length1, from2, length2, this);
+                }
+                distances[position++] = distance / longer;
+            }
+            if (bitParallel) {
+                workspace.clearPattern(sequences, from1, length1);
+            }
+        }
+        return new DistanceMatrix(slice.getParamID(), formIds, distances);
+    }
+
+    private float substitution(int code1, int code2) {
+        return substitutions != null ? substitutions[code1 * alphabetSize + code2] : weights.substitution(code1, code2);
+    }
+
+    private float gap(int code) {
+        return gaps != null ? gaps[code] : weights.gap(code);
+    }
+
+    //the buffers of one thread
+    private static final class Workspace {
+        final long[] masks; //Myers: the positions of each symbol in the current form, all zero between forms
+        int[] languageEnds = new int[64];
+        //the sequences of the forms of the current concept, one after another, with -1 as the length of missing ones
+        int[] sequences = new int[256];
+        int[] starts = new int[64];
+        int[] lengths = new int[64];
+        int[] intRows = new int[2 * 65];
+        float[] floatRows = new float[2 * 65];
+
+        Workspace(int alphabetSize) {
+            this.masks = new long[alphabetSize];
+        }
+
+        //for each form of a slice, the position after the last form of its language
+        int[] languageEnds(FormsByConcept.ConceptSlice slice) {
+            int n = slice.size();
+            if (languageEnds.length < n) {
+                languageEnds = new int[Math.max(n, languageEnds.length * 2)];
+            }
+            int end = n;
+            for (int i = n - 1; i >= 0; i--) {
+                if (i < n - 1 && !Objects.equals(slice.get(i).getLangID(), slice.get(i + 1).getLangID())) {
+                    end = i + 1;
+                }
+                languageEnds[i] = end;
+            }
+            return languageEnds;
+        }
+
+        void gather(int[] formIds, int[] offsets, int[] symbols, BitSet coded) {
+            int n = formIds.length;
+            if (starts.length < n) {
+                starts = new int[Math.max(n, starts.length * 2)];
+                lengths = new int[starts.length];
+            }
+            int size = 0;
+            for (int i = 0; i < n; i++) {
+                int id = formIds[i];
+                int length = coded.get(id) ? offsets[id + 1] - offsets[id] : 0;
+                if (size + length > sequences.length) {
+                    sequences = Arrays.copyOf(sequences, Math.max(sequences.length * 2, size + length));
+                }
+                System.arraycopy(symbols, offsets[id], sequences, size, length);
+                starts[i] = size;
+                lengths[i] = coded.get(id) ? length : -1;
+                size += length;
+            }
+        }
+
+        void setPattern(int[] symbols, int from, int length) {
+            for (int i = 0; i < length; i++) {
+                masks[symbols[from + i]] |= 1L << i;
+            }
+        }
+
+        void clearPattern(int[] symbols, int from, int length) {
+            for (int i = 0; i < length; i++) {
+                masks[symbols[from + i]] = 0;
+            }
+        }
+
+        //the edit distance between the pattern and a text, by the bit-vector algorithm of Myers in Hyyrö's formulation
+        int myers(int m, int[] text, int from, int length) {
+            if (m == 0) {
+                return length;
+            }
+            long last = 1L << (m - 1);
+            long pv = -1L;
+            long mv = 0;
+            int score = m;
+            for (int j = 0; j < length; j++) {
+                long eq = masks[text[from + j]];
+                long xv = eq | mv;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                if ((ph & last) != 0) {
+                    score++;
+                } else if ((mh & last) != 0) {
+                    score--;
+                }
+                ph = (ph << 1) | 1;
+                mh <<= 1;
+                pv = mh | ~(xv | ph);
+                mv = ph & xv;
+            }
+            return score;
+        }
+
+        int levenshtein(int[] symbols, int from1, int length1, int from2, int length2) {
+            if (intRows.length < 2 * (length2 + 1)) {
+                intRows = new int[2 * (length2 + 1)];
+            }
+            int[] rows = intRows;
+            int previous = 0;
+            int current = length2 + 1;
+            for (int j = 0; j <= length2; j++) rows[j] = j;
+            for (int i = 1; i <= length1; i++) {
+                rows[current] = i;
+                int symbol = symbols[from1 + i - 1];
+                for (int j = 1; j <= length2; j++) {
+                    int cost = symbols[from2 + j - 1] == symbol ? 0 : 1;
+                    rows[current + j] = Math.min(Math.min(rows[previous + j] + 1, rows[current + j - 1] + 1), rows[previous + j - 1] + cost);
+                }
+                int swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return rows[previous + length2];
+        }
+
+        float weighted(int[] symbols, int from1, int length1, int from2, int length2, FormDistances costs) {
+            if (floatRows.length < 2 * (length2 + 1)) {
+                floatRows = new float[2 * (length2 + 1)];
+            }
+            float[] rows = floatRows;
+            int previous = 0;
+            int current = length2 + 1;
+            rows[0] = 0;
+            for (int j = 1; j <= length2; j++) rows[j] = rows[j - 1] + costs.gap(symbols[from2 + j - 1]);
+            for (int i = 1; i <= length1; i++) {
+                int symbol = symbols[from1 + i - 1];
+                float gap = costs.gap(symbol);
+                rows[current] = rows[previous] + gap;
+                for (int j = 1; j <= length2; j++) {
+                    int other = symbols[from2 + j - 1];
+                    rows[current + j] = Math.min(Math.min(rows[previous + j] + gap, rows[current + j - 1] + costs.gap(other)),
+                            rows[previous + j - 1] + costs.substitution(symbol, other));
+                }
+                int swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return rows[previous + length2];
+        }
+    }
+}
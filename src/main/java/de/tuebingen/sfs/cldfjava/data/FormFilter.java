@@ -0,0 +1,95 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import de.tuebingen.sfs.cldfjava.util.CompressedBitmap;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A predicate on forms, evaluated to the bitmap of the IDs of the matching forms.
+ * Filters are combined with {@link #and}, {@link #or} and {@link #not}, and evaluated by {@link FormQuery#select}, e.g.
+ * <pre>
+ * FormFilter filter = FormFilter.language("family", "Austronesian")
+ *         .and(FormFilter.language("macroarea", "Papunesia"))
+ *         .and(FormFilter.parameter("concepticonID", concepticonIDs))
+ *         .and(FormFilter.hasCognate());
+ * List&lt;CLDFForm&gt; forms = database.selectForms(filter).toList();
+ * </pre>
+ * Column filters are checked when they are evaluated: a column that is neither a built-in column nor a property key
+ * of any row throws an IllegalArgumentException.
+ */
+@FunctionalInterface
+public interface FormFilter {
+
+    CompressedBitmap evaluate(FormQuery query);
+
+    default FormFilter and(FormFilter other) {
+        return query -> {
+            CompressedBitmap left = evaluate(query);
+            return left.isEmpty() ? left : left.and(other.evaluate(query));
+        };
+    }
+
+    default FormFilter or(FormFilter other) {
+        return query -> evaluate(query).or(other.evaluate(query));
+    }
+
+    default FormFilter not() {
+        return query -> query.all().andNot(evaluate(query));
+    }
+
+    static FormFilter all() {
+        return FormQuery::all;
+    }
+
+    /**
+     * Forms with one of the values in a FormTable column, see {@link CLDFWordlistDatabase#getFormIndex(String)}.
+     */
+    static FormFilter form(String column, String... values) {
+        return form(column, Arrays.asList(values));
+    }
+
+    static FormFilter form(String column, Collection<String> values) {
+        return query -> query.forms(column, values);
+    }
+
+    /**
+     * Forms of the languages with one of the values in a LanguageTable column, see {@link CLDFWordlistDatabase#getLanguageIndex(String)}.
+     */
+    static FormFilter language(String column, String... values) {
+        return language(column, Arrays.asList(values));
+    }
+
+    static FormFilter language(String column, Collection<String> values) {
+        return query -> query.languages(column, values);
+    }
+
+    /**
+     * Forms of the parameters with one of the values in a ParameterTable column, see {@link CLDFWordlistDatabase#getParameterIndex(String)}.
+     */
+    static FormFilter parameter(String column, String... values) {
+        return parameter(column, Arrays.asList(values));
+    }
+
+    static FormFilter parameter(String column, Collection<String> values) {
+        return query -> query.parameters(column, values);
+    }
+
+    /**
+     * Forms with a cognate judgement.
+     */
+    static FormFilter hasCognate() {
+        return FormQuery::withCognate;
+    }
+
+    /**
+     * Forms in one of the cognate sets.
+     */
+    static FormFilter cognateSet(String... cogsetIDs) {
+        return cognateSet(Arrays.asList(cogsetIDs));
+    }
+
+    static FormFilter cognateSet(Collection<String> cogsetIDs) {
+        return query -> query.cognateSets(cogsetIDs);
+    }
+}
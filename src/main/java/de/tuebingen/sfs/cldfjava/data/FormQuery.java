@@ -0,0 +1,120 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import de.tuebingen.sfs.cldfjava.util.CompressedBitmap;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates {@link FormFilter}s against the bitmap indexes of a database.
+ * The bitmap for a column value is built from the secondary indexes of the database on first use and kept,
+ * so repeated queries only combine bitmaps. A query engine belongs to one state of the database;
+ * {@link CLDFWordlistDatabase#getFormQuery()} creates a new one after a table was replaced.
+ */
+public class FormQuery {
+    private final CLDFWordlistDatabase database;
+    private final CLDFForm[] forms; //by form ID, for materializing results
+    private final CompressedBitmap all;
+    private final Map<String, CompressedBitmap> bitmaps = new ConcurrentHashMap<>();
+    private volatile CompressedBitmap withCognate;
+
+    FormQuery(CLDFWordlistDatabase database) {
+        this.database = database;
+        this.forms = database.getFormArray();
+        CompressedBitmap.Builder builder = new CompressedBitmap.Builder();
+        for (int id = 0; id < forms.length; id++) {
+            if (forms[id] != null) builder.add(id);
+        }
+        this.all = builder.build();
+    }
+
+    /**
+     * @return the matching forms; the form objects are only looked up when the selection is iterated
+     */
+    public FormSelection select(FormFilter filter) {
+        return new FormSelection(filter.evaluate(this), forms);
+    }
+
+    /**
+     * @return the IDs of all forms
+     */
+    public CompressedBitmap all() {
+        return all;
+    }
+
+    public CompressedBitmap forms(String column, Collection<String> values) {
+        return union(values, value -> cached("form\u0000" + column + "\u0000" + value,
+                () -> CompressedBitmap.of(database.getFormIndex(column).getRowIds(value))));
+    }
+
+    public CompressedBitmap languages(String column, Collection<String> values) {
+        return union(values, value -> cached("language\u0000" + column + "\u0000" + value, () -> {
+            SecondaryIndex<CLDFLanguage> index = database.getLanguageIndex(column);
+            List<String> langIDs = new ArrayList<>();
+            for (int row : index.getRowIds(value)) {
+                langIDs.add(index.getRow(row).getLangID());
+            }
+            return forms("langID", langIDs);
+        }));
+    }
+
+    public CompressedBitmap parameters(String column, Collection<String> values) {
+        return union(values, value -> cached("parameter\u0000" + column + "\u0000" + value, () -> {
+            SecondaryIndex<CLDFParameter> index = database.getParameterIndex(column);
+            List<String> paramIDs = new ArrayList<>();
+            for (int row : index.getRowIds(value)) {
+                paramIDs.add(index.getRow(row).getParamID());
+            }
+            return forms("paramID", paramIDs);
+        }));
+    }
+
+    public CompressedBitmap withCognate() {
+        CompressedBitmap bitmap = withCognate;
+        if (bitmap == null) {
+            int[] formOffsets = database.getCognateIndex().getFormOffsets();
+            CompressedBitmap.Builder builder = new CompressedBitmap.Builder();
+            for (int id = 0; id < formOffsets.length - 1; id++) {
+                if (formOffsets[id + 1] > formOffsets[id]) builder.add(id);
+            }
+            bitmap = builder.build();
+            withCognate = bitmap;
+        }
+        return bitmap;
+    }
+
+    public CompressedBitmap cognateSets(Collection<String> cogsetIDs) {
+        return union(cogsetIDs, cogsetID -> cached("cognateSet\u0000" + cogsetID, () -> {
+            CognateIndex index = database.getCognateIndex();
+            int cogset = index.indexOf(cogsetID);
+            if (cogset == -1) {
+                return CompressedBitmap.EMPTY;
+            }
+            int[] offsets = index.getOffsets();
+            return CompressedBitmap.of(Arrays.copyOfRange(index.getFormIds(), offsets[cogset], offsets[cogset + 1]));
+        }));
+    }
+
+    //not computeIfAbsent, since building a language or parameter bitmap caches the bitmaps of its forms
+    private CompressedBitmap cached(String key, Supplier<CompressedBitmap> build) {
+        CompressedBitmap bitmap = bitmaps.get(key);
+        if (bitmap == null) {
+            bitmap = build.get();
+            CompressedBitmap previous = bitmaps.putIfAbsent(key, bitmap);
+            if (previous != null) {
+                bitmap = previous;
+            }
+        }
+        return bitmap;
+    }
+
+    private static CompressedBitmap union(Collection<String> values, Function<String, CompressedBitmap> bitmap) {
+        CompressedBitmap result = CompressedBitmap.EMPTY;
+        for (String value : values) {
+            result = result.or(bitmap.apply(value));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,223 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Draws random forms from a database, reproducibly for a given seed.
+ * A sampler is backed by a {@link SplittableRandom} and is not thread-safe; parallel workers each get their own
+ * sampler from {@link #split(int)}, so the draws only depend on the seed and the number of workers.
+ * Samples are arrays of form IDs; {@link #getForm(int)} looks up the forms.
+ * Stratified samples follow the language order of the {@link LanguageConceptMatrix} and the concept order of {@link FormsByConcept}.
+ */
+public class FormSampler {
+    private final Pools pools;
+    private final SplittableRandom random;
+
+    //the populations to draw from, shared by a sampler and its splits; taken when the sampler is created,
+    //so that all draws see the same forms even if the database changes
+    private static class Pools {
+        final CLDFForm[] forms;
+        final int[] formIds;
+        final SecondaryIndex<CLDFForm> languages;
+        final LanguageConceptMatrix matrix;
+        final FormsByConcept concepts;
+
+        Pools(CLDFWordlistDatabase database) {
+            this.forms = database.getFormArray();
+            this.languages = database.getFormIndex("langID");
+            this.matrix = database.getLanguageConceptMatrix();
+            this.concepts = database.getFormsByConcept();
+            int count = 0;
+            for (CLDFForm form : forms) {
+                if (form != null) count++;
+            }
+            this.formIds = new int[count];
+            count = 0;
+            for (int id = 0; id < forms.length; id++) {
+                if (forms[id] != null) formIds[count++] = id;
+            }
+        }
+    }
+
+    FormSampler(CLDFWordlistDatabase database, long seed) {
+        this(new Pools(database), new SplittableRandom(seed));
+    }
+
+    private FormSampler(Pools pools, SplittableRandom random) {
+        this.pools = pools;
+        this.random = random;
+    }
+
+    /**
+     * @return a new sampler with a random generator split off from this one
+     */
+    public FormSampler split() {
+        return new FormSampler(pools, random.split());
+    }
+
+    /**
+     * @return one sampler per worker, split off in order
+     */
+    public List<FormSampler> split(int workers) {
+        List<FormSampler> samplers = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            samplers.add(split());
+        }
+        return samplers;
+    }
+
+    public CLDFForm getForm(int formId) {
+        return pools.forms[formId];
+    }
+
+    /**
+     * @return the ID of a form drawn uniformly from all forms, or -1 if there are none
+     */
+    public int nextFormId() {
+        return pools.formIds.length == 0 ? -1 : pools.formIds[random.nextInt(pools.formIds.length)];
+    }
+
+    /**
+     * @return a form drawn uniformly from the forms of a language, or null if it has none
+     */
+    public CLDFForm nextFormForLanguage(String langID) {
+        int[] ids = pools.languages.getRowIds(langID);
+        return ids.length == 0 ? null : pools.forms[ids[random.nextInt(ids.length)]];
+    }
+
+    /**
+     * Fills an array with IDs drawn uniformly, with replacement, from all forms.
+     */
+    public void nextFormIds(int[] target) {
+        int[] ids = pools.formIds;
+        if (ids.length == 0 && target.length > 0) {
+            throw new IllegalStateException("no forms to sample from");
+        }
+        for (int i = 0; i < target.length; i++) {
+            target[i] = ids[random.nextInt(ids.length)];
+        }
+    }
+
+    /**
+     * @return a stream of form IDs drawn with replacement; it may be parallel and is reproducible for the seed
+     */
+    public IntStream formIds(long count) {
+        int[] ids = pools.formIds;
+        if (ids.length == 0) {
+            if (count > 0) {
+                throw new IllegalStateException("no forms to sample from");
+            }
+            return IntStream.empty();
+        }
+        return random.split().ints(count, 0, ids.length).map(i -> ids[i]);
+    }
+
+    /**
+     * @param replacement whether a form may be drawn more than once
+     * @throws IllegalArgumentException if more forms than available are requested without replacement
+     */
+    public int[] sample(int size, boolean replacement) {
+        return draw(pools.formIds.length, size, replacement, pools.formIds);
+    }
+
+    public int[] sampleLanguage(String langID, int size, boolean replacement) {
+        int[] ids = pools.languages.getRowIds(langID);
+        return draw(ids.length, size, replacement, ids);
+    }
+
+    public int[] sampleConcept(String paramID, int size, boolean replacement) {
+        List<CLDFForm> forms = pools.concepts.get(paramID);
+        int[] indices = draw(forms.size(), size, replacement, null);
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = forms.get(indices[i]).getId();
+        }
+        return indices;
+    }
+
+    /**
+     * Draws the same number of forms from each language; without replacement, languages with fewer forms give all of them.
+     *
+     * @return the samples by language, in the row order of the {@link LanguageConceptMatrix}
+     */
+    public int[][] sampleByLanguage(int perLanguage, boolean replacement) {
+        LanguageConceptMatrix matrix = pools.matrix;
+        int[][] samples = new int[matrix.languageCount()][];
+        for (int language = 0; language < samples.length; language++) {
+            int[] ids = pools.languages.getRowIds(matrix.getLangID(language));
+            samples[language] = draw(ids.length, stratumSize(ids.length, perLanguage, replacement), replacement, ids);
+        }
+        return samples;
+    }
+
+    /**
+     * Draws the same number of forms for each concept; without replacement, concepts with fewer forms give all of them.
+     *
+     * @return the samples by concept, in the order of {@link FormsByConcept}
+     */
+    public int[][] sampleByConcept(int perConcept, boolean replacement) {
+        FormsByConcept concepts = pools.concepts;
+        int[][] samples = new int[concepts.conceptCount()][];
+        for (int concept = 0; concept < samples.length; concept++) {
+            List<CLDFForm> forms = concepts.get(concept);
+            int[] indices = draw(forms.size(), stratumSize(forms.size(), perConcept, replacement), replacement, null);
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = forms.get(indices[i]).getId();
+            }
+            samples[concept] = indices;
+        }
+        return samples;
+    }
+
+    private static int stratumSize(int available, int requested, boolean replacement) {
+        return available == 0 ? 0 : replacement ? requested : Math.min(available, requested);
+    }
+
+    //draws positions 0..population-1, mapped through the pool if there is one
+    private int[] draw(int population, int size, boolean replacement, int[] pool) {
+        if (size < 0) {
+            throw new IllegalArgumentException("negative sample size " + size);
+        }
+        int[] sample = new int[size];
+        if (size == 0) {
+            return sample;
+        }
+        if (replacement) {
+            if (population == 0) {
+                throw new IllegalArgumentException("no forms to sample from");
+            }
+            for (int i = 0; i < size; i++) {
+                sample[i] = random.nextInt(population);
+            }
+        } else if (size > population) {
+            throw new IllegalArgumentException("cannot draw " + size + " of " + population + " forms without replacement");
+        } else if (size <= population / 8) {
+            //Floyd's algorithm, which only needs space for the sample
+            Set<Integer> chosen = new HashSet<>(size * 2);
+            int n = 0;
+            for (int j = population - size; j < population; j++) {
+                int t = random.nextInt(j + 1);
+                int value = chosen.add(t) ? t : j;
+                if (value == j) chosen.add(j);
+                sample[n++] = value;
+            }
+        } else {
+            //partial Fisher-Yates shuffle
+            int[] positions = new int[population];
+            for (int i = 0; i < population; i++) positions[i] = i;
+            for (int i = 0; i < size; i++) {
+                int j = i + random.nextInt(population - i);
+                int swap = positions[i];
+                positions[i] = positions[j];
+                positions[j] = swap;
+                sample[i] = positions[i];
+            }
+        }
+        if (pool != null) {
+            for (int i = 0; i < size; i++) {
+                sample[i] = pool[sample[i]];
+            }
+        }
+        return sample;
+    }
+}
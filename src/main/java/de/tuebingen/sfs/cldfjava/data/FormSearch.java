@@ -0,0 +1,600 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import de.tuebingen.sfs.cldfjava.util.NGrams;
+import de.tuebingen.sfs.cldfjava.util.SegmentAlphabet;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Approximate search for forms by normalized edit distance, i.e. the Levenshtein distance divided by the length of
+ * the longer sequence. Forms are compared either as code points of the form column or as segment codes.
+ * <p>
+ * Identical sequences are searched once, numbered by length so that the length filter (a form within e edits of a
+ * query differs from it in length by at most e) selects a range of them. Candidates come from a bigram index over the
+ * sequences ({@link NGramIndex}): a sequence within e edits shares at least (distinct query bigrams - 2e) distinct
+ * bigrams with the query. Candidates that pass both filters are verified with the bit-parallel edit distance of Myers (in Hyyrö's
+ * formulation for global distance), which handles queries of up to 64 symbols in one machine word; longer queries
+ * fall back to a two-row dynamic program. Thresholds so loose that the bigram filter cannot prune fall back to a scan.
+ * <p>
+ * The filters prune well up to a normalized distance of about 1/3. On a synthetic dataset of one million forms
+ * (1000 languages by 1000 concepts, forms of 2 to 8 segments, see FormSearchBenchmark), top-10 searches take a median
+ * of 0.8ms at 0.2 and 3.6ms at 0.34 over forms (p90 2ms and about 10ms), and 1.4ms at 0.34 over segments. At 0.5 a query of
+ * up to 8 symbols may differ in 4 of them, which leaves the bigram filter nothing to require, and a search scans the
+ * whole length range: about 45ms over forms. Latency-bound callers should keep the threshold at about 1/3 or below,
+ * also for {@link #nearest(int[], int, double, FormFilter)}.
+ * A search is immutable and can be used from several threads. Queries are not canonized; callers should canonize
+ * form queries the same way as the FormTable was (see IPAFormCanonization).
+ */
+public class FormSearch {
+    private static final int Q = 2;
+
+    /**
+     * What forms are compared by.
+     */
+    public enum Source {
+        /**
+         * The code points of {@link CLDFForm#getForm()}.
+         */
+        FORM,
+        /**
+         * The segment codes of {@link CLDFWordlistDatabase#getSegmentPool()}.
+         */
+        SEGMENTS
+    }
+
+    /**
+     * A form found by a search.
+     */
+    public static class Match {
+        private final CLDFForm form;
+        private final int distance;
+        private final double normalizedDistance;
+
+        Match(CLDFForm form, int distance, double normalizedDistance) {
+            this.form = form;
+            this.distance = distance;
+            this.normalizedDistance = normalizedDistance;
+        }
+
+        public CLDFForm getForm() {
+            return form;
+        }
+
+        public int getFormId() {
+            return form.getId();
+        }
+
+        /**
+         * @return the number of edits
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        public double getNormalizedDistance() {
+            return normalizedDistance;
+        }
+
+        @Override
+        public String toString() {
+            return form.getId() + "\t" + form.getForm() + "\t" + distance + "\t" + normalizedDistance;
+        }
+    }
+
+    //by normalized distance, then distance, then form ID
+    private static int compare(double normalizedDistance1, int distance1, int formId1,
+                               double normalizedDistance2, int distance2, int formId2) {
+        int result = Double.compare(normalizedDistance1, normalizedDistance2);
+        if (result == 0) result = Integer.compare(distance1, distance2);
+        return result != 0 ? result : Integer.compare(formId1, formId2);
+    }
+
+    private static final Comparator<Match> BY_DISTANCE = (a, b) -> compare(a.normalizedDistance, a.distance,
+            a.form.getId(), b.normalizedDistance, b.distance, b.form.getId());
+
+    private final CLDFWordlistDatabase database;
+    private final Source source;
+    private final CLDFForm[] forms;
+    private final SegmentAlphabet alphabet; //null for code points
+    private final Map<Integer, Integer> codePointCodes; //dense codes of the code points of the forms, null for segments
+    private final int alphabetSize; //sequences consist of the codes 0..alphabetSize-1
+    //the distinct symbol sequences, numbered by length: sequence s is symbols[offsets[s]..offsets[s+1]]
+    private final int[] offsets;
+    private final int[] symbols;
+    private final int[] lengthStarts; //the first sequence of each length, and the number of sequences at the end
+    private final int[] formOffsets; //the forms with sequence s are formIds[formOffsets[s]..formOffsets[s+1]]
+    private final int[] formIds;
+    private final int[] sequenceOfForm; //-1 for forms without a sequence
+    private final NGramIndex index; //over the sequences
+    private final ThreadLocal<int[]> counters; //shared-bigram counts by sequence, all zero between queries
+
+    FormSearch(CLDFWordlistDatabase database, Source source) {
+        this.database = database;
+        this.source = source;
+        this.forms = database.getFormArray();
+        IntFunction<int[]> sequenceOf;
+        if (source == Source.SEGMENTS) {
+            SegmentPool pool = database.getSegmentPool();
+            this.alphabet = pool.getAlphabet();
+            this.codePointCodes = null;
+            sequenceOf = id -> id < pool.size() && pool.hasSegments(id) ? pool.getCodes(id) : null;
+        } else {
+            this.alphabet = null;
+            this.codePointCodes = new HashMap<>();
+            sequenceOf = id -> {
+                if (forms[id] == null || forms[id].getForm() == null) {
+                    return null;
+                }
+                int[] codes = NGrams.codePoints(forms[id].getForm());
+                for (int i = 0; i < codes.length; i++) {
+                    codes[i] = codePointCodes.computeIfAbsent(codes[i], c -> codePointCodes.size());
+                }
+                return codes;
+            };
+        }
+
+        //identical sequences are searched once
+        Map<Sequence, Integer> distinct = new HashMap<>();
+        List<int[]> sequences = new ArrayList<>();
+        int[] firstSequenceOfForm = new int[forms.length];
+        int maxLength = 0;
+        for (int id = 0; id < forms.length; id++) {
+            int[] sequence = sequenceOf.apply(id);
+            if (sequence == null) {
+                firstSequenceOfForm[id] = -1;
+                continue;
+            }
+            Integer s = distinct.putIfAbsent(new Sequence(sequence), sequences.size());
+            if (s == null) {
+                s = sequences.size();
+                sequences.add(sequence);
+                maxLength = Math.max(maxLength, sequence.length);
+            }
+            firstSequenceOfForm[id] = s;
+        }
+        this.alphabetSize = alphabet != null ? alphabet.size() : codePointCodes.size();
+        int bits = NGrams.bitsPerSymbol(alphabetSize);
+        //renumber by length, so that the length filter is a range of sequences
+        int count = sequences.size();
+        this.lengthStarts = new int[maxLength + 2];
+        for (int[] sequence : sequences) {
+            lengthStarts[sequence.length + 1]++;
+        }
+        for (int length = 0; length <= maxLength; length++) {
+            lengthStarts[length + 1] += lengthStarts[length];
+        }
+        int[] next = Arrays.copyOf(lengthStarts, maxLength + 1);
+        int[] renumbered = new int[count];
+        int[][] byLength = new int[count][];
+        for (int s = 0; s < count; s++) {
+            int[] sequence = sequences.get(s);
+            renumbered[s] = next[sequence.length]++;
+            byLength[renumbered[s]] = sequence;
+        }
+        this.offsets = new int[count + 1];
+        for (int s = 0; s < count; s++) {
+            offsets[s + 1] = offsets[s] + byLength[s].length;
+        }
+        this.symbols = new int[offsets[count]];
+        for (int s = 0; s < count; s++) {
+            System.arraycopy(byLength[s], 0, symbols, offsets[s], byLength[s].length);
+        }
+        this.sequenceOfForm = new int[forms.length];
+        this.formOffsets = new int[count + 1];
+        for (int id = 0; id < forms.length; id++) {
+            sequenceOfForm[id] = firstSequenceOfForm[id] < 0 ? -1 : renumbered[firstSequenceOfForm[id]];
+            if (sequenceOfForm[id] >= 0) formOffsets[sequenceOfForm[id] + 1]++;
+        }
+        for (int s = 0; s < count; s++) {
+            formOffsets[s + 1] += formOffsets[s];
+        }
+        this.formIds = new int[formOffsets[count]];
+        next = Arrays.copyOf(formOffsets, count);
+        for (int id = 0; id < forms.length; id++) {
+            if (sequenceOfForm[id] >= 0) formIds[next[sequenceOfForm[id]]++] = id;
+        }
+
+        List<int[]> partitions = new ArrayList<>();
+        for (int from = 0; from < count; from += 4096) {
+            int[] partition = new int[Math.min(4096, count - from)];
+            for (int i = 0; i < partition.length; i++) partition[i] = from + i;
+            partitions.add(partition);
+        }
+        this.index = NGramIndex.build(count, partitions, s -> byLength[s], Q, bits);
+        this.counters = ThreadLocal.withInitial(() -> new int[count]);
+    }
+
+    //an int[] as a hash key
+    private static final class Sequence {
+        final int[] symbols;
+        final int hash;
+
+        Sequence(int[] symbols) {
+            this.symbols = symbols;
+            this.hash = Arrays.hashCode(symbols);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Sequence && Arrays.equals(symbols, ((Sequence) o).symbols);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * @return the number of distinct symbol sequences, which are searched instead of the forms
+     */
+    public int getSequenceCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return the symbols of a query in the encoding of this search: the code points of a form, or the segment codes
+     * of space-separated segments, as small codes; symbols that do not occur in the forms get negative codes
+     */
+    public int[] encode(String query) {
+        Map<Object, Integer> unknown = new HashMap<>();
+        if (source == Source.FORM) {
+            int[] codes = NGrams.codePoints(query);
+            for (int i = 0; i < codes.length; i++) {
+                Integer code = codePointCodes.get(codes[i]);
+                codes[i] = code != null ? code : unknown.computeIfAbsent(codes[i], c -> -2 - unknown.size());
+            }
+            return codes;
+        }
+        String[] segments = query.trim().isEmpty() ? new String[0] : query.trim().split("\\s+");
+        int[] codes = new int[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            int code = alphabet.codeOf(segments[i]);
+            codes[i] = code >= 0 ? code : unknown.computeIfAbsent(segments[i], s -> -2 - unknown.size());
+        }
+        return codes;
+    }
+
+    /**
+     * @see #search(int[], double, int, FormFilter)
+     */
+    public List<Match> search(String query, double maxDistance, int limit, FormFilter filter) {
+        return search(encode(query), maxDistance, limit, filter);
+    }
+
+    /**
+     * Finds the forms within a normalized edit distance of a query.
+     *
+     * @param query       the query symbols, see {@link #encode(String)}
+     * @param maxDistance the maximal normalized distance, between 0 and 1
+     * @param limit       the maximal number of results
+     * @param filter      restricts the forms searched, e.g. to a concept or a language family; null for all forms
+     * @return the closest matches, by normalized distance, then distance, then form ID
+     */
+    public List<Match> search(int[] query, double maxDistance, int limit, FormFilter filter) {
+        if (Double.isNaN(maxDistance) || maxDistance < 0) {
+            throw new IllegalArgumentException("invalid maximal distance " + maxDistance);
+        }
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        double tau = Math.min(1, maxDistance);
+        int m = query.length;
+        //length filter: |m - length| <= edits <= tau * max(m, length), i.e. a range of sequences
+        int maxSequenceLength = lengthStarts.length - 2;
+        int minLength = Math.min((int) Math.ceil(m * (1 - tau) - 1e-9), maxSequenceLength + 1);
+        int maxLength = tau >= 1 ? maxSequenceLength : (int) Math.min(maxSequenceLength, Math.floor(m / (1 - tau) + 1e-9));
+        int from = lengthStarts[minLength];
+        int to = lengthStarts[Math.max(minLength, maxLength + 1)];
+        int maxEdits = maxEdits(tau, Math.max(m, maxLength));
+        FormSelection allowed = filter == null ? null : database.selectForms(filter);
+        Verifier verifier = new Verifier(query, alphabetSize);
+        TopK matches = new TopK(limit);
+
+        //count filter: a sequence within e edits shares at least (distinct query bigrams - 2e) of them, so it contains one
+        //of the 2e + 1 rarest (prefix filter); only their posting lists yield candidates, the others add to their counts
+        long[] queryGrams = index.queryGrams(query);
+        long minShared = queryGrams.length - (long) Q * maxEdits;
+        int[] gramIds = new int[queryGrams.length];
+        int present = 0;
+        for (long gram : queryGrams) {
+            int g = index.indexOf(gram);
+            if (g >= 0) gramIds[present++] = g;
+        }
+        int prefixLength = (int) Math.min(present, Math.max(0, present - minShared + 1));
+        //the posting lists restricted to the length range, rarest first
+        int[] postingOffsets = index.getOffsets();
+        int[] postings = index.getFormIds();
+        int[][] ranges = new int[present][];
+        for (int i = 0; i < present; i++) {
+            int start = postingOffsets[gramIds[i]];
+            int end = postingOffsets[gramIds[i] + 1];
+            ranges[i] = new int[]{lowerBound(postings, start, end, from), lowerBound(postings, start, end, to)};
+        }
+        Arrays.sort(ranges, Comparator.comparingInt(range -> range[1] - range[0]));
+        long work = 0;
+        for (int[] range : ranges) {
+            work += range[1] - range[0];
+        }
+
+        if (allowed != null && allowed.size() < (minShared >= 1 ? work : to - from)) {
+            //a small selection, e.g. a concept: verify its forms directly
+            allowed.getFormIds().forEach(formId -> {
+                int s = formId < sequenceOfForm.length ? sequenceOfForm[formId] : -1;
+                if (s >= from && s < to) {
+                    int distance = verify(verifier, s, tau, matches);
+                    if (distance >= 0) {
+                        matches.offer(forms[formId], distance, normalize(distance, m, offsets[s + 1] - offsets[s]));
+                    }
+                }
+            });
+        } else if (minShared >= 1) {
+            int[] counts = counters.get();
+            int[] touched = new int[64];
+            int touchedCount = 0;
+            try {
+                for (int i = 0; i < present; i++) {
+                    for (int p = ranges[i][0]; p < ranges[i][1]; p++) {
+                        int s = postings[p];
+                        if (counts[s] != 0) {
+                            counts[s]++;
+                        } else if (i < prefixLength) {
+                            counts[s] = 1;
+                            if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                            touched[touchedCount++] = s;
+                        }
+                    }
+                }
+                for (int i = 0; i < touchedCount; i++) {
+                    int s = touched[i];
+                    int bound = maxEdits(tau, Math.max(m, offsets[s + 1] - offsets[s]));
+                    //the filter again, with the bound of this sequence and its own bigrams
+                    if (counts[s] >= queryGrams.length - Q * bound && counts[s] >= index.gramCountOf(s) - Q * bound) {
+                        verifyForms(verifier, s, tau, allowed, matches);
+                    }
+                }
+            } finally {
+                for (int i = 0; i < touchedCount; i++) {
+                    counts[touched[i]] = 0;
+                }
+            }
+        } else {
+            for (int s = from; s < to; s++) {
+                verifyForms(verifier, s, tau, allowed, matches);
+            }
+        }
+        return matches.sorted();
+    }
+
+    //the first position in values[from..to] (ascending) whose value is at least the key
+    private static int lowerBound(int[] values, int from, int to, int key) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (values[middle] < key) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * @see #nearest(int[], int, FormFilter)
+     */
+    public List<Match> nearest(String query, int k, FormFilter filter) {
+        return nearest(encode(query), k, filter);
+    }
+
+    /**
+     * Finds the k forms closest to a query. Searches with growing thresholds until k forms are found,
+     * so close matches are found as fast as by {@link #search(int[], double, int, FormFilter)}; queries with fewer
+     * than k close matches end in a scan, see the class comment.
+     */
+    public List<Match> nearest(int[] query, int k, FormFilter filter) {
+        return nearest(query, k, 1.0, filter);
+    }
+
+    /**
+     * @see #nearest(int[], int, double, FormFilter)
+     */
+    public List<Match> nearest(String query, int k, double maxDistance, FormFilter filter) {
+        return nearest(encode(query), k, maxDistance, filter);
+    }
+
+    /**
+     * Finds the k forms closest to a query, but not farther than a maximal normalized distance. Searches with growing
+     * thresholds up to the maximal distance until k forms are found, so the maximal distance bounds the time a query
+     * can take.
+     *
+     * @return at most k matches, fewer if there are fewer within the maximal distance
+     */
+    public List<Match> nearest(int[] query, int k, double maxDistance, FormFilter filter) {
+        List<Match> matches = Collections.emptyList();
+        for (double tau : new double[]{0.2, 0.4, 0.6, 1.0}) {
+            matches = search(query, Math.min(tau, maxDistance), k, filter);
+            if (matches.size() >= k || tau >= maxDistance) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    private static int maxEdits(double tau, int length) {
+        return (int) Math.floor(tau * length + 1e-9);
+    }
+
+    private void verifyForms(Verifier verifier, int s, double tau, FormSelection allowed, TopK matches) {
+        int first = formOffsets[s];
+        int last = formOffsets[s + 1];
+        if (allowed != null) {
+            while (first < last && !allowed.contains(formIds[first])) first++;
+            if (first == last) return;
+        }
+        int distance = verify(verifier, s, tau, matches);
+        if (distance >= 0) {
+            double normalizedDistance = normalize(distance, verifier.length(), offsets[s + 1] - offsets[s]);
+            for (int i = first; i < last; i++) {
+                if (allowed == null || allowed.contains(formIds[i])) {
+                    matches.offer(forms[formIds[i]], distance, normalizedDistance);
+                }
+            }
+        }
+    }
+
+    //the distance between the query and sequence s, or -1 if it is too far for the threshold or the matches so far
+    private int verify(Verifier verifier, int s, double tau, TopK matches) {
+        int start = offsets[s];
+        int length = offsets[s + 1] - start;
+        int longer = Math.max(verifier.length(), length);
+        int bound = maxEdits(tau, longer);
+        if (matches.isFull()) {
+            bound = Math.min(bound, maxEdits(matches.worst().normalizedDistance, longer));
+        }
+        int distance = verifier.distance(symbols, start, length, bound);
+        return distance <= bound ? distance : -1;
+    }
+
+    private static double normalize(int distance, int length1, int length2) {
+        int longer = Math.max(length1, length2);
+        return longer == 0 ? 0 : (double) distance / longer;
+    }
+
+    //the best matches so far; once there are enough, the worst of them bounds the distance of the next ones
+    private static final class TopK {
+        private final int limit;
+        private final PriorityQueue<Match> heap = new PriorityQueue<>(BY_DISTANCE.reversed());
+
+        TopK(int limit) {
+            this.limit = limit;
+        }
+
+        void offer(CLDFForm form, int distance, double normalizedDistance) {
+            if (heap.size() < limit) {
+                heap.add(new Match(form, distance, normalizedDistance));
+            } else {
+                Match worst = heap.peek();
+                if (compare(normalizedDistance, distance, form.getId(),
+                        worst.normalizedDistance, worst.distance, worst.form.getId()) < 0) {
+                    heap.poll();
+                    heap.add(new Match(form, distance, normalizedDistance));
+                }
+            }
+        }
+
+        boolean isFull() {
+            return heap.size() >= limit;
+        }
+
+        Match worst() {
+            return heap.peek();
+        }
+
+        List<Match> sorted() {
+            List<Match> sorted = new ArrayList<>(heap);
+            sorted.sort(BY_DISTANCE);
+            return sorted;
+        }
+    }
+
+    /**
+     * Edit distances between one query and many texts.
+     */
+    private static final class Verifier {
+        private final int[] query;
+        private final long[] masks; //Myers: the positions of each symbol in the query, by symbol
+        private final int[] previous; //the rows of the dynamic program, for queries longer than 64
+        private final int[] current;
+
+        Verifier(int[] query, int alphabetSize) {
+            this.query = query;
+            if (query.length <= 64) {
+                masks = new long[alphabetSize];
+                for (int i = 0; i < query.length; i++) {
+                    //symbols beyond the alphabet of the sequences, e.g. codes of a grown segment alphabet, match nothing
+                    if (query[i] >= 0 && query[i] < alphabetSize) {
+                        masks[query[i]] |= 1L << i;
+                    }
+                }
+                previous = current = null;
+            } else {
+                masks = null;
+                previous = new int[query.length + 1];
+                current = new int[query.length + 1];
+            }
+        }
+
+        int length() {
+            return query.length;
+        }
+
+        /**
+         * @return the edit distance between the query and text[from..from+length], or bound + 1 if it exceeds the bound
+         */
+        int distance(int[] text, int from, int length, int bound) {
+            int m = query.length;
+            if (m == 0 || length == 0) {
+                return Math.max(m, length);
+            }
+            return m <= 64 ? myers(text, from, length, bound) : dynamic(text, from, length, bound);
+        }
+
+        private int myers(int[] text, int from, int length, int bound) {
+            int m = query.length;
+            long last = 1L << (m - 1);
+            long pv = -1L;
+            long mv = 0;
+            int score = m;
+            for (int j = 0; j < length; j++) {
+                long eq = masks[text[from + j]];
+                long xv = eq | mv;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                if ((ph & last) != 0) {
+                    score++;
+                } else if ((mh & last) != 0) {
+                    score--;
+                }
+                //the score drops by at most one per remaining text symbol
+                if (score - (length - j - 1) > bound) {
+                    return bound + 1;
+                }
+                ph = (ph << 1) | 1; //the first row counts the text symbols, for the distance of the whole strings
+                mh <<= 1;
+                pv = mh | ~(xv | ph);
+                mv = ph & xv;
+            }
+            return score;
+        }
+
+        private int dynamic(int[] text, int from, int length, int bound) {
+            int m = query.length;
+            int[] row = previous;
+            int[] next = current;
+            for (int i = 0; i <= m; i++) row[i] = i;
+            for (int j = 1; j <= length; j++) {
+                next[0] = j;
+                int minimum = j;
+                int symbol = text[from + j - 1];
+                for (int i = 1; i <= m; i++) {
+                    int cost = query[i - 1] == symbol ? 0 : 1;
+                    next[i] = Math.min(Math.min(row[i] + 1, next[i - 1] + 1), row[i - 1] + cost);
+                    minimum = Math.min(minimum, next[i]);
+                }
+                if (minimum > bound) {
+                    return bound + 1;
+                }
+                int[] swap = row;
+                row = next;
+                next = swap;
+            }
+            return row[m];
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import de.tuebingen.sfs.cldfjava.util.CompressedBitmap;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * The result of a {@link FormQuery}: the bitmap of the matching form IDs.
+ * Form objects are only looked up while iterating, in ascending order of their IDs.
+ */
+public class FormSelection implements Iterable<CLDFForm> {
+    private final CompressedBitmap formIds;
+    private final CLDFForm[] forms;
+
+    FormSelection(CompressedBitmap formIds, CLDFForm[] forms) {
+        this.formIds = formIds;
+        this.forms = forms;
+    }
+
+    public int size() {
+        return formIds.cardinality();
+    }
+
+    public boolean isEmpty() {
+        return formIds.isEmpty();
+    }
+
+    public boolean contains(int formId) {
+        return formIds.contains(formId);
+    }
+
+    public CompressedBitmap getFormIds() {
+        return formIds;
+    }
+
+    @Override
+    public Iterator<CLDFForm> iterator() {
+        PrimitiveIterator.OfInt ids = formIds.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return ids.hasNext();
+            }
+
+            @Override
+            public CLDFForm next() {
+                return forms[ids.nextInt()];
+            }
+        };
+    }
+
+    public Stream<CLDFForm> stream() {
+        return formIds.stream().mapToObj(id -> forms[id]);
+    }
+
+    public List<CLDFForm> toList() {
+        List<CLDFForm> result = new ArrayList<>(size());
+        formIds.forEach(id -> result.add(forms[id]));
+        return result;
+    }
+}
@@ -0,0 +1,176 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The forms of a database in concept-major order: one array with the forms of each concept in a contiguous slice,
+ * ordered by language (as in the {@link LanguageConceptMatrix}) and then by form ID.
+ * The forms of a concept are handed out as an unmodifiable list view over its slice, created once when the index is built.
+ * {@link #spliterator()} splits the concepts into parts with about the same number of forms, for parallel per-concept jobs.
+ */
+public class FormsByConcept {
+    private final CLDFForm[] forms;
+    private final int[] offsets; //the forms of concept c are forms[offsets[c]..offsets[c+1]]
+    private final ConceptSlice[] slices;
+    private final Map<String, Integer> conceptLookup;
+
+    private FormsByConcept(CLDFForm[] forms, int[] offsets, String[] paramIDs) {
+        this.forms = forms;
+        this.offsets = offsets;
+        this.slices = new ConceptSlice[paramIDs.length];
+        this.conceptLookup = new HashMap<>(paramIDs.length * 4 / 3 + 1);
+        for (int concept = 0; concept < paramIDs.length; concept++) {
+            slices[concept] = new ConceptSlice(concept, paramIDs[concept]);
+            conceptLookup.put(paramIDs[concept], concept);
+        }
+    }
+
+    /**
+     * @param matrix the matrix of the forms
+     * @param forms  the forms by form ID
+     */
+    public static FormsByConcept build(LanguageConceptMatrix matrix, CLDFForm[] forms) {
+        int[] matrixOffsets = matrix.getOffsets();
+        int[] formIds = matrix.getFormIds();
+        CLDFForm[] ordered = new CLDFForm[formIds.length];
+        int[] offsets = new int[matrix.conceptCount() + 1];
+        String[] paramIDs = new String[matrix.conceptCount()];
+        int n = 0;
+        for (int concept = 0; concept < matrix.conceptCount(); concept++) {
+            paramIDs[concept] = matrix.getParamID(concept);
+            for (int language = 0; language < matrix.languageCount(); language++) {
+                int cell = matrix.cell(language, concept);
+                for (int i = matrixOffsets[cell]; i < matrixOffsets[cell + 1]; i++) {
+                    ordered[n++] = forms[formIds[i]];
+                }
+            }
+            offsets[concept + 1] = n;
+        }
+        return new FormsByConcept(ordered, offsets, paramIDs);
+    }
+
+    public int conceptCount() {
+        return slices.length;
+    }
+
+    /**
+     * @return the forms of a concept, an empty list for unknown concepts
+     */
+    public List<CLDFForm> get(String paramID) {
+        Integer concept = conceptLookup.get(paramID);
+        return concept == null ? List.of() : slices[concept];
+    }
+
+    public ConceptSlice get(int concept) {
+        return slices[concept];
+    }
+
+    /**
+     * @return the concepts, split by the number of their forms
+     */
+    public Spliterator<ConceptSlice> spliterator() {
+        return new ConceptSpliterator(0, slices.length);
+    }
+
+    public Stream<ConceptSlice> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<ConceptSlice> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * The forms of one concept, an unmodifiable view of a slice of the form array.
+     */
+    public final class ConceptSlice extends AbstractList<CLDFForm> implements RandomAccess {
+        private final int concept;
+        private final String paramID;
+
+        private ConceptSlice(int concept, String paramID) {
+            this.concept = concept;
+            this.paramID = paramID;
+        }
+
+        public String getParamID() {
+            return paramID;
+        }
+
+        @Override
+        public CLDFForm get(int index) {
+            Objects.checkIndex(index, size());
+            return forms[offsets[concept] + index];
+        }
+
+        @Override
+        public int size() {
+            return offsets[concept + 1] - offsets[concept];
+        }
+
+        @Override
+        public void forEach(Consumer<? super CLDFForm> action) {
+            for (int i = offsets[concept]; i < offsets[concept + 1]; i++) {
+                action.accept(forms[i]);
+            }
+        }
+
+        @Override
+        public Spliterator<CLDFForm> spliterator() {
+            return Spliterators.spliterator(forms, offsets[concept], offsets[concept + 1], Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.NONNULL);
+        }
+    }
+
+    private class ConceptSpliterator implements Spliterator<ConceptSlice> {
+        private int next;
+        private final int end;
+
+        ConceptSpliterator(int next, int end) {
+            this.next = next;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super ConceptSlice> action) {
+            if (next == end) {
+                return false;
+            }
+            action.accept(slices[next++]);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super ConceptSlice> action) {
+            while (next < end) {
+                action.accept(slices[next++]);
+            }
+        }
+
+        //splits where half of the remaining forms are on each side, rather than half of the concepts
+        @Override
+        public Spliterator<ConceptSlice> trySplit() {
+            if (end - next < 2) {
+                return null;
+            }
+            int half = offsets[next] + (offsets[end] - offsets[next]) / 2;
+            int split = Arrays.binarySearch(offsets, next + 1, end, half);
+            split = split >= 0 ? split : -split - 1;
+            split = Math.max(next + 1, Math.min(end - 1, split));
+            Spliterator<ConceptSlice> prefix = new ConceptSpliterator(next, split);
+            next = split;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - next;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL | DISTINCT;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import de.tuebingen.sfs.cldfjava.util.DenseIntMap;
+import de.tuebingen.sfs.cldfjava.util.SegmentAlphabet;
+
+import java.util.*;
+import java.util.stream.Collector;
+
+/**
+ * An immutable snapshot of a {@link CLDFWordlistDatabase}, created by {@link CLDFWordlistDatabase#freeze()}.
+ * The tables and the indexes behind the lookup methods are built when the snapshot is created and held in final
+ * fields; the inherited table fields point to the same read-only views, so inherited code sees the snapshot as well.
+ * Other indexes (secondary indexes of further columns, the query engine, n-gram indexes, form search) are built on
+ * first use, each exactly once, so a snapshot can be shared by any number of reader threads.
+ * The tables and indexes are unmodifiable; the row objects are shared with the original database and must not be
+ * modified either.
+ */
+public class FrozenWordlistDatabase extends CLDFWordlistDatabase {
+    private final String path;
+    private final Map<Integer, CLDFForm> forms;
+    private final Map<String, CLDFLanguage> languages;
+    private final Map<String, CLDFParameter> parameters;
+    private final Map<Integer, CLDFCognateJudgement> cognates;
+    private final Map<String, CLDFCognateSet> cognateSets;
+    private final Map<Integer, String> originalIds;
+    private final List<String> languageIDs;
+    private final List<String[]> exceptionList;
+    private final Map<String, String> fingerprints;
+    private final ColumnarFormTable columnarForms;
+    //the maps behind the unmodifiable views, for the array accessors
+    private final DenseIntMap<CLDFForm> denseForms;
+    private final DenseIntMap<CLDFCognateJudgement> denseCognates;
+    private final DenseIntMap<String> denseOriginalIds;
+
+    private final Map<String, List<CLDFForm>> byLanguage;
+    private final Map<String, Map<String, List<CLDFForm>>> byParamIDByLanguage;
+    private final Map<String, Set<Integer>> cogsetToCognates;
+
+    FrozenWordlistDatabase(CLDFWordlistDatabase database) {
+        this.path = database.getCurrentPath();
+        this.columnarForms = database.getColumnarForms();
+        //the columnar form map is a read-only view already, object maps are copied
+        this.denseForms = columnarForms != null ? null : new DenseIntMap<>(database.getFormsMap());
+        this.forms = columnarForms != null ? database.getFormsMap() : Collections.unmodifiableMap(denseForms);
+        this.languages = Collections.unmodifiableMap(new HashMap<>(database.getLanguageMap()));
+        this.parameters = Collections.unmodifiableMap(new HashMap<>(database.getConceptMap()));
+        this.denseCognates = new DenseIntMap<>(database.getCognateMap());
+        this.cognates = Collections.unmodifiableMap(denseCognates);
+        this.cognateSets = database.getCognateSetMap() == null ? null : Collections.unmodifiableMap(new HashMap<>(database.getCognateSetMap()));
+        this.denseOriginalIds = new DenseIntMap<>(database.getOriginalFormIds());
+        this.originalIds = Collections.unmodifiableMap(denseOriginalIds);
+        this.languageIDs = List.copyOf(database.getLangIDs());
+        this.exceptionList = database.getExceptions() == null ? null : List.copyOf(database.getExceptions());
+        this.fingerprints = database.getFileFingerprints() == null ? null : Map.copyOf(database.getFileFingerprints());
+        this.currentPath = path; //the public field, for code that reads it directly
+        //the inherited fields, for inherited code that reads them directly
+        this.idToForm = forms;
+        this.langIDToLang = languages;
+        this.paramIDToParam = parameters;
+        this.cognateIDToCognate = cognates;
+        this.cogsetIDToCogset = cognateSets;
+        this.originalFormIds = originalIds;
+        this.langIDs = languageIDs;
+        this.exceptions = exceptionList;
+        this.fileFingerprints = fingerprints;
+        this.formTable = columnarForms;
+        this.segmentAlphabet = columnarForms != null ? columnarForms.getSegmentPool().getAlphabet() : database.getSegmentAlphabet();
+
+        CLDFForm[] formsById = forms.values().toArray(new CLDFForm[0]);
+        Arrays.parallelSort(formsById, Comparator.comparingInt(CLDFForm::getId));
+        this.byLanguage = freezeLists(Arrays.stream(formsById).parallel().collect(groupingByLanguage()));
+        this.byParamIDByLanguage = freezeNested(Arrays.stream(formsById).parallel().collect(groupingByParamIDAndLanguage()));
+        this.cogsetToCognates = freezeSets(cognates.values().parallelStream().collect(groupingByCognateSet()));
+        this.formsByLanguage = byLanguage;
+        this.formsByLanguageByParamID = byParamIDByLanguage;
+        //the indexes behind the lookup methods; further indexes are built on first use
+        getFormIndex("langID");
+        getLanguageIndex("iso");
+        getLanguageIndex("glottocode");
+        getCognateIndex();
+        getFormsByConcept();
+        getSpatialIndex();
+        getSegmentPool();
+    }
+
+    /*
+     * The indexes are built by parallel collects: each thread fills its own partial map from a part of the forms,
+     * then the partial maps are merged. Lists keep the order of the form IDs because the combiner appends the right part to the left one.
+     */
+
+    private static Collector<CLDFForm, ?, Map<String, List<CLDFForm>>> groupingByLanguage() {
+        return Collector.of(HashMap::new,
+                (Map<String, List<CLDFForm>> map, CLDFForm form) -> map.computeIfAbsent(form.getLangID(), k -> new ArrayList<>()).add(form),
+                FrozenWordlistDatabase::mergeLists);
+    }
+
+    private static Collector<CLDFForm, ?, Map<String, Map<String, List<CLDFForm>>>> groupingByParamIDAndLanguage() {
+        return Collector.of(HashMap::new,
+                (Map<String, Map<String, List<CLDFForm>>> map, CLDFForm form) -> {
+                    for (String paramID : form.getParamIDs()) {
+                        map.computeIfAbsent(paramID, k -> new HashMap<>()).computeIfAbsent(form.getLangID(), k -> new ArrayList<>()).add(form);
+                    }
+                },
+                (left, right) -> {
+                    right.forEach((paramID, byLanguage) -> left.merge(paramID, byLanguage, FrozenWordlistDatabase::mergeLists));
+                    return left;
+                });
+    }
+
+    private static Collector<CLDFCognateJudgement, ?, Map<String, Set<Integer>>> groupingByCognateSet() {
+        return Collector.of(HashMap::new,
+                (Map<String, Set<Integer>> map, CLDFCognateJudgement cognate) ->
+                        map.computeIfAbsent(cognate.getCognatesetReference(), k -> new HashSet<>()).add(cognate.getFormReference()),
+                (left, right) -> {
+                    right.forEach((cogsetID, formIDs) -> left.merge(cogsetID, formIDs, (a, b) -> {
+                        a.addAll(b);
+                        return a;
+                    }));
+                    return left;
+                });
+    }
+
+    private static <K> Map<K, List<CLDFForm>> mergeLists(Map<K, List<CLDFForm>> left, Map<K, List<CLDFForm>> right) {
+        right.forEach((key, forms) -> left.merge(key, forms, (a, b) -> {
+            a.addAll(b);
+            return a;
+        }));
+        return left;
+    }
+
+    private static <K, V> Map<K, List<V>> freezeLists(Map<K, List<V>> map) {
+        map.replaceAll((key, list) -> Collections.unmodifiableList(list));
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static <K, V> Map<K, Set<V>> freezeSets(Map<K, Set<V>> map) {
+        map.replaceAll((key, set) -> Collections.unmodifiableSet(set));
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static <K1, K2, V> Map<K1, Map<K2, List<V>>> freezeNested(Map<K1, Map<K2, List<V>>> map) {
+        map.replaceAll((key, inner) -> freezeLists(inner));
+        return Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public FrozenWordlistDatabase freeze() {
+        return this;
+    }
+
+    @Override
+    public List<String[]> getExceptions() {
+        return exceptionList;
+    }
+
+    @Override
+    public Map<String, String> getFileFingerprints() {
+        return fingerprints;
+    }
+
+    @Override
+    public ColumnarFormTable getColumnarForms() {
+        return columnarForms;
+    }
+
+    @Override
+    public Map<Integer, String> getOriginalFormIds() {
+        return originalIds;
+    }
+
+    @Override
+    public CLDFForm[] getFormArray() {
+        return denseForms != null ? denseForms.toArray(CLDFForm[]::new) : super.getFormArray();
+    }
+
+    @Override
+    public CLDFCognateJudgement[] getCognateArray() {
+        return denseCognates.toArray(CLDFCognateJudgement[]::new);
+    }
+
+    @Override
+    public String[] getOriginalFormIdArray() {
+        return denseOriginalIds.toArray(String[]::new);
+    }
+
+    @Override
+    public String getCurrentPath() {
+        return path;
+    }
+
+    @Override
+    public Map<Integer, CLDFForm> getFormsMap() {
+        return forms;
+    }
+
+    @Override
+    public Map<String, CLDFLanguage> getLanguageMap() {
+        return languages;
+    }
+
+    @Override
+    public Map<String, CLDFParameter> getConceptMap() {
+        return parameters;
+    }
+
+    @Override
+    public Map<Integer, CLDFCognateJudgement> getCognateMap() {
+        return cognates;
+    }
+
+    @Override
+    public Map<String, CLDFCognateSet> getCognateSetMap() {
+        return cognateSets;
+    }
+
+    @Override
+    public List<String> getLangIDs() {
+        return languageIDs;
+    }
+
+    @Override
+    public List<CLDFForm> getFormsByLanguage(String key) {
+        return byLanguage.get(key);
+    }
+
+    /**
+     * @return the cognate sets and the IDs of their forms; unlike for a mutable database, the map is unmodifiable
+     */
+    @Override
+    public Map<String, Set<Integer>> getCogsetToCognates() {
+        return cogsetToCognates;
+    }
+
+    @Override
+    public List<String> listLanguageISOs() {
+        List<String> isoCodes = new ArrayList<>(languages.size());
+        for (CLDFLanguage language : languages.values()) {
+            isoCodes.add(language.getIso());
+        }
+        return isoCodes;
+    }
+
+
+    /**
+     * Does nothing, the index is built when the snapshot is created.
+     */
+    @Override
+    public void cacheFormsByLanguage() {
+    }
+
+    @Override
+    public Map<String, List<CLDFForm>> getFormsByLanguageByParamID(String paramID) {
+        return byParamIDByLanguage.get(paramID);
+    }
+
+    @Override
+    public void setExceptions(List<String[]> exceptions) {
+        throw immutable();
+    }
+
+    @Override
+    public void setFileFingerprints(Map<String, String> fileFingerprints) {
+        throw immutable();
+    }
+
+    @Override
+    public void setCurrentPath(String path) {
+        throw immutable();
+    }
+
+    @Override
+    public void setSegmentAlphabet(SegmentAlphabet segmentAlphabet) {
+        throw immutable();
+    }
+
+    @Override
+    public void replaceForms(Map<Integer, CLDFForm> idToForm, Map<Integer, String> originalFormIds) {
+        throw immutable();
+    }
+
+    @Override
+    public void replaceLanguages(Map<String, CLDFLanguage> langIDToLang) {
+        throw immutable();
+    }
+
+    @Override
+    public void replaceParameters(Map<String, CLDFParameter> paramIDToParam) {
+        throw immutable();
+    }
+
+    @Override
+    public void replaceCognates(Map<Integer, CLDFCognateJudgement> cognateIDToCognate) {
+        throw immutable();
+    }
+
+    @Override
+    public void replaceCognateSets(Map<String, CLDFCognateSet> cogsetIDToCogset) {
+        throw immutable();
+    }
+
+    @Override
+    public void useColumnarForms() {
+        if (columnarForms == null) {
+            throw immutable();
+        }
+    }
+
+    private static UnsupportedOperationException immutable() {
+        return new UnsupportedOperationException("a frozen database cannot be modified");
+    }
+}
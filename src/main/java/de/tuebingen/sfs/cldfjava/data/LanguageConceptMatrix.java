@@ -0,0 +1,273 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import java.util.*;
+
+/**
+ * The forms of a database arranged as a matrix with a row per language and a column per concept (parameter).
+ * Languages and concepts are numbered densely: languages in the order of {@link CLDFWordlistDatabase#getLangIDs()},
+ * concepts in the order of their sorted IDs, each followed by the IDs that only occur in the FormTable.
+ * The form IDs of all cells are stored in one int array, row after row; the forms of cell (language, concept) are
+ * formIds[offsets[c]..offsets[c+1]] with c = language * conceptCount + concept, in ascending order.
+ * A form with several parameters is listed in the cell of each of them.
+ * The accessors return the internal arrays without copying them, so they must not be modified.
+ */
+public class LanguageConceptMatrix {
+    private final String[] langIDs;
+    private final String[] paramIDs;
+    private final Map<String, Integer> languageLookup;
+    private final Map<String, Integer> conceptLookup;
+    private final int[] offsets;
+    private final int[] formIds;
+
+    /**
+     * Receives the forms while iterating over a row, column or cell.
+     */
+    @FunctionalInterface
+    public interface CellConsumer {
+        void accept(int language, int concept, int formId);
+    }
+
+    private LanguageConceptMatrix(List<String> langIDs, List<String> paramIDs, Map<String, Integer> languageLookup,
+                                  Map<String, Integer> conceptLookup, int[] offsets, int[] formIds) {
+        this.langIDs = langIDs.toArray(new String[0]);
+        this.paramIDs = paramIDs.toArray(new String[0]);
+        this.languageLookup = languageLookup;
+        this.conceptLookup = conceptLookup;
+        this.offsets = offsets;
+        this.formIds = formIds;
+    }
+
+    /**
+     * @param forms    the forms by form ID; null entries are skipped
+     * @param langIDs  the languages, in the order of the rows
+     * @param paramIDs the concepts, in the order of the columns
+     */
+    public static LanguageConceptMatrix build(CLDFForm[] forms, Collection<String> langIDs, Collection<String> paramIDs) {
+        List<String> languages = new ArrayList<>(langIDs);
+        List<String> concepts = new ArrayList<>(paramIDs);
+        Map<String, Integer> languageLookup = lookup(languages);
+        Map<String, Integer> conceptLookup = lookup(concepts);
+
+        //first pass: number the references and count the forms per cell, in a flat list of (cell, form) pairs
+        int[] formLanguage = new int[forms.length];
+        int[] conceptOffsets = new int[forms.length + 1];
+        int[] formConcepts = new int[forms.length];
+        int entries = 0;
+        for (int id = 0; id < forms.length; id++) {
+            CLDFForm form = forms[id];
+            if (form != null) {
+                formLanguage[id] = ordinal(form.getLangID(), languageLookup, languages);
+                for (String paramID : form.getParamIDs()) {
+                    if (entries == formConcepts.length) {
+                        formConcepts = Arrays.copyOf(formConcepts, entries * 2 + 1);
+                    }
+                    formConcepts[entries++] = ordinal(paramID, conceptLookup, concepts);
+                }
+            }
+            conceptOffsets[id + 1] = entries;
+        }
+
+        int conceptCount = concepts.size();
+        int[] offsets = new int[Math.multiplyExact(languages.size(), conceptCount) + 1];
+        for (int id = 0; id < forms.length; id++) {
+            for (int i = conceptOffsets[id]; i < conceptOffsets[id + 1]; i++) {
+                offsets[formLanguage[id] * conceptCount + formConcepts[i] + 1]++;
+            }
+        }
+        for (int cell = 1; cell < offsets.length; cell++) {
+            offsets[cell] += offsets[cell - 1];
+        }
+
+        //second pass: forms are visited in ID order, so each cell comes out sorted
+        int[] formIds = new int[entries];
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int id = 0; id < forms.length; id++) {
+            for (int i = conceptOffsets[id]; i < conceptOffsets[id + 1]; i++) {
+                int cell = formLanguage[id] * conceptCount + formConcepts[i];
+                if (next[cell] == offsets[cell] || formIds[next[cell] - 1] != id) { //a concept repeated within one form
+                    formIds[next[cell]++] = id;
+                }
+            }
+        }
+        //repeated concepts leave gaps, which are closed by compacting the cells
+        if (entries > 0 && !Arrays.equals(next, 0, next.length, offsets, 1, offsets.length)) {
+            int filled = 0;
+            for (int cell = 0; cell < next.length; cell++) {
+                int start = offsets[cell];
+                offsets[cell] = filled;
+                for (int i = start; i < next[cell]; i++) {
+                    formIds[filled++] = formIds[i];
+                }
+            }
+            offsets[next.length] = filled;
+            formIds = Arrays.copyOf(formIds, filled);
+        }
+        return new LanguageConceptMatrix(languages, concepts, languageLookup, conceptLookup, offsets, formIds);
+    }
+
+    private static Map<String, Integer> lookup(List<String> ids) {
+        Map<String, Integer> lookup = new HashMap<>(ids.size() * 4 / 3 + 1);
+        for (int i = 0; i < ids.size(); i++) {
+            lookup.putIfAbsent(ids.get(i), i);
+        }
+        return lookup;
+    }
+
+    private static int ordinal(String id, Map<String, Integer> lookup, List<String> ids) {
+        Integer ordinal = lookup.get(id);
+        if (ordinal == null) {
+            ordinal = ids.size();
+            lookup.put(id, ordinal);
+            ids.add(id);
+        }
+        return ordinal;
+    }
+
+    public int languageCount() {
+        return langIDs.length;
+    }
+
+    public int conceptCount() {
+        return paramIDs.length;
+    }
+
+    public String getLangID(int language) {
+        return langIDs[language];
+    }
+
+    public String getParamID(int concept) {
+        return paramIDs[concept];
+    }
+
+    /**
+     * @return the row of a language, or -1
+     */
+    public int indexOfLanguage(String langID) {
+        Integer language = languageLookup.get(langID);
+        return language == null ? -1 : language;
+    }
+
+    /**
+     * @return the column of a concept, or -1
+     */
+    public int indexOfConcept(String paramID) {
+        Integer concept = conceptLookup.get(paramID);
+        return concept == null ? -1 : concept;
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int[] getFormIds() {
+        return formIds;
+    }
+
+    /**
+     * @return the index of a cell into {@link #getOffsets()}
+     */
+    public int cell(int language, int concept) {
+        return language * paramIDs.length + concept;
+    }
+
+    public int cellSize(int language, int concept) {
+        int cell = cell(language, concept);
+        return offsets[cell + 1] - offsets[cell];
+    }
+
+    /**
+     * @return a copy of the form IDs of a cell
+     */
+    public int[] getCell(int language, int concept) {
+        int cell = cell(language, concept);
+        return Arrays.copyOfRange(formIds, offsets[cell], offsets[cell + 1]);
+    }
+
+    public void forEachInCell(int language, int concept, CellConsumer action) {
+        int cell = cell(language, concept);
+        for (int i = offsets[cell]; i < offsets[cell + 1]; i++) {
+            action.accept(language, concept, formIds[i]);
+        }
+    }
+
+    /**
+     * Iterates over the forms of a language, concept by concept.
+     */
+    public void forEachInRow(int language, CellConsumer action) {
+        int first = cell(language, 0);
+        for (int concept = 0; concept < paramIDs.length; concept++) {
+            for (int i = offsets[first + concept]; i < offsets[first + concept + 1]; i++) {
+                action.accept(language, concept, formIds[i]);
+            }
+        }
+    }
+
+    /**
+     * Iterates over the forms of a concept, language by language.
+     */
+    public void forEachInColumn(int concept, CellConsumer action) {
+        for (int language = 0, cell = concept; language < langIDs.length; language++, cell += paramIDs.length) {
+            for (int i = offsets[cell]; i < offsets[cell + 1]; i++) {
+                action.accept(language, concept, formIds[i]);
+            }
+        }
+    }
+
+    //coverage
+
+    /**
+     * @return the number of cells with at least one form
+     */
+    public int filledCells() {
+        int filled = 0;
+        for (int cell = 0; cell + 1 < offsets.length; cell++) {
+            if (offsets[cell + 1] > offsets[cell]) filled++;
+        }
+        return filled;
+    }
+
+    /**
+     * @return the share of cells with at least one form
+     */
+    public double density() {
+        int cells = offsets.length - 1;
+        return cells == 0 ? 0 : (double) filledCells() / cells;
+    }
+
+    /**
+     * @return for each language, the number of concepts it has forms for
+     */
+    public int[] languageCoverage() {
+        int[] coverage = new int[langIDs.length];
+        for (int cell = 0; cell + 1 < offsets.length; cell++) {
+            if (offsets[cell + 1] > offsets[cell]) coverage[cell / paramIDs.length]++;
+        }
+        return coverage;
+    }
+
+    /**
+     * @return for each concept, the number of languages that have forms for it
+     */
+    public int[] conceptCoverage() {
+        int[] coverage = new int[paramIDs.length];
+        for (int cell = 0; cell + 1 < offsets.length; cell++) {
+            if (offsets[cell + 1] > offsets[cell]) coverage[cell % paramIDs.length]++;
+        }
+        return coverage;
+    }
+
+    /**
+     * @return for each concept, the average number of forms per language that has forms for it (synonymy)
+     */
+    public double[] conceptSynonymy() {
+        int[] coverage = conceptCoverage();
+        double[] synonymy = new double[paramIDs.length];
+        for (int cell = 0; cell + 1 < offsets.length; cell++) {
+            synonymy[cell % paramIDs.length] += offsets[cell + 1] - offsets[cell];
+        }
+        for (int concept = 0; concept < synonymy.length; concept++) {
+            synonymy[concept] = coverage[concept] == 0 ? 0 : synonymy[concept] / coverage[concept];
+        }
+        return synonymy;
+    }
+}
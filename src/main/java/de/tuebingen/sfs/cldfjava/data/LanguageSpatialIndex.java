@@ -0,0 +1,303 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * A spatial index over the coordinates of the languages, for k-nearest, radius, bounding box and pair queries.
+ * Coordinates are mapped to points on the unit sphere and stored in a balanced 3-d tree (k-d tree), where the
+ * straight-line distance between points grows with the great-circle distance, so no query has to special-case
+ * the poles or the antimeridian. Distances are great-circle distances in kilometres on a spherical Earth.
+ * Languages without valid coordinates (NaN or out of range) are not in the tree; see {@link #getUnlocated()}.
+ */
+public class LanguageSpatialIndex {
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final CLDFLanguage[] languages; //in tree order: the node of a range is at its middle
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final CLDFLanguage[] byLatitude;
+    private final List<CLDFLanguage> unlocated;
+
+    /**
+     * Receives the pairs of {@link #forEachPairWithin(double, PairConsumer)}.
+     */
+    @FunctionalInterface
+    public interface PairConsumer {
+        void accept(CLDFLanguage a, CLDFLanguage b, double distanceKm);
+    }
+
+    public LanguageSpatialIndex(Collection<CLDFLanguage> languages) {
+        List<CLDFLanguage> located = new ArrayList<>();
+        List<CLDFLanguage> unlocated = new ArrayList<>();
+        for (CLDFLanguage language : languages) {
+            (isLocated(language) ? located : unlocated).add(language);
+        }
+        this.unlocated = Collections.unmodifiableList(unlocated);
+        int n = located.size();
+        double[][] points = new double[n][];
+        for (int i = 0; i < n; i++) {
+            points[i] = point(located.get(i).getLatitude(), located.get(i).getLongitude());
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        build(order, points, 0, n, 0);
+        this.languages = new CLDFLanguage[n];
+        this.xs = new double[n];
+        this.ys = new double[n];
+        this.zs = new double[n];
+        for (int i = 0; i < n; i++) {
+            this.languages[i] = located.get(order[i]);
+            xs[i] = points[order[i]][0];
+            ys[i] = points[order[i]][1];
+            zs[i] = points[order[i]][2];
+        }
+        this.byLatitude = located.toArray(new CLDFLanguage[0]);
+        Arrays.sort(byLatitude, Comparator.comparingDouble(CLDFLanguage::getLatitude));
+    }
+
+    public static boolean isLocated(CLDFLanguage language) {
+        float lat = language.getLatitude();
+        float lon = language.getLongitude();
+        return !Float.isNaN(lat) && !Float.isNaN(lon) && Math.abs(lat) <= 90 && Math.abs(lon) <= 180;
+    }
+
+    /**
+     * @return the great-circle distance in kilometres, NaN if a coordinate is NaN
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    public static double distanceKm(CLDFLanguage a, CLDFLanguage b) {
+        return distanceKm(a.getLatitude(), a.getLongitude(), b.getLatitude(), b.getLongitude());
+    }
+
+    /**
+     * @return the number of languages in the tree
+     */
+    public int size() {
+        return languages.length;
+    }
+
+    /**
+     * @return the languages without valid coordinates
+     */
+    public List<CLDFLanguage> getUnlocated() {
+        return unlocated;
+    }
+
+    /**
+     * @return the k languages closest to the point, nearest first; empty for NaN coordinates
+     */
+    public List<CLDFLanguage> nearest(double lat, double lon, int k) {
+        if (k <= 0 || languages.length == 0 || Double.isNaN(lat) || Double.isNaN(lon)) {
+            return new ArrayList<>();
+        }
+        double[] p = point(lat, lon);
+        Heap heap = new Heap(Math.min(k, languages.length));
+        nearest(p, 0, languages.length, 0, heap);
+        return heap.sorted();
+    }
+
+    /**
+     * @return the k languages closest to a language, excluding itself, nearest first; empty if it has no coordinates
+     */
+    public List<CLDFLanguage> nearest(CLDFLanguage language, int k) {
+        if (!isLocated(language)) {
+            return new ArrayList<>();
+        }
+        List<CLDFLanguage> result = nearest(language.getLatitude(), language.getLongitude(), k + 1);
+        if (!result.remove(language) && result.size() > k) {
+            result.remove(result.size() - 1);
+        }
+        return result;
+    }
+
+    /**
+     * @return the languages within a distance of the point, nearest first; empty for NaN coordinates
+     */
+    public List<CLDFLanguage> withinRadius(double lat, double lon, double radiusKm) {
+        if (Double.isNaN(lat) || Double.isNaN(lon) || Double.isNaN(radiusKm)) {
+            return new ArrayList<>();
+        }
+        double[] p = point(lat, lon);
+        double limit = chordSquared(radiusKm);
+        List<Integer> found = new ArrayList<>();
+        within(p, limit, 0, languages.length, 0, i -> found.add(i));
+        found.sort(Comparator.comparingDouble(i -> distanceSquared(p, i)));
+        List<CLDFLanguage> result = new ArrayList<>(found.size());
+        for (int i : found) {
+            result.add(languages[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the languages in a latitude/longitude box, ordered by latitude; if minLon > maxLon, the box crosses the antimeridian
+     */
+    public List<CLDFLanguage> inBoundingBox(double minLat, double maxLat, double minLon, double maxLon) {
+        List<CLDFLanguage> result = new ArrayList<>();
+        int from = lowerBound(minLat);
+        for (int i = from; i < byLatitude.length && byLatitude[i].getLatitude() <= maxLat; i++) {
+            float lon = byLatitude[i].getLongitude();
+            boolean inside = minLon <= maxLon ? lon >= minLon && lon <= maxLon : lon >= minLon || lon <= maxLon;
+            if (inside) {
+                result.add(byLatitude[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calls the consumer once for every unordered pair of languages within a distance of each other.
+     */
+    public void forEachPairWithin(double distanceKm, PairConsumer action) {
+        double limit = chordSquared(distanceKm);
+        for (int i = 0; i < languages.length; i++) {
+            double[] p = {xs[i], ys[i], zs[i]};
+            int a = i;
+            within(p, limit, 0, languages.length, 0, j -> {
+                if (j > a) {
+                    action.accept(languages[a], languages[j], distanceKm(languages[a], languages[j]));
+                }
+            });
+        }
+    }
+
+    //tree construction and search
+
+    private static double[] point(double lat, double lon) {
+        double phi = Math.toRadians(lat);
+        double lambda = Math.toRadians(lon);
+        return new double[]{Math.cos(phi) * Math.cos(lambda), Math.cos(phi) * Math.sin(lambda), Math.sin(phi)};
+    }
+
+    //the squared straight-line distance between unit sphere points at a great-circle distance
+    private static double chordSquared(double distanceKm) {
+        double angle = Math.min(Math.max(distanceKm, 0) / EARTH_RADIUS_KM, Math.PI);
+        double chord = 2 * Math.sin(angle / 2);
+        return chord * chord * (1 + 1e-12); //tolerance for points right on the boundary
+    }
+
+    private static void build(Integer[] order, double[][] points, int from, int to, int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+        int axis = depth % 3;
+        int mid = (from + to) >>> 1;
+        //sorting the range is simpler than selecting the median and only adds a log factor to a one-time build
+        Arrays.sort(order, from, to, Comparator.comparingDouble(i -> points[i][axis]));
+        build(order, points, from, mid, depth + 1);
+        build(order, points, mid + 1, to, depth + 1);
+    }
+
+    private double coordinate(int i, int axis) {
+        return axis == 0 ? xs[i] : axis == 1 ? ys[i] : zs[i];
+    }
+
+    private double distanceSquared(double[] p, int i) {
+        double dx = p[0] - xs[i];
+        double dy = p[1] - ys[i];
+        double dz = p[2] - zs[i];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private void nearest(double[] p, int from, int to, int depth, Heap heap) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        heap.offer(mid, distanceSquared(p, mid));
+        double delta = p[depth % 3] - coordinate(mid, depth % 3);
+        if (delta < 0) {
+            nearest(p, from, mid, depth + 1, heap);
+            if (delta * delta < heap.bound()) nearest(p, mid + 1, to, depth + 1, heap);
+        } else {
+            nearest(p, mid + 1, to, depth + 1, heap);
+            if (delta * delta < heap.bound()) nearest(p, from, mid, depth + 1, heap);
+        }
+    }
+
+    private void within(double[] p, double limit, int from, int to, int depth, IntConsumer action) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        if (distanceSquared(p, mid) <= limit) {
+            action.accept(mid);
+        }
+        double delta = p[depth % 3] - coordinate(mid, depth % 3);
+        if (delta < 0 || delta * delta <= limit) within(p, limit, from, mid, depth + 1, action);
+        if (delta >= 0 || delta * delta <= limit) within(p, limit, mid + 1, to, depth + 1, action);
+    }
+
+    private int lowerBound(double lat) {
+        int lo = 0;
+        int hi = byLatitude.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (byLatitude[mid].getLatitude() < lat) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    //a bounded max-heap of the nearest points found so far
+    private class Heap {
+        final int[] items;
+        final double[] distances;
+        int size = 0;
+
+        Heap(int capacity) {
+            items = new int[capacity];
+            distances = new double[capacity];
+        }
+
+        double bound() {
+            return size < items.length ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        void offer(int item, double distance) {
+            if (size < items.length) {
+                int i = size++;
+                while (i > 0 && distances[(i - 1) / 2] < distance) {
+                    items[i] = items[(i - 1) / 2];
+                    distances[i] = distances[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                items[i] = item;
+                distances[i] = distance;
+            } else if (distance < distances[0]) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && distances[child + 1] > distances[child]) child++;
+                    if (distances[child] <= distance) break;
+                    items[i] = items[child];
+                    distances[i] = distances[child];
+                    i = child;
+                }
+                items[i] = item;
+                distances[i] = distance;
+            }
+        }
+
+        List<CLDFLanguage> sorted() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, Comparator.comparingDouble(i -> distances[i]));
+            List<CLDFLanguage> result = new ArrayList<>(size);
+            for (int i : order) {
+                result.add(languages[items[i]]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import de.tuebingen.sfs.cldfjava.util.NGrams;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * An inverted index from the padded n-grams of the forms to the forms that contain them, for candidate generation
+ * in similarity search and for n-gram features. The distinct n-grams are sorted; the posting list of n-gram g is
+ * formIds[offsets[g]..offsets[g+1]], in ascending order. Each form's distinct n-grams are kept as well
+ * (gramIds[formOffsets[f]..formOffsets[f+1]], ascending), so that filters can use their number.
+ * N-grams are packed as described in {@link NGrams}; the bit width is fixed when the index is built.
+ * The expensive part of building, extracting and deduplicating the n-grams of each form, runs in parallel per language.
+ */
+public class NGramIndex {
+    private final int n;
+    private final int bits;
+    private final long[] grams;
+    private final int[] offsets;
+    private final int[] formIds;
+    private final int[] formOffsets;
+    private final int[] gramIds;
+    private final ThreadLocal<int[]> counters; //shared-gram counts by form ID, all zero between queries
+
+    private NGramIndex(int n, int bits, long[] grams, int[] offsets, int[] formIds, int[] formOffsets, int[] gramIds) {
+        this.n = n;
+        this.bits = bits;
+        this.grams = grams;
+        this.offsets = offsets;
+        this.formIds = formIds;
+        this.formOffsets = formOffsets;
+        this.gramIds = gramIds;
+        int formCount = formOffsets.length - 1;
+        this.counters = ThreadLocal.withInitial(() -> new int[formCount]);
+    }
+
+    /**
+     * @param formCount  one more than the highest form ID
+     * @param partitions the form IDs to index, in groups that are processed in parallel (e.g. by language)
+     * @param symbols    the symbols of a form, or null if it has none
+     * @param n          the length of the n-grams
+     * @param bits       the bit width of the symbols, see {@link NGrams#bitsPerSymbol(int)}
+     */
+    public static NGramIndex build(int formCount, Collection<int[]> partitions, IntFunction<int[]> symbols, int n, int bits) {
+        if (n * bits > 63) {
+            throw new IllegalArgumentException(n + "-grams of " + bits + "-bit symbols do not fit into a long");
+        }
+        //the distinct n-grams of each form, in one array per partition
+        List<Partition> parts = new ArrayList<>(partitions.size());
+        for (int[] ids : partitions) {
+            parts.add(new Partition(ids));
+        }
+        parts.parallelStream().forEach(part -> part.extract(symbols, n, bits));
+
+        //the distinct n-grams of all forms, numbered in ascending order
+        GramTable table = new GramTable();
+        for (Partition part : parts) {
+            for (int i = 0; i < part.size; i++) {
+                table.add(part.grams[i]);
+            }
+        }
+        long[] grams = table.sortedKeys();
+        for (int g = 0; g < grams.length; g++) {
+            table.put(grams[g], g);
+        }
+
+        int[] formOffsets = new int[formCount + 1];
+        for (Partition part : parts) {
+            for (int i = 0; i < part.ids.length; i++) {
+                formOffsets[part.ids[i] + 1] = part.offsets[i + 1] - part.offsets[i];
+            }
+        }
+        for (int id = 0; id < formCount; id++) {
+            formOffsets[id + 1] += formOffsets[id];
+        }
+        //forward lists: the forms' n-grams are sorted, so their IDs come out sorted too
+        int[] gramIds = new int[formOffsets[formCount]];
+        parts.parallelStream().forEach(part -> {
+            for (int i = 0; i < part.ids.length; i++) {
+                int to = formOffsets[part.ids[i]];
+                for (int from = part.offsets[i]; from < part.offsets[i + 1]; from++) {
+                    gramIds[to++] = table.get(part.grams[from]);
+                }
+            }
+        });
+
+        //posting lists, filled in form ID order
+        int[] offsets = new int[grams.length + 1];
+        for (int gramId : gramIds) {
+            offsets[gramId + 1]++;
+        }
+        for (int g = 0; g < grams.length; g++) {
+            offsets[g + 1] += offsets[g];
+        }
+        int[] formIds = new int[gramIds.length];
+        int[] next = Arrays.copyOf(offsets, grams.length);
+        for (int id = 0; id < formCount; id++) {
+            for (int i = formOffsets[id]; i < formOffsets[id + 1]; i++) {
+                formIds[next[gramIds[i]]++] = id;
+            }
+        }
+        return new NGramIndex(n, bits, grams, offsets, formIds, formOffsets, gramIds);
+    }
+
+    //the n-grams of a group of forms, extracted by one thread
+    private static class Partition {
+        final int[] ids;
+        final int[] offsets; //the n-grams of ids[i] are grams[offsets[i]..offsets[i+1]]
+        long[] grams = new long[64];
+        int size = 0;
+
+        Partition(int[] ids) {
+            this.ids = ids;
+            this.offsets = new int[ids.length + 1];
+        }
+
+        void extract(IntFunction<int[]> symbols, int n, int bits) {
+            for (int i = 0; i < ids.length; i++) {
+                int[] sequence = symbols.apply(ids[i]);
+                if (sequence != null) {
+                    int count = NGrams.count(sequence.length, n, true);
+                    if (size + count > grams.length) {
+                        grams = Arrays.copyOf(grams, Math.max(grams.length * 2, size + count));
+                    }
+                    NGrams.extract(sequence, sequence.length, n, true, bits, grams, size);
+                    //distinct within the form, in place
+                    Arrays.sort(grams, size, size + count);
+                    int distinct = size;
+                    for (int j = size; j < size + count; j++) {
+                        if (grams[j] >= 0 && (distinct == size || grams[distinct - 1] != grams[j])) {
+                            grams[distinct++] = grams[j];
+                        }
+                    }
+                    size = distinct;
+                }
+                offsets[i + 1] = size;
+            }
+        }
+    }
+
+    //an open-addressing map from n-grams (never negative) to their IDs
+    private static class GramTable {
+        long[] keys = newKeys(1024);
+        int[] values = new int[1024];
+        int size = 0;
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, -1);
+            return keys;
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (key ^ (key >>> 29) ^ (key >>> 43)) * 0x9E3779B9 & mask;
+            while (keys[slot] != -1 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        void add(long key) {
+            int slot = slot(key);
+            if (keys[slot] == -1) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    grow();
+                }
+            }
+        }
+
+        void put(long key, int value) {
+            values[slot(key)] = value;
+        }
+
+        int get(long key) {
+            return values[slot(key)];
+        }
+
+        long[] sortedKeys() {
+            long[] sorted = new long[size];
+            int i = 0;
+            for (long key : keys) {
+                if (key != -1) sorted[i++] = key;
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private void grow() {
+            long[] old = keys;
+            keys = newKeys(old.length * 2);
+            values = new int[keys.length];
+            for (long key : old) {
+                if (key != -1) keys[slot(key)] = key;
+            }
+        }
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public int getBitsPerSymbol() {
+        return bits;
+    }
+
+    /**
+     * @return the number of distinct n-grams
+     */
+    public int size() {
+        return grams.length;
+    }
+
+    /**
+     * @return the distinct n-grams in ascending order; must not be modified
+     */
+    public long[] getGrams() {
+        return grams;
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int[] getFormIds() {
+        return formIds;
+    }
+
+    /**
+     * @return the position of an n-gram in {@link #getGrams()}, or a negative value
+     */
+    public int indexOf(long gram) {
+        return Arrays.binarySearch(grams, gram);
+    }
+
+    /**
+     * @return the number of forms that contain an n-gram
+     */
+    public int documentFrequency(long gram) {
+        int g = indexOf(gram);
+        return g < 0 ? 0 : offsets[g + 1] - offsets[g];
+    }
+
+    /**
+     * @return the IDs of the forms that contain an n-gram, ascending
+     */
+    public int[] getPostings(long gram) {
+        int g = indexOf(gram);
+        return g < 0 ? new int[0] : Arrays.copyOfRange(formIds, offsets[g], offsets[g + 1]);
+    }
+
+    public void forEachPosting(long gram, IntConsumer action) {
+        int g = indexOf(gram);
+        if (g >= 0) {
+            for (int i = offsets[g]; i < offsets[g + 1]; i++) {
+                action.accept(formIds[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct n-grams of a form
+     */
+    public int gramCountOf(int formId) {
+        return formId + 1 < formOffsets.length ? formOffsets[formId + 1] - formOffsets[formId] : 0;
+    }
+
+    /**
+     * @return the distinct n-grams of a form, ascending
+     */
+    public long[] gramsOf(int formId) {
+        long[] result = new long[gramCountOf(formId)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = grams[gramIds[formOffsets[formId] + i]];
+        }
+        return result;
+    }
+
+    /**
+     * @return the distinct n-grams of a query sequence in the encoding of this index, ascending
+     */
+    public long[] queryGrams(int[] symbols) {
+        long[] extracted = NGrams.ngrams(symbols, n, true, bits);
+        return Arrays.copyOf(extracted, NGrams.distinct(extracted, extracted.length));
+    }
+
+    /**
+     * @return the IDs of the forms that share at least a number of distinct n-grams with a query, ascending
+     * @see #forEachCandidate(long[], int, CandidateConsumer)
+     */
+    public int[] candidates(long[] queryGrams, int minShared) {
+        int[][] result = {new int[16]};
+        int[] count = {0};
+        forEachCandidate(queryGrams, minShared, (formId, shared) -> {
+            if (count[0] == result[0].length) result[0] = Arrays.copyOf(result[0], count[0] * 2);
+            result[0][count[0]++] = formId;
+        });
+        return Arrays.copyOf(result[0], count[0]);
+    }
+
+    /**
+     * Receives the candidates of {@link #forEachCandidate(long[], int, CandidateConsumer)}.
+     */
+    @FunctionalInterface
+    public interface CandidateConsumer {
+        void accept(int formId, int sharedGrams);
+    }
+
+    /**
+     * Finds the forms that share at least a number of distinct n-grams with a query, by counting over the
+     * posting lists of the query n-grams, and passes them with their counts to the consumer in ascending ID order.
+     *
+     * @param queryGrams distinct n-grams, see {@link #queryGrams(int[])}
+     * @param minShared  the minimal number of shared n-grams; values below 1 are treated as 1
+     * @param action     receives the candidates; it must not query this index on the same thread
+     */
+    public void forEachCandidate(long[] queryGrams, int minShared, CandidateConsumer action) {
+        int[] counts = counters.get();
+        int touchedCount = 0;
+        int[] touched = new int[16];
+        for (long gram : queryGrams) {
+            int g = indexOf(gram);
+            if (g < 0) continue;
+            for (int i = offsets[g]; i < offsets[g + 1]; i++) {
+                int id = formIds[i];
+                if (counts[id]++ == 0) {
+                    if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                    touched[touchedCount++] = id;
+                }
+            }
+        }
+        Arrays.sort(touched, 0, touchedCount);
+        int threshold = Math.max(1, minShared);
+        try {
+            for (int i = 0; i < touchedCount; i++) {
+                int shared = counts[touched[i]];
+                if (shared >= threshold) {
+                    action.accept(touched[i], shared);
+                }
+            }
+        } finally {
+            for (int i = 0; i < touchedCount; i++) {
+                counts[touched[i]] = 0;
+            }
+        }
+    }
+}
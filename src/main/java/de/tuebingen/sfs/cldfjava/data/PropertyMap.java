@@ -0,0 +1,191 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import java.util.*;
+
+/**
+ * A compact map for the additional properties of a table row. All rows of a table share one immutable key set,
+ * so each row only stores an array of values. Keys outside of the shared key set can still be added, they are
+ * kept in a separate map. Null values are not permitted.
+ */
+public class PropertyMap extends AbstractMap<String, String> {
+    private final Keys keys;
+    private final String[] values; //null marks a removed entry
+    private Map<String, String> extra;
+    private int size;
+
+    /**
+     * An immutable, ordered key set shared by the property maps of one table.
+     */
+    public static final class Keys {
+        private final String[] names;
+        private final Map<String, Integer> index;
+
+        public Keys(List<String> names) {
+            this.names = names.toArray(new String[0]);
+            this.index = new HashMap<>();
+            for (int i = 0; i < this.names.length; i++) {
+                index.putIfAbsent(this.names[i], i);
+            }
+        }
+
+        public int size() {
+            return names.length;
+        }
+
+        public String get(int i) {
+            return names[i];
+        }
+
+        public int indexOf(Object key) {
+            Integer i = index.get(key);
+            return i == null ? -1 : i;
+        }
+    }
+
+    /**
+     * @param keys   the shared key set
+     * @param values the values for the keys, in key order; the array is used directly, not copied
+     */
+    public PropertyMap(Keys keys, String[] values) {
+        if (values.length != keys.size()) {
+            throw new IllegalArgumentException("expected " + keys.size() + " values, got " + values.length);
+        }
+        this.keys = keys;
+        this.values = values;
+        for (String value : values) {
+            if (value != null) size++;
+        }
+    }
+
+    public Keys getKeys() {
+        return keys;
+    }
+
+    @Override
+    public int size() {
+        return size + (extra == null ? 0 : extra.size());
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int i = keys.indexOf(key);
+        if (i != -1) {
+            return values[i] != null;
+        }
+        return extra != null && extra.containsKey(key);
+    }
+
+    @Override
+    public String get(Object key) {
+        int i = keys.indexOf(key);
+        if (i != -1) {
+            return values[i];
+        }
+        return extra == null ? null : extra.get(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        Objects.requireNonNull(value);
+        int i = keys.indexOf(key);
+        if (i != -1) {
+            String old = values[i];
+            if (old == null) size++;
+            values[i] = value;
+            return old;
+        }
+        if (extra == null) {
+            extra = new HashMap<>();
+        }
+        return extra.put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        int i = keys.indexOf(key);
+        if (i != -1) {
+            String old = values[i];
+            if (old != null) size--;
+            values[i] = null;
+            return old;
+        }
+        return extra == null ? null : extra.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+        extra = null;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return PropertyMap.this.size();
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, String>> {
+        private int next = advance(0);
+        private int last = -1;
+        private Iterator<Entry<String, String>> extraIterator;
+
+        private int advance(int i) {
+            while (i < values.length && values[i] == null) i++;
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next < values.length) {
+                return true;
+            }
+            if (extraIterator == null && extra != null) {
+                extraIterator = extra.entrySet().iterator();
+            }
+            return extraIterator != null && extraIterator.hasNext();
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (next < values.length) {
+                last = next;
+                next = advance(next + 1);
+                int i = last;
+                return new SimpleEntry<>(keys.get(i), values[i]) {
+                    @Override
+                    public String setValue(String value) {
+                        super.setValue(value);
+                        return put(keys.get(i), value);
+                    }
+                };
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = -1;
+            return extraIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last != -1) {
+                PropertyMap.this.remove(keys.get(last));
+                last = -1;
+            } else if (extraIterator != null) {
+                extraIterator.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+}
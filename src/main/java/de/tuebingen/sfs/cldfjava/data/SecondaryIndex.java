@@ -0,0 +1,134 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * An index from the values of one column to the rows having that value, built in a single pass over the rows.
+ * Rows are identified by their position in the row array the index was built from (for forms, the form ID),
+ * and each value maps to a sorted int array of row IDs. Rows without a value (null) are not indexed.
+ * An index is not updated when its table changes; CLDFWordlistDatabase drops its indexes when a table is replaced.
+ *
+ * @param <T> the row type
+ */
+public class SecondaryIndex<T> {
+    private static final int[] NO_ROWS = new int[0];
+
+    private final String column;
+    private final T[] rows;
+    private final Map<String, int[]> rowIdsByValue;
+
+    private SecondaryIndex(String column, T[] rows, Map<String, int[]> rowIdsByValue) {
+        this.column = column;
+        this.rows = rows;
+        this.rowIdsByValue = rowIdsByValue;
+    }
+
+    /**
+     * @param column the name of the indexed column
+     * @param rows   the rows by row ID; null entries are skipped
+     * @param value  extracts the indexed value from a row
+     */
+    public static <T> SecondaryIndex<T> build(String column, T[] rows, Function<? super T, String> value) {
+        //row IDs are appended in ascending order, so the arrays come out sorted
+        Map<String, RowIds> building = new HashMap<>();
+        for (int rowId = 0; rowId < rows.length; rowId++) {
+            if (rows[rowId] == null) {
+                continue;
+            }
+            String key = value.apply(rows[rowId]);
+            if (key != null) {
+                building.computeIfAbsent(key, k -> new RowIds()).add(rowId);
+            }
+        }
+        return new SecondaryIndex<>(column, rows, toArrays(building));
+    }
+
+    /**
+     * Builds the index of a column with several values per row, such as the parameter IDs of a form.
+     *
+     * @param values extracts the indexed values from a row
+     */
+    public static <T> SecondaryIndex<T> buildMultiValued(String column, T[] rows, Function<? super T, ? extends Collection<String>> values) {
+        Map<String, RowIds> building = new HashMap<>();
+        for (int rowId = 0; rowId < rows.length; rowId++) {
+            Collection<String> keys = rows[rowId] == null ? null : values.apply(rows[rowId]);
+            if (keys == null) {
+                continue;
+            }
+            for (String key : keys) {
+                if (key != null) {
+                    building.computeIfAbsent(key, k -> new RowIds()).add(rowId);
+                }
+            }
+        }
+        return new SecondaryIndex<>(column, rows, toArrays(building));
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, RowIds> building) {
+        Map<String, int[]> rowIdsByValue = new HashMap<>(building.size() * 4 / 3 + 1);
+        building.forEach((key, rowIds) -> rowIdsByValue.put(key, rowIds.toArray()));
+        return rowIdsByValue;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * @return the sorted IDs of the rows with the value, an empty array if there are none; must not be modified
+     */
+    public int[] getRowIds(String value) {
+        return rowIdsByValue.getOrDefault(value, NO_ROWS);
+    }
+
+    /**
+     * @return the rows with the value, ordered by row ID
+     */
+    public List<T> get(String value) {
+        int[] rowIds = getRowIds(value);
+        List<T> result = new ArrayList<>(rowIds.length);
+        for (int rowId : rowIds) {
+            result.add(rows[rowId]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the row with the value and the lowest row ID, or null
+     */
+    public T getFirst(String value) {
+        int[] rowIds = getRowIds(value);
+        return rowIds.length == 0 ? null : rows[rowIds[0]];
+    }
+
+    public T getRow(int rowId) {
+        return rows[rowId];
+    }
+
+    /**
+     * @return the distinct values of the column
+     */
+    public Set<String> getValues() {
+        return Collections.unmodifiableSet(rowIdsByValue.keySet());
+    }
+
+    private static class RowIds {
+        int[] ids = new int[2];
+        int size = 0;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return; //a value repeated within one row
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        int[] toArray() {
+            return size == ids.length ? ids : Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package de.tuebingen.sfs.cldfjava.data;
+
+import de.tuebingen.sfs.cldfjava.util.SegmentAlphabet;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The segments of all forms as codes of a {@link SegmentAlphabet}, packed into one array: the segments of form i
+ * are codes[offsets[i]..offsets[i+1]]. Codes are stored as shorts (read as unsigned) as long as the alphabet has
+ * at most 65536 segments, and as ints otherwise. Segment strings are only created by {@link #getSegments(int)},
+ * so comparisons of forms (alignment, n-grams, sound classes) can work on the codes.
+ */
+public class SegmentPool {
+    private final SegmentAlphabet alphabet;
+    private final int[] offsets;
+    private final short[] shortCodes; //null if the codes do not fit into 16 bits
+    private final int[] intCodes; //null if the codes are stored as shorts
+    private final BitSet withoutSegments; //forms whose segments are null, including missing forms
+
+    private SegmentPool(Builder builder) {
+        this.alphabet = builder.alphabet;
+        this.offsets = Arrays.copyOf(builder.offsets, builder.size + 1);
+        int total = offsets[builder.size];
+        if (builder.maxCode < 1 << 16) {
+            this.shortCodes = new short[total];
+            for (int i = 0; i < total; i++) {
+                shortCodes[i] = (short) builder.codes[i];
+            }
+            this.intCodes = null;
+        } else {
+            this.shortCodes = null;
+            this.intCodes = Arrays.copyOf(builder.codes, total);
+        }
+        this.withoutSegments = builder.withoutSegments;
+    }
+
+    /**
+     * @param forms    the forms by form ID; null entries get no segments
+     * @param alphabet the alphabet to code the segments in, which gets codes for new segments
+     */
+    public static SegmentPool build(CLDFForm[] forms, SegmentAlphabet alphabet) {
+        Builder builder = new Builder(alphabet);
+        for (CLDFForm form : forms) {
+            builder.add(form == null ? null : form.getSegments());
+        }
+        return builder.build();
+    }
+
+    public SegmentAlphabet getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * @return the number of forms, i.e. one more than the highest form ID
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return the number of segments of all forms
+     */
+    public int totalSegments() {
+        return offsets[offsets.length - 1];
+    }
+
+    public boolean hasSegments(int formId) {
+        return formId >= 0 && formId < size() && !withoutSegments.get(formId);
+    }
+
+    /**
+     * @return the number of segments of a form, 0 if it has none
+     */
+    public int length(int formId) {
+        return offsets[formId + 1] - offsets[formId];
+    }
+
+    /**
+     * @return the position of the first segment of a form in the pool, see {@link #codeAt(int)}
+     */
+    public int start(int formId) {
+        return offsets[formId];
+    }
+
+    /**
+     * @return the code at a position of the pool
+     */
+    public int codeAt(int position) {
+        return shortCodes != null ? shortCodes[position] & 0xffff : intCodes[position];
+    }
+
+    /**
+     * @return the code of the segment at an index of a form
+     */
+    public int code(int formId, int index) {
+        return codeAt(offsets[formId] + index);
+    }
+
+    /**
+     * Copies the codes of a form into an array, e.g. a buffer that is reused for many forms.
+     *
+     * @return the number of codes copied
+     */
+    public int copyCodes(int formId, int[] target, int targetOffset) {
+        int from = offsets[formId];
+        int length = offsets[formId + 1] - from;
+        if (shortCodes != null) {
+            for (int i = 0; i < length; i++) {
+                target[targetOffset + i] = shortCodes[from + i] & 0xffff;
+            }
+        } else {
+            System.arraycopy(intCodes, from, target, targetOffset, length);
+        }
+        return length;
+    }
+
+    public int[] getCodes(int formId) {
+        int[] codes = new int[length(formId)];
+        copyCodes(formId, codes, 0);
+        return codes;
+    }
+
+    /**
+     * @return the segments of a form as strings, or null if it has none
+     */
+    public String[] getSegments(int formId) {
+        if (!hasSegments(formId)) {
+            return null;
+        }
+        String[] segments = new String[length(formId)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = alphabet.symbol(code(formId, i));
+        }
+        return segments;
+    }
+
+    /**
+     * @return whether two forms have the same segments
+     */
+    public boolean sameSegments(int formId1, int formId2) {
+        int length = length(formId1);
+        if (length != length(formId2)) {
+            return false;
+        }
+        int from1 = offsets[formId1];
+        int from2 = offsets[formId2];
+        for (int i = 0; i < length; i++) {
+            if (codeAt(from1 + i) != codeAt(from2 + i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds the segments of forms in ascending form ID order.
+     */
+    public static class Builder {
+        private final SegmentAlphabet alphabet;
+        private int[] offsets = new int[17];
+        private int[] codes = new int[64];
+        private int size = 0;
+        private int maxCode = 0;
+        private final BitSet withoutSegments = new BitSet();
+
+        public Builder(SegmentAlphabet alphabet) {
+            this.alphabet = alphabet;
+        }
+
+        /**
+         * @param segments the segments of the next form, or null if it has none
+         */
+        public Builder add(String[] segments) {
+            if (size + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            int count = offsets[size];
+            if (segments == null) {
+                withoutSegments.set(size);
+            } else {
+                if (count + segments.length > codes.length) {
+                    codes = Arrays.copyOf(codes, Math.max(codes.length * 2, count + segments.length));
+                }
+                for (String segment : segments) {
+                    int code = alphabet.code(segment);
+                    maxCode = Math.max(maxCode, code);
+                    codes[count++] = code;
+                }
+            }
+            offsets[size + 1] = count;
+            size++;
+            return this;
+        }
+
+        public SegmentPool build() {
+            return new SegmentPool(this);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package de.tuebingen.sfs.cldfjava.io;
+
+import de.tuebingen.sfs.cldfjava.data.CLDFForm;
+import de.tuebingen.sfs.cldfjava.data.CLDFLanguage;
+import de.tuebingen.sfs.cldfjava.data.CLDFParameter;
+import de.tuebingen.sfs.cldfjava.data.CLDFWordlistDatabase;
+import de.tuebingen.sfs.cldfjava.data.FormFilter;
+import de.tuebingen.sfs.cldfjava.data.SecondaryIndex;
+import de.tuebingen.sfs.cldfjava.util.StringDictionaries;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A set of CLDF Wordlist datasets loaded into one process, each under a dataset name (by default, its directory name).
+ * Datasets are loaded in parallel by separate {@link CLDFImport} loaders, at most {@link #setParallelism(int)} at a time,
+ * which bounds the memory taken by datasets that are being parsed. All loaders share one set of
+ * {@link StringDictionaries}, so language and parameter references, segments and property values that occur in
+ * several datasets are stored once.
+ * Rows are addressed by dataset name and original ID; languages and concepts are linked across datasets through
+ * their Glottocodes and Concepticon IDs.
+ */
+public class CLDFFederation {
+    private final Map<String, CLDFWordlistDatabase> datasets = new ConcurrentSkipListMap<>();
+    private final Map<String, Map<String, Integer>> formIdsByDataset = new ConcurrentHashMap<>(); //original to dense form IDs
+    private final StringDictionaries dictionaries;
+    private int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private boolean columnar = false;
+    private boolean frozen = false;
+    private boolean memoryMapped = false;
+    private File snapshotDirectory = null;
+    private IPACanonizer canonizer = null; //null for the current default profile
+
+    public CLDFFederation() {
+        this(new StringDictionaries());
+    }
+
+    /**
+     * @param dictionaries the dictionaries shared by all datasets, e.g. those of another federation
+     */
+    public CLDFFederation(StringDictionaries dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * @param parallelism the maximal number of datasets loaded at the same time
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive, got " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @see CLDFImport#setColumnar(boolean)
+     */
+    public void setColumnar(boolean columnar) {
+        this.columnar = columnar;
+    }
+
+    /**
+     * Stores each dataset as a {@link de.tuebingen.sfs.cldfjava.data.FrozenWordlistDatabase}, for queries from many threads.
+     */
+    public void setFrozen(boolean frozen) {
+        this.frozen = frozen;
+    }
+
+    /**
+     * @see CLDFImport#setMemoryMapped(boolean)
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * @see CLDFImport#setSnapshotDirectory(File)
+     */
+    public void setSnapshotDirectory(File snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * @see CLDFImport#setCanonizer(IPACanonizer)
+     */
+    public void setCanonizer(IPACanonizer canonizer) {
+        this.canonizer = canonizer;
+    }
+
+    public StringDictionaries getDictionaries() {
+        return dictionaries;
+    }
+
+    /**
+     * Loads dataset directories in parallel, naming each dataset after its directory.
+     *
+     * @return the loaded databases by dataset name, in the order of the directories
+     * @throws IllegalArgumentException if two directories have the same name, or a dataset of that name exists
+     */
+    public Map<String, CLDFWordlistDatabase> load(Collection<String> cldfDirNames) {
+        Map<String, String> named = new LinkedHashMap<>();
+        for (String cldfDirName : cldfDirNames) {
+            String name = new File(cldfDirName).getAbsoluteFile().getName();
+            if (named.put(name, cldfDirName) != null) {
+                throw new IllegalArgumentException("two datasets are named " + name);
+            }
+        }
+        return load(named);
+    }
+
+    /**
+     * Loads dataset directories in parallel. The datasets are added only if all of them could be loaded,
+     * so that a failed call can be repeated.
+     *
+     * @param cldfDirNames the directories by dataset name
+     * @return the loaded databases by dataset name, in the order of the map
+     * @throws IllegalArgumentException if a dataset of one of the names exists
+     */
+    public Map<String, CLDFWordlistDatabase> load(Map<String, String> cldfDirNames) {
+        for (String name : cldfDirNames.keySet()) {
+            if (datasets.containsKey(name)) {
+                throw new IllegalArgumentException("a dataset named " + name + " is already loaded");
+            }
+        }
+        ExecutorService loaders = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, cldfDirNames.size())));
+        try {
+            Map<String, Future<CLDFWordlistDatabase>> futures = new LinkedHashMap<>();
+            for (Map.Entry<String, String> entry : cldfDirNames.entrySet()) {
+                futures.put(entry.getKey(), loaders.submit(() -> loadDataset(entry.getValue())));
+            }
+            Map<String, CLDFWordlistDatabase> loaded = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<CLDFWordlistDatabase>> entry : futures.entrySet()) {
+                loaded.put(entry.getKey(), entry.getValue().get());
+            }
+            addAll(loaded);
+            return loaded;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("interrupted while loading datasets");
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        } finally {
+            loaders.shutdownNow();
+        }
+    }
+
+    //a loader per dataset, so that loads do not share state apart from the dictionaries
+    private CLDFWordlistDatabase loadDataset(String cldfDirName) {
+        CLDFImport loader = new CLDFImport();
+        loader.setDictionaries(dictionaries);
+        loader.setColumnar(columnar);
+        loader.setMemoryMapped(memoryMapped);
+        loader.setSnapshotDirectory(snapshotDirectory);
+        loader.setCanonizer(canonizer);
+        CLDFWordlistDatabase database = loader.load(cldfDirName);
+        return frozen ? database.freeze() : database;
+    }
+
+    //adds all databases or none of them, if a name was taken in the meantime
+    private void addAll(Map<String, CLDFWordlistDatabase> loaded) {
+        List<String> added = new ArrayList<>();
+        try {
+            for (Map.Entry<String, CLDFWordlistDatabase> entry : loaded.entrySet()) {
+                add(entry.getKey(), entry.getValue());
+                added.add(entry.getKey());
+            }
+        } catch (IllegalArgumentException e) {
+            for (String name : added) {
+                remove(name);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a database that was loaded separately.
+     *
+     * @throws IllegalArgumentException if a dataset of the name exists
+     */
+    public void add(String name, CLDFWordlistDatabase database) {
+        if (datasets.putIfAbsent(name, database) != null) {
+            throw new IllegalArgumentException("a dataset named " + name + " is already loaded");
+        }
+    }
+
+    public CLDFWordlistDatabase remove(String name) {
+        formIdsByDataset.remove(name);
+        return datasets.remove(name);
+    }
+
+    /**
+     * @return the dataset names, sorted
+     */
+    public Set<String> getDatasetNames() {
+        return Collections.unmodifiableSet(datasets.keySet());
+    }
+
+    public CLDFWordlistDatabase getDatabase(String name) {
+        return datasets.get(name);
+    }
+
+    /**
+     * @return the row errors of each dataset that has any
+     */
+    public Map<String, List<String[]>> getExceptions() {
+        Map<String, List<String[]>> exceptions = new TreeMap<>();
+        datasets.forEach((name, database) -> {
+            if (database.getExceptions() != null && !database.getExceptions().isEmpty()) {
+                exceptions.put(name, database.getExceptions());
+            }
+        });
+        return exceptions;
+    }
+
+    //rows by (dataset, original ID)
+
+    /**
+     * @return the form with an ID as given in the FormTable of a dataset, or null
+     */
+    public CLDFForm getForm(String dataset, String originalFormId) {
+        CLDFWordlistDatabase database = datasets.get(dataset);
+        if (database == null) {
+            return null;
+        }
+        Integer formId = formIdsByDataset.computeIfAbsent(dataset, name -> {
+            String[] originalIds = database.getOriginalFormIdArray();
+            Map<String, Integer> formIds = new HashMap<>(originalIds.length * 4 / 3 + 1);
+            for (int id = 0; id < originalIds.length; id++) {
+                if (originalIds[id] != null) formIds.put(originalIds[id], id);
+            }
+            return formIds;
+        }).get(originalFormId);
+        return formId == null ? null : database.getFormsMap().get(formId);
+    }
+
+    public CLDFLanguage getLanguage(String dataset, String langID) {
+        CLDFWordlistDatabase database = datasets.get(dataset);
+        return database == null ? null : database.getLanguageMap().get(langID);
+    }
+
+    public CLDFParameter getParameter(String dataset, String paramID) {
+        CLDFWordlistDatabase database = datasets.get(dataset);
+        return database == null ? null : database.getConceptMap().get(paramID);
+    }
+
+    //queries across datasets
+
+    /**
+     * @return the languages with a Glottocode, by dataset; datasets without such a language are left out
+     */
+    public Map<String, List<CLDFLanguage>> getLanguagesByGlottocode(String glottocode) {
+        Map<String, List<CLDFLanguage>> result = new TreeMap<>();
+        datasets.forEach((name, database) -> addIfAny(result, name, database.getLanguageIndex("glottocode").get(glottocode)));
+        return result;
+    }
+
+    /**
+     * @return the parameters with a Concepticon ID, by dataset; datasets without such a parameter are left out
+     */
+    public Map<String, List<CLDFParameter>> getParametersByConcepticonID(String concepticonID) {
+        Map<String, List<CLDFParameter>> result = new TreeMap<>();
+        datasets.forEach((name, database) -> addIfAny(result, name, database.getParameterIndex("concepticonID").get(concepticonID)));
+        return result;
+    }
+
+    /**
+     * @return the forms of the parameters with a Concepticon ID, by dataset
+     */
+    public Map<String, List<CLDFForm>> getFormsByConcepticonID(String concepticonID) {
+        return selectForms(FormFilter.parameter("concepticonID", concepticonID));
+    }
+
+    /**
+     * @return the forms of the languages with a Glottocode, by dataset
+     */
+    public Map<String, List<CLDFForm>> getFormsByGlottocode(String glottocode) {
+        return selectForms(FormFilter.language("glottocode", glottocode));
+    }
+
+    /**
+     * @return the forms for a concept in a language, both given by their catalog IDs, by dataset
+     */
+    public Map<String, List<CLDFForm>> getForms(String glottocode, String concepticonID) {
+        return selectForms(FormFilter.language("glottocode", glottocode).and(FormFilter.parameter("concepticonID", concepticonID)));
+    }
+
+    /**
+     * Selects forms in every dataset, see {@link CLDFWordlistDatabase#selectForms(FormFilter)}.
+     *
+     * @return the matching forms by dataset; datasets without matches are left out
+     */
+    public Map<String, List<CLDFForm>> selectForms(FormFilter filter) {
+        Map<String, List<CLDFForm>> result = new TreeMap<>();
+        datasets.forEach((name, database) -> addIfAny(result, name, database.selectForms(filter).toList()));
+        return result;
+    }
+
+    private static <T> void addIfAny(Map<String, List<T>> result, String name, List<T> rows) {
+        if (!rows.isEmpty()) {
+            result.put(name, rows);
+        }
+    }
+
+    /**
+     * @return the number of datasets each Glottocode occurs in
+     */
+    public Map<String, Integer> getGlottocodeCoverage() {
+        Map<String, Integer> coverage = new TreeMap<>();
+        for (CLDFWordlistDatabase database : datasets.values()) {
+            SecondaryIndex<CLDFLanguage> index = database.getLanguageIndex("glottocode");
+            for (String glottocode : index.getValues()) {
+                if (!glottocode.isEmpty()) coverage.merge(glottocode, 1, Integer::sum);
+            }
+        }
+        return coverage;
+    }
+}
@@ -8,22 +8,193 @@ import de.tuebingen.sfs.cldfjava.data.CLDFForm;
 import de.tuebingen.sfs.cldfjava.data.CLDFLanguage;
 import de.tuebingen.sfs.cldfjava.data.CLDFParameter;
 import de.tuebingen.sfs.cldfjava.data.CLDFWordlistDatabase;
+import de.tuebingen.sfs.cldfjava.data.ColumnarFormTable;
+import de.tuebingen.sfs.cldfjava.util.DenseIntMap;
+import de.tuebingen.sfs.cldfjava.util.StringDictionaries;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+
+/**
+ * Loads CLDF Wordlist datasets into {@link CLDFWordlistDatabase} objects.
+ * The tables of a dataset are read concurrently on the loader's executor; only the CognateTable waits for the FormTable,
+ * because it refers to forms by their original IDs.
+ * A loader can be reused for any number of datasets, but loads one dataset at a time.
+ * Use separate loaders to load several datasets concurrently.
+ */
+public class CLDFImport {
+    public static CLDFWordlistDatabase database; //the database most recently loaded through loadDatabase(String)
+    private static CLDFImport tableReader; //the loader behind the deprecated static table readers
+    private final Executor executor;
+    private boolean memoryMapped = false;
+    private boolean columnar = false;
+    private StringDictionaries dictionaries = new StringDictionaries();
+    private File snapshotDirectory = null;
+    private IPACanonizer canonizer = null; //null for the current default profile
+    private Map<String, Integer> formsOldToNew;
+    private Map<Integer, String> formsNewToOld;
+    private List<String[]> exceptions;
 
+    /**
+     * Creates a loader that reads tables on the common fork-join pool.
+     */
+    public CLDFImport() {
+        this(ForkJoinPool.commonPool());
+    }
 
-public class CLDFImport {
-    public static CLDFWordlistDatabase database;
-    private static Map<String, Integer> formsOldToNew;
-    private static Map<Integer, String> formsNewToOld;
-    private static Map<String, Integer> cognateIdMap;
-    private static List<String[]> exceptions;
+    /**
+     * Creates a loader that reads tables on the given executor.
+     *
+     * @param executor the executor to run the table readers on
+     */
+    public CLDFImport(Executor executor) {
+        this.executor = executor;
+        resetState();
+    }
+
+    /**
+     * Enables parsing of the FormTable from a memory-mapped file, split into chunks that are parsed in parallel.
+     * The file has to be UTF-8 encoded (as required by CLDF) and smaller than 2 GB. Every line is a record, exactly as
+     * in the sequential reader: a quoted field that contains a line break is split into two malformed rows.
+     * Rows and dense form IDs come out in file order, as with the sequential reader.
+     *
+     * @param memoryMapped whether to use the memory-mapped reader for the FormTable
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Enables the columnar backend for the forms of loaded databases, see {@link CLDFWordlistDatabase#useColumnarForms()}.
+     * Columnar forms take less memory and are faster to scan, but are read-only.
+     *
+     * @param columnar whether to store forms in a {@link ColumnarFormTable}
+     */
+    public void setColumnar(boolean columnar) {
+        this.columnar = columnar;
+    }
+
+    /**
+     * Enables binary snapshots: each loaded dataset is saved as a {@link CLDFSnapshot} in the given directory,
+     * and later loads of the same dataset read the snapshot instead of the CSV files, as long as the metadata
+     * and table files have the same size, modification time and content as when the snapshot was written.
+     *
+     * @param snapshotDirectory the directory for snapshot files, or null to always read the CSV files
+     */
+    public void setSnapshotDirectory(File snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * Sets the column dictionaries used to deduplicate repeated values (language and parameter references,
+     * segments, property values) while reading. The dictionaries are kept across loads, so that datasets loaded
+     * by this loader, or by other loaders sharing the dictionaries, share their values.
+     *
+     * @param dictionaries the dictionaries to use, or null to store every value as read
+     */
+    public void setDictionaries(StringDictionaries dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * Sets the canonization profile for the form and segments columns of the FormTable.
+     * Snapshots do not record the profile, so datasets loaded with different profiles need separate snapshot directories.
+     *
+     * @param canonizer the profile, or null for the default profile of {@link IPAFormCanonization} at the time of reading
+     */
+    public void setCanonizer(IPACanonizer canonizer) {
+        this.canonizer = canonizer;
+    }
+
+    private IPACanonizer canonizer() {
+        return canonizer != null ? canonizer : IPAFormCanonization.getCanonizer();
+    }
+
+    /**
+     * @return the column dictionaries of this loader, see {@link StringDictionaries#report()}; null if deduplication is disabled
+     */
+    public StringDictionaries getDictionaries() {
+        return dictionaries;
+    }
+
+    /**
+     * Loads a dataset with a fresh loader, see {@link #load(String)}.
+     * The result is also stored in the static {@link #database} field, which concurrent calls overwrite;
+     * to work with several datasets at once, use {@link CLDFFederation}.
+     *
+     * @param cldfDirName the directory containing the metadata JSON and the CSV files
+     * @return the loaded database, which is empty if the dataset could not be loaded
+     */
+    public static CLDFWordlistDatabase loadDatabase(String cldfDirName) {
+        database = new CLDFImport().load(cldfDirName);
+        return database;
+    }
+
+    /**
+     * @deprecated use {@link #readParameterTable(String, Map)} on a loader
+     */
+    @Deprecated
+    public static synchronized Map<String, CLDFParameter> readParameterCsv(String path, Map<String, String> propertyColumns) {
+        return tableReader().readParameterTable(path, propertyColumns);
+    }
+
+    /**
+     * @deprecated use {@link #readLanguageTable(String, Map)} on a loader
+     */
+    @Deprecated
+    public static synchronized Map<String, CLDFLanguage> readLanguageCsv(String path, Map<String, String> propertyColumns) {
+        return tableReader().readLanguageTable(path, propertyColumns);
+    }
+
+    /**
+     * Reads a Form Table with a new loader, whose form IDs are used by the following calls of
+     * {@link #readCognateCsv(String, Map)}.
+     *
+     * @deprecated use {@link #readFormTable(String, Map)} on a loader
+     */
+    @Deprecated
+    public static synchronized Map<Integer, CLDFForm> readFormCsv(String path, Map<String, String> propertyColumns) {
+        tableReader = new CLDFImport();
+        return tableReader.readFormTable(path, propertyColumns);
+    }
+
+    /**
+     * Reads a Cognate Table, referring to the forms of the last {@link #readFormCsv(String, Map)} call.
+     *
+     * @deprecated use {@link #readCognateTable(String, Map)} on the loader that read the forms
+     */
+    @Deprecated
+    public static synchronized Map<Integer, CLDFCognateJudgement> readCognateCsv(String path, Map<String, String> propertyColumns) {
+        return tableReader().readCognateTable(path, propertyColumns);
+    }
+
+    /**
+     * @deprecated use {@link #readCognateSetTable(String, Map)} on a loader
+     */
+    @Deprecated
+    public static synchronized Map<String, CLDFCognateSet> readCognateSetCsv(String path, Map<String, String> propertyColumns) {
+        return tableReader().readCognateSetTable(path, propertyColumns);
+    }
+
+    private static CLDFImport tableReader() {
+        if (tableReader == null) {
+            tableReader = new CLDFImport();
+        }
+        return tableReader;
+    }
 
     /**
      * TODO: This should build a CLDFDatabase object (see structure and interface there) from a directory with CLDF files.
@@ -32,73 +203,166 @@ public class CLDFImport {
      * We should first read the metadata JSON file, and adapt the parser for the other files to the CSV dialect description (see https://github.com/cldf/cldf)
      * The functionality of importAtomsFromFile (and retrieveAtoms) should then be moved to LexicalAtomExtractor (see there)
      *
-     * @param cldfDirName
-     * @return
+     * @param cldfDirName the directory containing the metadata JSON and the CSV files
+     * @return the loaded database, which is empty if the dataset could not be loaded
      */
-    public static CLDFWordlistDatabase loadDatabase(String cldfDirName) {
+    public synchronized CLDFWordlistDatabase load(String cldfDirName) {
         File path;
-        File[] possibleJsons;
-        File json;
-        byte[] mapData;
-        formsOldToNew = new HashMap<>();
-        cognateIdMap = new HashMap<>();
-        formsNewToOld = new HashMap<>();
-        exceptions = new ArrayList<>();
+        CLDFWordlistDatabase database = null;
+        resetState();
 
         try {
             path = new File(cldfDirName);
-            possibleJsons = path.listFiles((File dir, String name) -> name.endsWith("metadata.json")); //possible json files in the given folder
-            if (possibleJsons.length == 0) { //if 0, no json found in the folder
-                throw new Error("folder");
+            JsonNode tables = readWordlistTables(path); //extracting all tables of the module
+            List<File> files = listDatasetFiles(path, tables);
+            if (snapshotDirectory != null) {
+                database = loadWithSnapshot(path, tables, files);
             } else {
-                json = possibleJsons[0];
+                //sizes and modification times are enough to find changed tables on reload
+                CLDFSnapshot.Fingerprint fingerprint = CLDFSnapshot.Fingerprint.stat(files);
+                database = readTables(path, tables);
+                database.setFileFingerprints(fingerprint.toMap());
+            }
+            if (dictionaries != null) {
+                database.setSegmentAlphabet(dictionaries.getSegmentAlphabet());
+            }
+            if (columnar) {
+                database.useColumnarForms();
             }
-            mapData = Files.readAllBytes(Paths.get(json.getAbsolutePath()));
-            JsonNode root = new ObjectMapper().readTree(mapData);
-            String moduleType = root.get("dc:conformsTo").asText().split("#")[1]; // extracting the module from the link
+            database.currentPath = cldfDirName;
+        } catch (Error e) {
+            exceptions.add(new String[]{e.getMessage(), cldfDirName});
+        } catch (CompletionException e) {
+            exceptions.add(new String[]{"else"});
+            e.getCause().printStackTrace();
+        } catch (NullPointerException | IOException e) {
+            exceptions.add(new String[]{"else"});
+            e.printStackTrace();
+        }
+        if (database == null) {
+            database = new CLDFWordlistDatabase();
+        }
+        database.setExceptions(exceptions);
+        return database;
+    }
 
-            if (moduleType.equals("Wordlist")) { //extracting the Wordlist module
-                JsonNode tables = root.get("tables"); //extracting all tables of the module
-                List<String> tableTypes = new ArrayList<>();
+    /**
+     * Loads a dataset from its snapshot if the snapshot matches the current dataset files,
+     * otherwise reads the tables and writes a new snapshot.
+     */
+    private CLDFWordlistDatabase loadWithSnapshot(File path, JsonNode tables, List<File> files) throws IOException {
+        Path snapshot = snapshotFile(path);
+        CLDFWordlistDatabase database = CLDFSnapshot.read(snapshot, files, dictionaries);
+        if (database != null) {
+            exceptions.addAll(database.getExceptions());
+            return database;
+        }
+        //the fingerprint is taken before reading, so that files changing during the import invalidate the snapshot
+        CLDFSnapshot.Fingerprint fingerprint = CLDFSnapshot.Fingerprint.of(files);
+        database = readTables(path, tables);
+        database.setFileFingerprints(fingerprint.toMap());
+        writeSnapshot(database, fingerprint, snapshot);
+        return database;
+    }
 
-                for (JsonNode table : tables) {
-                    String tableType = table.get("dc:conformsTo").asText().split("#")[1]; //each table must conform to a type, which is added into the list
-                    tableTypes.add(tableType);
-                }
+    private Path snapshotFile(File path) {
+        File absolutePath = path.getAbsoluteFile();
+        return snapshotDirectory.toPath().resolve(absolutePath.getName() + "-"
+                + Integer.toHexString(absolutePath.getPath().hashCode()) + ".cldfsnap");
+    }
 
-                //index of a type of table in the list is the one we that we will refer to retrieve all values relevant for the specific table
-                int formTableIndex = tableTypes.indexOf("FormTable");
-                int languageTableIndex = tableTypes.indexOf("LanguageTable");
-                int parameterTableIndex = tableTypes.indexOf("ParameterTable");
-                int cognateTableIndex = tableTypes.indexOf("CognateTable");
-                int cognateSetTableIndex = tableTypes.indexOf("CognatesetTable");
-
-                //getting names of the files that stores tables
-                String formFileName = tables.get(formTableIndex).get("url").asText();
-                String languageFileName = tables.get(languageTableIndex).get("url").asText();
-                String parameterFileName = tables.get(parameterTableIndex).get("url").asText();
-
-                //populating form, language and parameters maps (all have different methods because of different properties and object fields)
-                Map<Integer, CLDFForm> idToForm = readFormCsv(path + "/" + formFileName, createColumnPropertyMap(formTableIndex, tables));
-                Map<String, CLDFLanguage> langIDToLang = readLanguageCsv(path + "/" + languageFileName, createColumnPropertyMap(languageTableIndex, tables));
-                Map<String, CLDFParameter> paramIDToParam = readParameterCsv(path + "/" + parameterFileName, createColumnPropertyMap(parameterTableIndex, tables));
-                Map<Integer, CLDFCognateJudgement> cognateIDToCognate = new HashMap<>();
-                if (cognateTableIndex != -1) {
-                    String cognateFileName = tables.get(cognateTableIndex).get("url").asText();
-                    cognateIDToCognate = readCognateCsv(path + "/" + cognateFileName, createColumnPropertyMap(cognateTableIndex, tables));
-                }
-                //populating Cognateset map only happens if there is a separate file for that
-                Map<String, CLDFCognateSet> cogSetIDToCogset = new HashMap<>();
-                if (cognateSetTableIndex != -1) {
-                    String cognateSetFileName = tables.get(cognateSetTableIndex).get("url").asText();
-                    cogSetIDToCogset = readCognateSetCsv(path + "/" + cognateSetFileName, createColumnPropertyMap(cognateSetTableIndex, tables));
+    private void writeSnapshot(CLDFWordlistDatabase database, CLDFSnapshot.Fingerprint fingerprint, Path snapshot) {
+        database.setExceptions(new ArrayList<>(exceptions));
+        try {
+            CLDFSnapshot.write(database, fingerprint, snapshot);
+        } catch (IOException e) {
+            System.err.println("WARNING: could not write snapshot " + snapshot + ": " + e);
+        }
+    }
+
+    /**
+     * Re-reads the tables of a database whose files have changed since it was loaded. Only changed tables are read;
+     * forms keep their dense IDs if their original ID is still in the FormTable, new forms get fresh IDs, and the
+     * indexes derived from replaced tables are dropped. If the metadata JSON changed, or the database has no file
+     * fingerprints, the dataset is loaded from scratch.
+     * The database is updated in place and must not be used by other threads during the reload.
+     *
+     * @param database a database loaded by {@link #load(String)}
+     * @return the updated database, or a newly loaded one if a full reload was necessary
+     */
+    public synchronized CLDFWordlistDatabase reload(CLDFWordlistDatabase database) {
+        String cldfDirName = database.getCurrentPath();
+        resetState();
+        try {
+            File path = new File(cldfDirName);
+            JsonNode tables = readWordlistTables(path);
+            List<File> files = listDatasetFiles(path, tables);
+            //contents are only hashed for a new snapshot, or to check files that were touched but kept their size
+            CLDFSnapshot.Fingerprint fingerprint = snapshotDirectory != null
+                    ? CLDFSnapshot.Fingerprint.of(files) : CLDFSnapshot.Fingerprint.stat(files);
+            Map<String, String> current = fingerprint.toMap();
+            Map<String, String> previous = database.getFileFingerprints();
+            String metadataName = files.get(0).getName();
+            if (previous == null || !CLDFSnapshot.Fingerprint.unchanged(files.get(0), current.get(metadataName), previous.get(metadataName))) {
+                return load(cldfDirName);
+            }
+            //changed tables by file name as used in row exceptions
+            Set<String> changed = new HashSet<>();
+            for (int i = 0; i < tables.size(); i++) {
+                String name = files.get(i + 1).getName();
+                if (!CLDFSnapshot.Fingerprint.unchanged(files.get(i + 1), current.get(name), previous.get(name))) {
+                    changed.add(path + "/" + tables.get(i).get("url").asText());
                 }
-                formsOldToNew.clear();
-                database = new CLDFWordlistDatabase(idToForm, langIDToLang, paramIDToParam, cognateIDToCognate, cogSetIDToCogset, formsNewToOld);
-                database.currentPath = cldfDirName;
+            }
+            if (changed.isEmpty()) {
+                return database;
+            }
 
+            List<String> tableTypes = listTableTypes(tables);
+            int formTableIndex = tableTypes.indexOf("FormTable");
+            int cognateTableIndex = tableTypes.indexOf("CognateTable");
+            String formFileName = path + "/" + tables.get(formTableIndex).get("url").asText();
+            boolean formsChanged = changed.contains(formFileName);
+            if (formsChanged && cognateTableIndex != -1) {
+                //judgements refer to forms, so they are re-read with the new form IDs
+                changed.add(path + "/" + tables.get(cognateTableIndex).get("url").asText());
+            }
+            //keep the exceptions of unchanged tables, the changed ones report their rows again
+            for (String[] exception : database.getExceptions()) {
+                if (exception.length < 2 || !changed.contains(exception[1])) {
+                    exceptions.add(exception);
+                }
+            }
+            if (formsChanged) {
+                reloadForms(database, formFileName, createColumnPropertyMap(formTableIndex, tables));
             } else {
-                throw new Error("wordlist");
+                formsNewToOld = database.getOriginalFormIds();
+                for (Map.Entry<Integer, String> entry : formsNewToOld.entrySet()) {
+                    formsOldToNew.put(entry.getValue(), entry.getKey());
+                }
+            }
+            for (int i = 0; i < tableTypes.size(); i++) {
+                String fileName = path + "/" + tables.get(i).get("url").asText();
+                Map<String, String> propertyColumns = createColumnPropertyMap(i, tables);
+                switch (tableTypes.get(i)) {
+                    case "LanguageTable":
+                        if (changed.contains(fileName)) database.replaceLanguages(readLanguageTable(fileName, propertyColumns));
+                        break;
+                    case "ParameterTable":
+                        if (changed.contains(fileName)) database.replaceParameters(readParameterTable(fileName, propertyColumns));
+                        break;
+                    case "CognatesetTable":
+                        if (changed.contains(fileName)) database.replaceCognateSets(readCognateSetTable(fileName, propertyColumns));
+                        break;
+                    case "CognateTable":
+                        if (changed.contains(fileName)) database.replaceCognates(readCognateTable(fileName, propertyColumns));
+                        break;
+                }
+            }
+            formsOldToNew.clear();
+            database.setFileFingerprints(current);
+            if (snapshotDirectory != null) {
+                writeSnapshot(database, fingerprint, snapshotFile(path));
             }
         } catch (Error e) {
             exceptions.add(new String[]{e.getMessage(), cldfDirName});
@@ -106,13 +370,188 @@ public class CLDFImport {
             exceptions.add(new String[]{"else"});
             e.printStackTrace();
         }
-        if (database == null) {
-            database = new CLDFWordlistDatabase();
-        }
         database.setExceptions(exceptions);
         return database;
     }
 
+    /**
+     * Re-reads the FormTable of a database, keeping the dense IDs of forms whose original IDs are known.
+     */
+    private void reloadForms(CLDFWordlistDatabase database, String path, Map<String, String> propertyColumns) {
+        Map<String, Integer> stableIds = new HashMap<>();
+        int nextId = 0;
+        for (Map.Entry<Integer, String> entry : database.getOriginalFormIds().entrySet()) {
+            stableIds.put(entry.getValue(), entry.getKey());
+            nextId = Math.max(nextId, entry.getKey() + 1);
+        }
+        //the forms come with fresh dense IDs in file order, which are mapped back to the previous IDs
+        Map<Integer, CLDFForm> parsed = readFormTable(path, propertyColumns);
+        Map<Integer, String> parsedIds = formsNewToOld;
+        DenseIntMap<CLDFForm> forms = new DenseIntMap<>(parsed.size());
+        formsOldToNew = new HashMap<>();
+        formsNewToOld = new DenseIntMap<>(parsed.size());
+        for (int parsedId = 0; parsedId < parsed.size(); parsedId++) {
+            CLDFForm form = parsed.get(parsedId);
+            String originalId = parsedIds.get(parsedId);
+            Integer id = stableIds.get(originalId);
+            if (id == null || forms.containsKey(id)) {
+                id = nextId++;
+            }
+            form.setId(id);
+            forms.put(id, form);
+            formsOldToNew.put(originalId, id);
+            formsNewToOld.put(id, originalId);
+        }
+        boolean wasColumnar = database.getColumnarForms() != null;
+        database.replaceForms(forms, formsNewToOld);
+        //the columnar backend needs dense IDs, which are lost if forms were removed
+        if ((columnar || wasColumnar) && forms.isDense()) {
+            database.useColumnarForms();
+        }
+    }
+
+    /**
+     * @return the metadata file followed by the files of the tables, in metadata order
+     */
+    private static List<File> listDatasetFiles(File path, JsonNode tables) {
+        List<File> files = new ArrayList<>();
+        files.add(findMetadataFile(path));
+        for (JsonNode table : tables) {
+            files.add(new File(path + "/" + table.get("url").asText()));
+        }
+        return files;
+    }
+
+    /**
+     * Reads the tables of a dataset from its CSV files.
+     */
+    private CLDFWordlistDatabase readTables(File path, JsonNode tables) {
+        List<String> tableTypes = listTableTypes(tables);
+
+        //index of a type of table in the list is the one we that we will refer to retrieve all values relevant for the specific table
+        int formTableIndex = tableTypes.indexOf("FormTable");
+        int languageTableIndex = tableTypes.indexOf("LanguageTable");
+        int parameterTableIndex = tableTypes.indexOf("ParameterTable");
+        int cognateTableIndex = tableTypes.indexOf("CognateTable");
+        int cognateSetTableIndex = tableTypes.indexOf("CognatesetTable");
+
+        //getting names of the files that stores tables
+        String formFileName = path + "/" + tables.get(formTableIndex).get("url").asText();
+        String languageFileName = path + "/" + tables.get(languageTableIndex).get("url").asText();
+        String parameterFileName = path + "/" + tables.get(parameterTableIndex).get("url").asText();
+        Map<String, String> formColumns = createColumnPropertyMap(formTableIndex, tables);
+        Map<String, String> languageColumns = createColumnPropertyMap(languageTableIndex, tables);
+        Map<String, String> parameterColumns = createColumnPropertyMap(parameterTableIndex, tables);
+
+        //populating form, language and parameters maps (all have different methods because of different properties and object fields)
+        //the tables are independent of each other and are read concurrently
+        CompletableFuture<Map<Integer, CLDFForm>> idToForm = CompletableFuture.supplyAsync(() -> readFormTable(formFileName, formColumns), executor);
+        CompletableFuture<Map<String, CLDFLanguage>> langIDToLang = CompletableFuture.supplyAsync(() -> readLanguageTable(languageFileName, languageColumns), executor);
+        CompletableFuture<Map<String, CLDFParameter>> paramIDToParam = CompletableFuture.supplyAsync(() -> readParameterTable(parameterFileName, parameterColumns), executor);
+        //the cognate table refers to original form IDs, so it can only be read once the form ID mapping is complete
+        CompletableFuture<Map<Integer, CLDFCognateJudgement>> cognateIDToCognate = CompletableFuture.completedFuture(new DenseIntMap<>());
+        if (cognateTableIndex != -1) {
+            String cognateFileName = path + "/" + tables.get(cognateTableIndex).get("url").asText();
+            Map<String, String> cognateColumns = createColumnPropertyMap(cognateTableIndex, tables);
+            cognateIDToCognate = idToForm.thenApplyAsync(forms -> readCognateTable(cognateFileName, cognateColumns), executor);
+        }
+        //populating Cognateset map only happens if there is a separate file for that
+        CompletableFuture<Map<String, CLDFCognateSet>> cogSetIDToCogset = CompletableFuture.completedFuture(new HashMap<>());
+        if (cognateSetTableIndex != -1) {
+            String cognateSetFileName = path + "/" + tables.get(cognateSetTableIndex).get("url").asText();
+            Map<String, String> cognateSetColumns = createColumnPropertyMap(cognateSetTableIndex, tables);
+            cogSetIDToCogset = CompletableFuture.supplyAsync(() -> readCognateSetTable(cognateSetFileName, cognateSetColumns), executor);
+        }
+        CLDFWordlistDatabase database = new CLDFWordlistDatabase(idToForm.join(), langIDToLang.join(), paramIDToParam.join(),
+                cognateIDToCognate.join(), cogSetIDToCogset.join(), formsNewToOld);
+        formsOldToNew.clear();
+        return database;
+    }
+
+    /**
+     * Opens the FormTable of a dataset for streaming, without materializing the table in memory.
+     * Rows are mapped to forms using the same metadata-driven column mapping as {@link #load(String)}.
+     * Malformed rows are skipped and reported to {@link #getExceptions()}.
+     *
+     * @param cldfDirName the directory containing the metadata JSON and the CSV files
+     * @return a reader over the forms, which the caller has to close
+     */
+    public FormTableReader openFormTable(String cldfDirName) throws IOException {
+        File path = new File(cldfDirName);
+        JsonNode tables = readWordlistTables(path);
+        int formTableIndex = listTableTypes(tables).indexOf("FormTable");
+        String formFileName = path + "/" + tables.get(formTableIndex).get("url").asText();
+        return new FormTableReader(formFileName, createColumnPropertyMap(formTableIndex, tables), exceptions, dictionaries, canonizer());
+    }
+
+    /**
+     * Streams the FormTable of a dataset, see {@link #openFormTable(String)}. The stream has to be closed after use.
+     *
+     * @param cldfDirName the directory containing the metadata JSON and the CSV files
+     * @return the forms of the dataset in file order
+     */
+    public Stream<CLDFForm> streamForms(String cldfDirName) throws IOException {
+        return openFormTable(cldfDirName).stream();
+    }
+
+    /**
+     * Calls the visitor on every form of a dataset, see {@link #openFormTable(String)}.
+     *
+     * @param cldfDirName the directory containing the metadata JSON and the CSV files
+     * @param visitor     the callback for each form
+     */
+    public void forEachForm(String cldfDirName, Consumer<? super CLDFForm> visitor) throws IOException {
+        openFormTable(cldfDirName).forEachRemaining(visitor);
+    }
+
+    /**
+     * @return the errors reported while loading or streaming the most recent dataset
+     */
+    public List<String[]> getExceptions() {
+        return exceptions;
+    }
+
+    /**
+     * Reads the metadata JSON of a dataset directory.
+     *
+     * @param path the dataset directory
+     * @return the table descriptions of the Wordlist module
+     * @throws Error "folder" if there is no metadata file, "wordlist" if the dataset is not a Wordlist
+     */
+    private static JsonNode readWordlistTables(File path) throws IOException {
+        byte[] mapData = Files.readAllBytes(Paths.get(findMetadataFile(path).getAbsolutePath()));
+        JsonNode root = new ObjectMapper().readTree(mapData);
+        String moduleType = root.get("dc:conformsTo").asText().split("#")[1]; // extracting the module from the link
+        if (!moduleType.equals("Wordlist")) { //extracting the Wordlist module
+            throw new Error("wordlist");
+        }
+        return root.get("tables");
+    }
+
+    private static File findMetadataFile(File path) {
+        File[] possibleJsons = path.listFiles((File dir, String name) -> name.endsWith("metadata.json")); //possible json files in the given folder
+        if (possibleJsons.length == 0) { //if 0, no json found in the folder
+            throw new Error("folder");
+        }
+        return possibleJsons[0];
+    }
+
+    private static List<String> listTableTypes(JsonNode tables) {
+        List<String> tableTypes = new ArrayList<>();
+        for (JsonNode table : tables) {
+            String tableType = table.get("dc:conformsTo").asText().split("#")[1]; //each table must conform to a type, which is added into the list
+            tableTypes.add(tableType);
+        }
+        return tableTypes;
+    }
+
+    private void resetState() {
+        formsOldToNew = new HashMap<>();
+        formsNewToOld = new DenseIntMap<>();
+        //row errors are reported by table readers running on different threads
+        exceptions = Collections.synchronizedList(new ArrayList<>());
+    }
+
     /**
      * A method to create the map from column names to their types
      *
@@ -141,80 +580,10 @@ public class CLDFImport {
      * @param propertyColumns a map of properties and their columns
      * @return id to Parameter object map
      */
-    public static Map<String, CLDFParameter> readParameterCsv(String path, Map<String, String> propertyColumns) {
-        BufferedReader bf = null;
-        String line = "";
+    public Map<String, CLDFParameter> readParameterTable(String path, Map<String, String> propertyColumns) {
         Map<String, CLDFParameter> parameterTable = new HashMap<>();
-        try {
-            bf = new BufferedReader(new FileReader(path));
-            List<String> columns = Arrays.asList(bf.readLine().toLowerCase().split(","));  //all columns are split by comma
-
-            //retrieving column indecies of each property, that will help us extract values and fill Object fields.
-            //-1 needed when the field is not required, and therefore won't be extracted if not found
-            int idIdx = columns.indexOf(propertyColumns.get("id").toLowerCase());
-            int nameIdx = propertyColumns.containsKey("name") ? columns.indexOf(propertyColumns.get("name").toLowerCase()) : -1;
-            int concIdx = propertyColumns.containsKey("concepticonReference") ? columns.indexOf(propertyColumns.get("concepticonReference").toLowerCase()) : -1;
-            int semField = columns.contains("semantic_field") ? columns.indexOf("semantic_field") : -1;
-            int concepiconIdx = -1;
-            if (columns.contains("concepticon_proposed")) {
-                concepiconIdx = columns.indexOf("concepticon_proposed");
-            } else if (columns.contains("concepticon_gloss")) {
-                concepiconIdx = columns.indexOf("concepticon_gloss");
-            } else if (columns.contains("concepticon")) {
-                concepiconIdx = columns.indexOf("concepticon");
-            }
-
-            //in order to fill the "properties" map, for the columns that don't have a separate filed
-            //make a list of column indecies that were used
-            List<Integer> usedColumns = Arrays.asList(idIdx, nameIdx, concIdx, concepiconIdx, semField);
-            List<Integer> remainedColumns = new ArrayList<>();
-
-            //fill a new list with unused columns with the remaining indecies
-            for (int i = 0; i < columns.size(); i++) {
-                if (!usedColumns.contains(i)) {
-                    remainedColumns.add(i);
-                }
-            }
-            int i = 1;
-            while ((line = bf.readLine()) != null) {
-                //parsed column values of each row
-                String[] column = CSVParser.getColumns(line).toArray(new String[0]);
-                CLDFParameter parameterEntry = new CLDFParameter();
-                Map<String, String> properties = new HashMap<>();
-                try {
-                    //if the amount of column names and the amount of retrieved column values are not the same, there must be some error in row formatting
-                    if (column.length != columns.size()) {
-                        throw new Exception();
-                    }
-                    //setting required fields
-                    parameterEntry.setParamID(column[idIdx]);
-
-                    //settings fields that aren't required by checking whether they exist
-                    if (nameIdx != -1) parameterEntry.setName(column[nameIdx]);
-                    if (concIdx != -1) parameterEntry.setConcepticonID(column[concIdx]);
-                    if (concepiconIdx != -1) parameterEntry.setConcepticon(column[concepiconIdx]);
-                    if (semField != -1) parameterEntry.setSemanticField(column[semField]);
-
-                    //for the indecies of remained columns, put them into a property map
-                    for (int j = 0; j < remainedColumns.size(); j++) {
-                        String colVal = column[remainedColumns.get(j)];
-                        properties.put(columns.get(remainedColumns.get(j)), colVal);
-                    }
-
-                    parameterEntry.setProperties(properties);
-                    //mapping object and its id
-                    parameterTable.put(column[idIdx], parameterEntry);
-                } catch (Exception e) {
-                    exceptions.add(new String[]{"row", path, i + "", line});
-                }
-                i++;
-            }
-            bf.close();
-
-        } catch (ArrayIndexOutOfBoundsException | IOException e) {
-            e.printStackTrace();
-        }
-
+        //mapping object and its id
+        readTable(path, propertyColumns, TableSchema.PARAMETERS, parameterEntry -> parameterTable.put(parameterEntry.getParamID(), parameterEntry));
         return parameterTable;
     }
 
@@ -225,82 +594,10 @@ public class CLDFImport {
      * @param propertyColumns a map of properties and their columns
      * @return id to Language object map
      */
-    public static Map<String, CLDFLanguage> readLanguageCsv(String path, Map<String, String> propertyColumns) {
-        BufferedReader bf = null;
+    public Map<String, CLDFLanguage> readLanguageTable(String path, Map<String, String> propertyColumns) {
         Map<String, CLDFLanguage> languageTable = new HashMap<>();
-        String line = "";
-
-        try {
-            bf = new BufferedReader(new FileReader(path));
-            List<String> columns = Arrays.asList(bf.readLine().split(","));  //all columns are split by comma
-
-            //retrieving column indecies of each property, that will help us extract values and fill Object fields.
-            //-1 needed when the field is not required, and therefore won't be extracted if not found
-            int idIdx = columns.indexOf(propertyColumns.get("id"));
-            int isoIdx = propertyColumns.containsKey("iso639P3code") ? columns.indexOf(propertyColumns.get("iso639P3code")) : -1;
-            int glottoIdx = propertyColumns.containsKey("glottocode") ? columns.indexOf(propertyColumns.get("glottocode")) : -1;
-            int macroaIdx = propertyColumns.containsKey("macroarea") ? columns.indexOf(propertyColumns.get("macroarea")) : -1;
-            int nameIdx = propertyColumns.containsKey("name") ? columns.indexOf(propertyColumns.get("name")) : -1;
-            int familyIdx = propertyColumns.containsKey("Family") ? columns.indexOf(propertyColumns.get("Family")) : -1;
-            int latitIdx = propertyColumns.containsKey("latitude") ? columns.indexOf(propertyColumns.get("latitude")) : -1;
-            int longitIdx = propertyColumns.containsKey("longitude") ? columns.indexOf(propertyColumns.get("longitude")) : -1;
-            if (latitIdx == -1 && columns.contains("latitude")) latitIdx = columns.indexOf("latitude");
-            if (longitIdx == -1 && columns.contains("longitude")) longitIdx = columns.indexOf("longitude");
-            //in order to fill the "properties" map, for the columns that don't have a separate filed
-            //make a list of column indecies that were used
-            List<Integer> usedColumns = Arrays.asList(idIdx, isoIdx, glottoIdx, macroaIdx, latitIdx, longitIdx, nameIdx);
-            List<Integer> remainedColumns = new ArrayList<>();
-
-            //fill a new list with unused columns with the remaining indecies
-            for (int i = 0; i < columns.size(); i++) {
-                if (!usedColumns.contains(i)) {
-                    remainedColumns.add(i);
-                }
-            }
-
-            int i = 1;
-            while ((line = bf.readLine()) != null) {
-                //parsed column values of each row
-                String[] column = CSVParser.getColumns(line).toArray(new String[0]);
-                CLDFLanguage languageEntry = new CLDFLanguage();
-                Map<String, String> properties = new HashMap<>();
-                try {
-                    //if the amount of column names and the amount of retrieved column values are not the same, there must be some error in row formatting
-                    if (column.length != columns.size()) {
-                        throw new Exception();
-                    }
-                    //setting required fields
-                    languageEntry.setLangID(column[idIdx]);
-
-                    //settings fields that aren't required by checking whether they exist
-                    if (isoIdx != -1) languageEntry.setIso(column[isoIdx]);
-                    if (glottoIdx != -1) languageEntry.setGlottocode(column[glottoIdx]);
-                    if (nameIdx != -1) languageEntry.setName(column[nameIdx]);
-                    if (familyIdx != -1) languageEntry.setFamily(column[familyIdx]);
-                    if (latitIdx != -1)
-                        languageEntry.setLatitude(column[latitIdx].isEmpty() ? Float.NaN : Float.parseFloat(column[latitIdx])); //if the value is empty, indication for a Float type
-                    if (longitIdx != -1)
-                        languageEntry.setLongitude(column[latitIdx].isEmpty() ? Float.NaN : Float.parseFloat(column[longitIdx])); //if the value is empty, indication for a Float type
-
-                    //for the indices of remained columns, put them into a property map
-                    for (int j = 0; j < remainedColumns.size(); j++) {
-                        String colVal = column[remainedColumns.get(j)];
-                        properties.put(columns.get(remainedColumns.get(j)), colVal);
-                    }
-
-                    languageEntry.setProperties(properties);
-                    //mapping object and its id
-                    languageTable.put(column[idIdx], languageEntry);
-                } catch (Exception e) {
-                    exceptions.add(new String[]{"row", path, i + "", line});
-                }
-                i++;
-            }
-            bf.close();
-        } catch (ArrayIndexOutOfBoundsException | IOException e) {
-            e.printStackTrace();
-        }
-
+        //mapping object and its id
+        readTable(path, propertyColumns, TableSchema.LANGUAGES, languageEntry -> languageTable.put(languageEntry.getLangID(), languageEntry));
         return languageTable;
     }
 
@@ -311,95 +608,82 @@ public class CLDFImport {
      * @param propertyColumns a map of properties and their columns
      * @return id to Form object map
      */
-    public static Map<Integer, CLDFForm> readFormCsv(String path, Map<String, String> propertyColumns) {
-        BufferedReader bf = null;
-        String line = "";
-        Map<Integer, CLDFForm> formTable = new HashMap<>();
-        int formID = 0;
-        try {
-            bf = new BufferedReader(new FileReader(path));
-            List<String> columns = Arrays.asList(bf.readLine().split(","));  //all columns are split by comma
-
-            //value doesn't always have a specified property name, and is sometimes cold differently. Map possible names
-            String value = propertyColumns.containsKey("Value") ? "Value" : "value";
-
-            //retrieving column indecies of each property, that will help us extract values and fill Object fields.
-            //-1 needed when the field is not required, and therefore won't be extracted if not found
-            int idIdx = columns.indexOf(propertyColumns.get("id"));
-            int langIdx = columns.indexOf(propertyColumns.get("languageReference"));
-            int paramIdx = columns.indexOf(propertyColumns.get("parameterReference"));
-
-            int formIdx = propertyColumns.containsKey("form") ? columns.indexOf(propertyColumns.get("form")) : -1;
-            int valueIdx = propertyColumns.containsKey(value) ? columns.indexOf(propertyColumns.get(value)) : -1;
-            int commentIdx = propertyColumns.containsKey("comment") ? columns.indexOf(propertyColumns.get("comment")) : -1;
-            int segmentsIdx = propertyColumns.containsKey("segments") ? columns.indexOf(propertyColumns.get("segments")) : -1;
-            int orthoIdx = -1;
-            if (propertyColumns.containsKey("Orthography")) {
-                orthoIdx = columns.indexOf(propertyColumns.get("Orthography"));
-            } else if (propertyColumns.containsKey("Local_Orthography")) {
-                orthoIdx = columns.indexOf(propertyColumns.get("Local_Orthography"));
+    public Map<Integer, CLDFForm> readFormTable(String path, Map<String, String> propertyColumns) {
+        if (memoryMapped) {
+            return readFormTableMapped(path, propertyColumns);
+        }
+        Map<Integer, CLDFForm> formTable = new DenseIntMap<>();
+        try (FormTableReader reader = new FormTableReader(path, propertyColumns, exceptions, dictionaries, canonizer())) {
+            while (reader.hasNext()) {
+                CLDFForm formEntry = reader.next();
+                //if form id is a string, create an integer ID
+                formsOldToNew.put(reader.getOriginalId(), formEntry.getId());
+                formsNewToOld.put(formEntry.getId(), reader.getOriginalId());
+                //mapping object and its id
+                formTable.put(formEntry.getId(), formEntry);
             }
+        } catch (ArrayIndexOutOfBoundsException | IOException | UncheckedIOException e) {
+            e.printStackTrace();
+        }
 
-            //in order to fill the "properties" map, for the columns that don't have a separate filed
-            //make a list of column indices that were used
-            List<Integer> usedColumns = Arrays.asList(idIdx, langIdx, paramIdx, formIdx, valueIdx, commentIdx, segmentsIdx, orthoIdx);
-            List<Integer> remainedColumns = new ArrayList<>();
+        return formTable;
+    }
 
-            //fill a new list with unused columns with the remaining indices
-            for (int i = 0; i < columns.size(); i++) {
-                if (!usedColumns.contains(i)) {
-                    remainedColumns.add(i);
+    /**
+     * Reads the Form Table with a {@link MappedCSVReader}. Chunks are mapped to forms in parallel,
+     * then merged in file order to assign the dense form IDs.
+     */
+    private Map<Integer, CLDFForm> readFormTableMapped(String path, Map<String, String> propertyColumns) {
+        Map<Integer, CLDFForm> formTable = new DenseIntMap<>();
+        try (MappedCSVReader reader = new MappedCSVReader(Paths.get(path))) {
+            RowMapper<CLDFForm> mapper = new RowMapper<>(TableSchema.forms(canonizer()), reader.getHeader(), propertyColumns, dictionaries);
+            int idColumn = mapper.column("id");
+            List<MappedCSVReader.Chunk<FormChunk>> chunks = reader.parse(parsingPool(), FormChunk::new, (tokens, recordInChunk, chunk) -> {
+                CLDFForm formEntry = mapper.map(tokens);
+                if (formEntry == null) {
+                    chunk.errorRecords.add(recordInChunk);
+                    chunk.errorLines.add(tokens.rowText());
+                } else {
+                    chunk.forms.add(formEntry);
+                    chunk.originalIds.add(tokens.field(idColumn));
                 }
-            }
-            int i = 1;
-            while ((line = bf.readLine()) != null) {
-                //parsed column values of each row
-                String[] column = CSVParser.getColumns(line).toArray(new String[0]);
-                CLDFForm formEntry = new CLDFForm();
-                Map<String, String> properties = new HashMap<>();
-                try {
-                    //if the amount of column names and the amount of retrieved column values are not the same, there must be some error in row formatting
-                    if (column.length != columns.size()) {
-                        throw new Exception();
-                    }
-                    //setting required fields
-                    //if form id is a string, create an integer ID
-                    formsOldToNew.put(column[idIdx], formID);
-                    formsNewToOld.put(formID, column[idIdx]);
+            });
+            int formID = 0;
+            for (MappedCSVReader.Chunk<FormChunk> chunk : chunks) {
+                FormChunk rows = chunk.getResult();
+                for (int j = 0; j < rows.forms.size(); j++) {
+                    CLDFForm formEntry = rows.forms.get(j);
                     formEntry.setId(formID);
-                    formEntry.setLangID(column[langIdx]);
-                    formEntry.setParamIDs(Arrays.asList(column[paramIdx].split(";")));
-
-                    //settings fields that aren't required by checking whether they exist
-                    if (formIdx != -1) formEntry.setForm(IPAFormCanonization.process(column[formIdx]));
-                    if (valueIdx != -1) formEntry.setOrigValue(column[valueIdx]);
-                    if (commentIdx != -1) formEntry.setComment(column[commentIdx]);
-                    if (segmentsIdx != -1) formEntry.setSegments(IPAFormCanonization.process(column[segmentsIdx]).split(" "));
-                    if (orthoIdx != -1) formEntry.setOrthography(column[orthoIdx]);
-
-                    //for the indices of remained columns, put them into a property map
-                    for (int j = 0; j < remainedColumns.size(); j++) {
-                        String colVal = column[remainedColumns.get(j)].isEmpty() ? "" : column[remainedColumns.get(j)];
-                        properties.put(columns.get(remainedColumns.get(j)), colVal);
-                    }
-
-                    formEntry.setProperties(properties);
-                    //mapping object and its id
+                    formsOldToNew.put(rows.originalIds.get(j), formID);
+                    formsNewToOld.put(formID, rows.originalIds.get(j));
                     formTable.put(formID, formEntry);
                     formID++;
-                } catch (Exception e) {
-                    exceptions.add(new String[]{"row", path, i + "", line});
                 }
-                i++;
+                for (int j = 0; j < rows.errorRecords.size(); j++) {
+                    int i = chunk.getFirstRecord() + rows.errorRecords.get(j) + 1;
+                    exceptions.add(new String[]{"row", path, i + "", rows.errorLines.get(j)});
+                }
             }
-            bf.close();
-        } catch (ArrayIndexOutOfBoundsException | IOException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
-
         return formTable;
     }
 
+    /**
+     * Rows of one chunk of a memory-mapped Form Table, in file order.
+     */
+    private static class FormChunk {
+        final List<CLDFForm> forms = new ArrayList<>();
+        final List<String> originalIds = new ArrayList<>();
+        final List<Integer> errorRecords = new ArrayList<>();
+        final List<String> errorLines = new ArrayList<>();
+    }
+
+    private ForkJoinPool parsingPool() {
+        return executor instanceof ForkJoinPool ? (ForkJoinPool) executor : ForkJoinPool.commonPool();
+    }
+
     /**
      * A method for reading the CoganteSet Table
      *
@@ -407,66 +691,24 @@ public class CLDFImport {
      * @param propertyColumns a map of properties and their columns
      * @return id to Cognate object map
      */
-    public static Map<Integer, CLDFCognateJudgement> readCognateCsv(String path, Map<String, String> propertyColumns) {
-        BufferedReader bf = null;
-        String line = "";
-        Map<Integer, CLDFCognateJudgement> cognateTable = new HashMap<>();
-        int cognateId = 0;
-        try {
-            bf = new BufferedReader(new FileReader(path));
-            List<String> columns = Arrays.asList(bf.readLine().split(",")); //all columns are split by comma
-
-            //retrieving column indices of each property, that will help us extract values and fill Object fields. -1 needed when the field is not required, and therefore won't be extracted if not found
-            int idIdx = columns.indexOf(propertyColumns.get("id"));
-            int formIdx = columns.indexOf(propertyColumns.get("formReference"));
-            int cogsetIdx = columns.indexOf(propertyColumns.get("cognatesetReference"));
-
-            Set<Integer> usedFormIds = new HashSet<>();
-
-            int i = 1;
-            while ((line = bf.readLine()) != null) {
-                //parsed column values of each row
-                String[] column = CSVParser.getColumns(line).toArray(new String[0]);
-                CLDFCognateJudgement cognateEntry = new CLDFCognateJudgement();
-                //if the amount of column names and the amount of retrieved column values are not the same, there must be some error in row formatting
-                try {
-                    if (column.length != columns.size()) {
-                        throw new Exception();
-                    }
-                    if (formsOldToNew.containsKey(column[formIdx])) {
-                        // skip lines where a form ID was already assigned to a cogset.
-                        int newFormId = formsOldToNew.get(column[formIdx]);
-                        if (usedFormIds.contains(newFormId)) {
-                            System.err.println("WARNING: CLDF form " + column[formIdx] + " was already assigned to " +
-                                    "a cognate set. Disregarding further cognacy judgements for this Form ID.");
-                            continue;
-                        }
-
-                        //setting required fields
-                        int currentCogset = -1;
-                        cognateIdMap.put(column[idIdx], cognateId);
-                        cognateEntry.setCognateID(cognateId);
-                        cognateEntry.setFormReference(newFormId);
-                        cognateEntry.setCognatesetReference(column[cogsetIdx]);
-
-
-                        //mapping object and its id
-                        cognateTable.put(cognateId, cognateEntry);
-                        cognateId++;
-
-                        usedFormIds.add(newFormId);
-                    }
-                } catch (Exception e) {
-                    exceptions.add(new String[]{"row", path, i + "", line});
-                }
-                i++;
+    public Map<Integer, CLDFCognateJudgement> readCognateTable(String path, Map<String, String> propertyColumns) {
+        Map<Integer, CLDFCognateJudgement> cognateTable = new DenseIntMap<>();
+        Set<Integer> usedFormIds = new HashSet<>();
+        readTable(path, propertyColumns, TableSchema.cognates(formsOldToNew), cognateEntry -> {
+            int newFormId = cognateEntry.getFormReference();
+            if (newFormId == -1) {
+                return; //judgement for a form that is not in the form table
             }
-            bf.close();
-
-        } catch (ArrayIndexOutOfBoundsException | IOException e) {
-            e.printStackTrace();
-        }
-        cognateIdMap.clear();
+            // skip lines where a form ID was already assigned to a cogset.
+            if (!usedFormIds.add(newFormId)) {
+                System.err.println("WARNING: CLDF form " + formsNewToOld.get(newFormId) + " was already assigned to " +
+                        "a cognate set. Disregarding further cognacy judgements for this Form ID.");
+                return;
+            }
+            //mapping object and its id
+            cognateEntry.setCognateID(cognateTable.size());
+            cognateTable.put(cognateEntry.getCognateID(), cognateEntry);
+        });
         return cognateTable;
     }
 
@@ -477,49 +719,41 @@ public class CLDFImport {
      * @param propertyColumns a map of properties and their columns
      * @return id to CognateSet object map
      */
-    public static Map<String, CLDFCognateSet> readCognateSetCsv(String path, Map<String, String> propertyColumns) {
-        BufferedReader bf = null;
-        String line = "";
+    public Map<String, CLDFCognateSet> readCognateSetTable(String path, Map<String, String> propertyColumns) {
         Map<String, CLDFCognateSet> cognatesetTable = new HashMap<>();
-        try {
-            bf = new BufferedReader(new FileReader(path));
-            List<String> columns = Arrays.asList(bf.readLine().split(",")); //all columns are split by comma
-
-            //retrieving column indecies of each property, that will help us extract values and fill Object fields. -1 needed when the field is not required, and therefore won't be extracted if not found
-            int idIdx = columns.indexOf(propertyColumns.get("id"));
-            int descriptionIdx = propertyColumns.containsKey("description") ? columns.indexOf(propertyColumns.get("description")) : -1;
-            int sourceIdx = propertyColumns.containsKey("source") ? columns.indexOf(propertyColumns.get("source")) : -1;
+        //mapping object and its id
+        readTable(path, propertyColumns, TableSchema.COGNATE_SETS, cognateSetEntry -> cognatesetTable.put(cognateSetEntry.getCogsetID(), cognateSetEntry));
+        return cognatesetTable;
+    }
 
+    /**
+     * Reads a table file row by row, maps each row with a {@link RowMapper} compiled from the schema,
+     * and reports malformed rows as exceptions.
+     *
+     * @param path            of the file to read
+     * @param propertyColumns a map of properties and their columns
+     * @param schema          the binding of the table columns to object fields
+     * @param sink            receives the row objects in file order
+     */
+    private <T> void readTable(String path, Map<String, String> propertyColumns, TableSchema<T> schema, Consumer<T> sink) {
+        try (BufferedReader bf = CSVParser.open(path)) {
+            RowMapper<T> mapper = new RowMapper<>(schema, CSVParser.getColumns(bf.readLine()), propertyColumns, dictionaries);
+            CSVTokenizer tokens = CSVTokenizer.forCurrentThread();
+            String line;
             int i = 1;
             while ((line = bf.readLine()) != null) {
                 //parsed column values of each row
-                String[] column = CSVParser.getColumns(line).toArray(new String[0]);
-                CLDFCognateSet cognateSetEntry = new CLDFCognateSet();
-                //if the amount of column names and the amount of retrieved column values are not the same, there must be some error in row formatting
-                try {
-                    if (column.length != columns.size()) {
-                        throw new Exception();
-                    }
-                    //setting required fields
-                    cognateSetEntry.setCogsetID(column[idIdx]);
-
-                    //settings fields that aren't required by checking whether they exist
-                    if (descriptionIdx != -1) cognateSetEntry.setDescription(column[descriptionIdx]);
-                    if (sourceIdx != -1) cognateSetEntry.setSources(Arrays.asList(column[sourceIdx].split(";")));
-
-                    //mapping object and its id
-                    cognatesetTable.put(column[idIdx], cognateSetEntry);
-                } catch (Exception e) {
+                tokens.tokenize(line);
+                T entry = mapper.map(tokens);
+                if (entry == null) {
                     exceptions.add(new String[]{"row", path, i + "", line});
+                } else {
+                    sink.accept(entry);
                 }
                 i++;
             }
-            bf.close();
-
-        } catch (ArrayIndexOutOfBoundsException | IOException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
-
-        return cognatesetTable;
     }
 }
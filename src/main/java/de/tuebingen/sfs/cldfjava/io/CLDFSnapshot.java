@@ -0,0 +1,629 @@
+package de.tuebingen.sfs.cldfjava.io;
+
+import de.tuebingen.sfs.cldfjava.data.CLDFCognateJudgement;
+import de.tuebingen.sfs.cldfjava.data.CLDFCognateSet;
+import de.tuebingen.sfs.cldfjava.data.CLDFForm;
+import de.tuebingen.sfs.cldfjava.data.CLDFLanguage;
+import de.tuebingen.sfs.cldfjava.data.CLDFParameter;
+import de.tuebingen.sfs.cldfjava.data.CLDFWordlistDatabase;
+import de.tuebingen.sfs.cldfjava.data.PropertyMap;
+import de.tuebingen.sfs.cldfjava.util.DenseIntMap;
+import de.tuebingen.sfs.cldfjava.util.StringDictionaries;
+import de.tuebingen.sfs.cldfjava.util.StringDictionary;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * A binary snapshot of a loaded {@link CLDFWordlistDatabase}, so that unchanged datasets can be loaded without
+ * parsing their CSV files. A snapshot records a {@link Fingerprint} of the files it was created from and is only
+ * used while they are unchanged.
+ * <p>
+ * Layout (big-endian): magic, version, fingerprint, string table (UTF-8), property key sets, then the tables, where all
+ * strings are stored as indices into the string table (-1 for null). Derived indexes of the database are not stored,
+ * they are rebuilt on first use as after a CSV import.
+ */
+public class CLDFSnapshot {
+    private static final int MAGIC = 0x434C4446; //"CLDF"
+    private static final int VERSION = 1;
+
+    /**
+     * Size, modification time and CRC32C checksum of each file of a dataset. The checksums are left out of
+     * fingerprints taken by {@link #stat(List)}.
+     */
+    public static final class Fingerprint {
+        private final String[] names;
+        private final long[] sizes;
+        private final long[] modified;
+        private final int[] checksums; //null if the contents were not hashed
+
+        private Fingerprint(String[] names, long[] sizes, long[] modified, int[] checksums) {
+            this.names = names;
+            this.sizes = sizes;
+            this.modified = modified;
+            this.checksums = checksums;
+        }
+
+        /**
+         * Computes the fingerprint of the given files; this reads their full content.
+         */
+        public static Fingerprint of(List<File> files) throws IOException {
+            Fingerprint fingerprint = stat(files, new int[files.size()]);
+            for (int i = 0; i < files.size(); i++) {
+                fingerprint.checksums[i] = checksum(files.get(i));
+            }
+            return fingerprint;
+        }
+
+        /**
+         * Records the names, sizes and modification times of the given files, without reading them.
+         */
+        public static Fingerprint stat(List<File> files) {
+            return stat(files, null);
+        }
+
+        private static Fingerprint stat(List<File> files, int[] checksums) {
+            int n = files.size();
+            Fingerprint fingerprint = new Fingerprint(new String[n], new long[n], new long[n], checksums);
+            for (int i = 0; i < n; i++) {
+                File file = files.get(i);
+                fingerprint.names[i] = file.getName();
+                fingerprint.sizes[i] = file.length();
+                fingerprint.modified[i] = file.lastModified();
+            }
+            return fingerprint;
+        }
+
+        /**
+         * Compares two stamps of a file as returned by {@link #toMap()}. Files of the same size are unchanged if
+         * their modification times are equal, or if their checksums are equal; the file is only hashed if the
+         * modification time changed and only the previous stamp has a checksum.
+         *
+         * @param file     the file, to hash its current content if necessary
+         * @param current  the current stamp of the file
+         * @param previous the previous stamp of the file, or null
+         */
+        public static boolean unchanged(File file, String current, String previous) throws IOException {
+            if (previous == null) {
+                return false;
+            }
+            String[] now = current.split(":");
+            String[] before = previous.split(":");
+            if (!now[0].equals(before[0])) {
+                return false;
+            }
+            if (now.length == 3 && before.length == 3) {
+                return now[2].equals(before[2]);
+            }
+            if (now[1].equals(before[1])) {
+                return true;
+            }
+            return before.length == 3 && Integer.toHexString(checksum(file)).equals(before[2]);
+        }
+
+        /**
+         * Checks the fingerprint against the current state of the files. Contents are only hashed if names, sizes and
+         * modification times match.
+         */
+        public boolean matches(List<File> files) throws IOException {
+            if (files.size() != names.length) {
+                return false;
+            }
+            for (int i = 0; i < names.length; i++) {
+                File file = files.get(i);
+                if (!file.getName().equals(names[i]) || file.length() != sizes[i] || file.lastModified() != modified[i]) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < names.length; i++) {
+                if (checksums == null || checksum(files.get(i)) != checksums[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return a "size:modified:checksum" stamp for each file, or "size:modified" if the contents were not hashed,
+         * by file name; see {@link #unchanged(File, String, String)}
+         */
+        public Map<String, String> toMap() {
+            Map<String, String> stamps = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                String stamp = sizes[i] + ":" + modified[i];
+                stamps.put(names[i], checksums == null ? stamp : stamp + ":" + Integer.toHexString(checksums[i]));
+            }
+            return stamps;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            if (checksums == null) {
+                throw new IllegalStateException("a snapshot needs the checksums of the dataset files");
+            }
+            out.writeInt(names.length);
+            for (int i = 0; i < names.length; i++) {
+                out.writeUTF(names[i]);
+                out.writeLong(sizes[i]);
+                out.writeLong(modified[i]);
+                out.writeInt(checksums[i]);
+            }
+        }
+
+        private static Fingerprint read(ByteBuffer in) {
+            int n = count(in, in.getInt());
+            Fingerprint fingerprint = new Fingerprint(new String[n], new long[n], new long[n], new int[n]);
+            for (int i = 0; i < n; i++) {
+                byte[] name = new byte[in.getShort() & 0xFFFF];
+                in.get(name);
+                //writeUTF uses modified UTF-8, which only differs from UTF-8 for NUL and supplementary characters
+                fingerprint.names[i] = new String(name, StandardCharsets.UTF_8);
+                fingerprint.sizes[i] = in.getLong();
+                fingerprint.modified[i] = in.getLong();
+                fingerprint.checksums[i] = in.getInt();
+            }
+            return fingerprint;
+        }
+    }
+
+    //a count or length from the snapshot, checked before anything is allocated for it: every element takes at least
+    //one byte, so a damaged prefix cannot claim more elements than there are bytes left
+    private static int count(ByteBuffer in, int count) {
+        if (count < 0 || count > in.remaining()) {
+            throw new IllegalArgumentException("invalid count " + count + " at position " + in.position());
+        }
+        return count;
+    }
+
+    private static int checksum(File file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Integer.MAX_VALUE, size - position)));
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes a snapshot of a database. The snapshot is written to a temporary file first and then moved into place,
+     * so that concurrent readers never see a partial snapshot.
+     *
+     * @param database    the loaded database
+     * @param fingerprint the fingerprint of the dataset files, taken before they were read
+     * @param snapshot    the snapshot file
+     */
+    public static void write(CLDFWordlistDatabase database, Fingerprint fingerprint, Path snapshot) throws IOException {
+        SnapshotWriter writer = new SnapshotWriter();
+        writer.writeDatabase(database);
+
+        Path temp = Files.createTempFile(snapshot.toAbsolutePath().getParent(), snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                fingerprint.write(out);
+                out.writeInt(writer.strings.size());
+                for (String string : writer.strings) {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                out.writeInt(writer.keySets.size());
+                for (List<String> keys : writer.keySets) {
+                    out.writeInt(keys.size());
+                    for (String key : keys) {
+                        out.writeInt(writer.stringIndex.get(key));
+                    }
+                }
+                writer.body.writeTo(out);
+            }
+            if (Files.size(temp) > Integer.MAX_VALUE) {
+                throw new IOException("snapshot exceeds 2 GB and cannot be memory-mapped: " + snapshot);
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a snapshot if it exists and was created from the current state of the dataset files.
+     *
+     * @param snapshot the snapshot file
+     * @param files    the dataset files, in the order used when the snapshot was written
+     * @return the database, or null if there is no valid snapshot for the files
+     */
+    public static CLDFWordlistDatabase read(Path snapshot, List<File> files) {
+        return read(snapshot, files, null);
+    }
+
+    /**
+     * Reads a snapshot if it exists and was created from the current state of the dataset files. Its strings are
+     * interned through the column dictionaries, as by a CSV import with the same dictionaries, so that the database
+     * shares its values with the other databases loaded with them.
+     *
+     * @param dictionaries the column dictionaries of the loader, or null to keep the strings of the snapshot
+     */
+    public static CLDFWordlistDatabase read(Path snapshot, List<File> files, StringDictionaries dictionaries) {
+        if (!Files.isRegularFile(snapshot)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return null;
+            }
+            Fingerprint fingerprint = Fingerprint.read(in);
+            if (!fingerprint.matches(files)) {
+                return null;
+            }
+            CLDFWordlistDatabase database = new SnapshotReader(in, dictionaries).readDatabase();
+            database.setFileFingerprints(fingerprint.toMap());
+            return database;
+        } catch (IOException | RuntimeException e) {
+            //a damaged snapshot can fail in many ways; it is ignored like a stale one, and the CSV files are read
+            System.err.println("WARNING: ignoring unreadable snapshot " + snapshot + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Serializes the tables into a buffer, collecting strings and property key sets for the header on the way.
+     */
+    private static class SnapshotWriter {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(1 << 16);
+        final DataOutputStream out = new DataOutputStream(body);
+        final List<String> strings = new ArrayList<>();
+        final Map<String, Integer> stringIndex = new HashMap<>();
+        final List<List<String>> keySets = new ArrayList<>();
+        final Map<List<String>, Integer> keySetIndex = new HashMap<>();
+
+        void writeDatabase(CLDFWordlistDatabase database) throws IOException {
+            Map<Integer, CLDFForm> forms = database.getFormsMap();
+            out.writeInt(forms.size());
+            for (Map.Entry<Integer, CLDFForm> entry : forms.entrySet()) {
+                CLDFForm form = entry.getValue();
+                out.writeInt(entry.getKey());
+                out.writeInt(form.getId());
+                writeString(form.getLangID());
+                writeStrings(form.getParamIDs());
+                writeString(form.getForm());
+                writeString(form.getOrigValue());
+                writeString(form.getComment());
+                writeString(form.getOrthography());
+                writeStrings(form.getSegments() == null ? null : Arrays.asList(form.getSegments()));
+                writeProperties(form.getProperties());
+            }
+
+            Map<String, CLDFLanguage> languages = database.getLanguageMap();
+            out.writeInt(languages.size());
+            for (Map.Entry<String, CLDFLanguage> entry : languages.entrySet()) {
+                CLDFLanguage language = entry.getValue();
+                writeString(entry.getKey());
+                writeString(language.getLangID());
+                writeString(language.getIso());
+                writeString(language.getGlottocode());
+                writeString(language.getName());
+                writeString(language.getFamily());
+                writeString(language.getMacroarea());
+                out.writeFloat(language.getLatitude());
+                out.writeFloat(language.getLongitude());
+                writeProperties(language.getProperties());
+            }
+
+            Map<String, CLDFParameter> parameters = database.getConceptMap();
+            out.writeInt(parameters.size());
+            for (Map.Entry<String, CLDFParameter> entry : parameters.entrySet()) {
+                CLDFParameter parameter = entry.getValue();
+                writeString(entry.getKey());
+                writeString(parameter.getParamID());
+                writeString(parameter.getName());
+                writeString(parameter.getConcepticonID());
+                writeString(parameter.getConcepticon());
+                writeString(parameter.getSemanticField());
+                writeProperties(parameter.getProperties());
+            }
+
+            Map<Integer, CLDFCognateJudgement> cognates = database.getCognateMap();
+            out.writeInt(cognates.size());
+            for (Map.Entry<Integer, CLDFCognateJudgement> entry : cognates.entrySet()) {
+                CLDFCognateJudgement cognate = entry.getValue();
+                out.writeInt(entry.getKey());
+                out.writeInt(cognate.getCognateID());
+                out.writeInt(cognate.getFormReference());
+                writeString(cognate.getCognatesetReference());
+            }
+
+            Map<String, CLDFCognateSet> cognateSets = database.getCognateSetMap();
+            out.writeInt(cognateSets == null ? -1 : cognateSets.size());
+            if (cognateSets != null) {
+                for (Map.Entry<String, CLDFCognateSet> entry : cognateSets.entrySet()) {
+                    CLDFCognateSet cognateSet = entry.getValue();
+                    writeString(entry.getKey());
+                    writeString(cognateSet.getCogsetID());
+                    writeString(cognateSet.getDescription());
+                    writeStrings(cognateSet.getSources());
+                }
+            }
+
+            Map<Integer, String> originalFormIds = database.getOriginalFormIds();
+            out.writeInt(originalFormIds.size());
+            for (Map.Entry<Integer, String> entry : originalFormIds.entrySet()) {
+                out.writeInt(entry.getKey());
+                writeString(entry.getValue());
+            }
+
+            List<String[]> exceptions = database.getExceptions() == null ? List.of() : database.getExceptions();
+            out.writeInt(exceptions.size());
+            for (String[] exception : exceptions) {
+                writeStrings(Arrays.asList(exception));
+            }
+            out.flush();
+        }
+
+        void writeString(String string) throws IOException {
+            if (string == null) {
+                out.writeInt(-1);
+                return;
+            }
+            Integer index = stringIndex.get(string);
+            if (index == null) {
+                index = strings.size();
+                strings.add(string);
+                stringIndex.put(string, index);
+            }
+            out.writeInt(index);
+        }
+
+        void writeStrings(List<String> list) throws IOException {
+            if (list == null) {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(list.size());
+            for (String string : list) {
+                writeString(string);
+            }
+        }
+
+        //a property map is stored as the index of its key set and a value for each key
+        void writeProperties(Map<String, String> properties) throws IOException {
+            if (properties == null) {
+                out.writeInt(-1);
+                return;
+            }
+            List<String> keys = new ArrayList<>(properties.keySet());
+            Integer index = keySetIndex.get(keys);
+            if (index == null) {
+                for (String key : keys) {
+                    writeStringIndex(key);
+                }
+                index = keySets.size();
+                keySets.add(keys);
+                keySetIndex.put(keys, index);
+            }
+            out.writeInt(index);
+            for (String key : keys) {
+                writeString(properties.get(key));
+            }
+        }
+
+        //adds a string to the string table without writing a reference
+        void writeStringIndex(String string) {
+            if (!stringIndex.containsKey(string)) {
+                stringIndex.put(string, strings.size());
+                strings.add(string);
+            }
+        }
+    }
+
+    private static class SnapshotReader {
+        final ByteBuffer in;
+        final StringDictionaries dictionaries; //null if strings are not interned
+        final Map<String, Column> columns = new HashMap<>();
+        final String[] strings;
+        final PropertyMap.Keys[] keySets;
+
+        SnapshotReader(ByteBuffer in, StringDictionaries dictionaries) {
+            this.in = in;
+            this.dictionaries = dictionaries;
+            this.strings = new String[count(in, in.getInt())];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                int length = count(in, in.getInt());
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                in.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            this.keySets = new PropertyMap.Keys[count(in, in.getInt())];
+            for (int i = 0; i < keySets.length; i++) {
+                List<String> keys = readStrings();
+                keySets[i] = new PropertyMap.Keys(keys);
+            }
+        }
+
+        CLDFWordlistDatabase readDatabase() {
+            int formCount = count(in, in.getInt());
+            Map<Integer, CLDFForm> forms = new DenseIntMap<>(formCount);
+            for (int i = 0; i < formCount; i++) {
+                int key = in.getInt();
+                CLDFForm form = new CLDFForm();
+                form.setId(in.getInt());
+                form.setLangID(readString(column("FormTable", "languageReference")));
+                form.setParamIDs(readList(column("FormTable", "parameterReference")));
+                form.setForm(readString(column("FormTable", "form")));
+                form.setOrigValue(readString(column("FormTable", "Value")));
+                form.setComment(readString(column("FormTable", "comment")));
+                form.setOrthography(readString(column("FormTable", "Orthography")));
+                List<String> segments = readStrings(column("FormTable", "segments"));
+                form.setSegments(segments == null ? null : segments.toArray(new String[0]));
+                form.setProperties(readProperties("FormTable"));
+                forms.put(key, form);
+            }
+
+            int languageCount = count(in, in.getInt());
+            Map<String, CLDFLanguage> languages = new HashMap<>();
+            for (int i = 0; i < languageCount; i++) {
+                String key = readString(column("LanguageTable", "id"));
+                CLDFLanguage language = new CLDFLanguage();
+                language.setLangID(readString(column("LanguageTable", "id")));
+                language.setIso(readString(column("LanguageTable", "iso639P3code")));
+                language.setGlottocode(readString(column("LanguageTable", "glottocode")));
+                language.setName(readString(column("LanguageTable", "name")));
+                language.setFamily(readString(column("LanguageTable", "Family")));
+                language.setMacroarea(readString(column("LanguageTable", "macroarea")));
+                language.setLatitude(in.getFloat());
+                language.setLongitude(in.getFloat());
+                language.setProperties(readProperties("LanguageTable"));
+                languages.put(key, language);
+            }
+
+            int parameterCount = count(in, in.getInt());
+            Map<String, CLDFParameter> parameters = new HashMap<>();
+            for (int i = 0; i < parameterCount; i++) {
+                String key = readString(column("ParameterTable", "id"));
+                CLDFParameter parameter = new CLDFParameter();
+                parameter.setParamID(readString(column("ParameterTable", "id")));
+                parameter.setName(readString(column("ParameterTable", "name")));
+                parameter.setConcepticonID(readString(column("ParameterTable", "concepticonReference")));
+                parameter.setConcepticon(readString(column("ParameterTable", "concepticon_proposed")));
+                parameter.setSemanticField(readString(column("ParameterTable", "semantic_field")));
+                parameter.setProperties(readProperties("ParameterTable"));
+                parameters.put(key, parameter);
+            }
+
+            int cognateCount = count(in, in.getInt());
+            Map<Integer, CLDFCognateJudgement> cognates = new DenseIntMap<>(cognateCount);
+            for (int i = 0; i < cognateCount; i++) {
+                int key = in.getInt();
+                CLDFCognateJudgement cognate = new CLDFCognateJudgement();
+                cognate.setCognateID(in.getInt());
+                cognate.setFormReference(in.getInt());
+                cognate.setCognatesetReference(readString(column("CognateTable", "cognatesetReference")));
+                cognates.put(key, cognate);
+            }
+
+            int cognateSetCount = in.getInt();
+            if (cognateSetCount != -1) {
+                count(in, cognateSetCount);
+            }
+            Map<String, CLDFCognateSet> cognateSets = cognateSetCount == -1 ? null : new HashMap<>();
+            for (int i = 0; i < cognateSetCount; i++) {
+                String key = readString(column("CognatesetTable", "id"));
+                CLDFCognateSet cognateSet = new CLDFCognateSet();
+                cognateSet.setCogsetID(readString(column("CognatesetTable", "id")));
+                cognateSet.setDescription(readString(column("CognatesetTable", "description")));
+                cognateSet.setSources(readList(column("CognatesetTable", "source")));
+                cognateSets.put(key, cognateSet);
+            }
+
+            int originalIdCount = count(in, in.getInt());
+            Map<Integer, String> originalFormIds = new DenseIntMap<>(originalIdCount);
+            for (int i = 0; i < originalIdCount; i++) {
+                originalFormIds.put(in.getInt(), readString());
+            }
+
+            int exceptionCount = count(in, in.getInt());
+            List<String[]> exceptions = new ArrayList<>();
+            for (int i = 0; i < exceptionCount; i++) {
+                exceptions.add(readStrings().toArray(new String[0]));
+            }
+
+            CLDFWordlistDatabase database = new CLDFWordlistDatabase(forms, languages, parameters, cognates, cognateSets, originalFormIds);
+            database.setExceptions(exceptions);
+            return database;
+        }
+
+        //the dictionary of a column (named as in TableSchema), with the strings of the table interned so far
+        final class Column {
+            final StringDictionary dictionary;
+            final String[] interned = new String[strings.length];
+
+            Column(StringDictionary dictionary) {
+                this.dictionary = dictionary;
+            }
+
+            String get(int index) {
+                String value = interned[index];
+                if (value == null) {
+                    value = dictionary.intern(strings[index]);
+                    interned[index] = value;
+                }
+                return value;
+            }
+        }
+
+        Column column(String table, String column) {
+            if (dictionaries == null) {
+                return null;
+            }
+            return columns.computeIfAbsent(table + "/" + column, name -> new Column(dictionaries.get(table, column)));
+        }
+
+        String readString() {
+            return readString(null);
+        }
+
+        String readString(Column column) {
+            int index = in.getInt();
+            if (index == -1) {
+                return null;
+            }
+            return column == null ? strings[index] : column.get(index);
+        }
+
+        List<String> readStrings() {
+            return readStrings(null);
+        }
+
+        List<String> readStrings(Column column) {
+            int size = in.getInt();
+            if (size == -1) {
+                return null;
+            }
+            String[] list = new String[count(in, size)];
+            for (int i = 0; i < size; i++) {
+                list[i] = readString(column);
+            }
+            return new ArrayList<>(Arrays.asList(list));
+        }
+
+        //a ";"-separated column, a fixed-size list of interned values like TableSchema reads it
+        List<String> readList(Column column) {
+            int size = in.getInt();
+            if (size == -1) {
+                return null;
+            }
+            String[] list = new String[count(in, size)];
+            for (int i = 0; i < size; i++) {
+                list[i] = readString(column);
+            }
+            return Arrays.asList(list);
+        }
+
+        Map<String, String> readProperties(String table) {
+            int index = in.getInt();
+            if (index == -1) {
+                return null;
+            }
+            PropertyMap.Keys keys = keySets[index];
+            String[] values = new String[keys.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readString(column(table, keys.get(i)));
+            }
+            return new PropertyMap(keys, values);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package de.tuebingen.sfs.cldfjava.io;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -15,13 +18,29 @@ public class CSVParser {
     String nextLine = null;
 
     public CSVParser(InputStream rawInputStream, boolean hasHeader) throws IOException {
-        this.in = new BufferedReader(new InputStreamReader(rawInputStream));
+        this.in = skipByteOrderMark(new BufferedReader(new InputStreamReader(rawInputStream, StandardCharsets.UTF_8)));
         if (hasHeader) {
             columnTitles = getColumns(in.readLine());
         }
         nextLine = in.readLine();
     }
 
+    /**
+     * Opens a table file as UTF-8, as CLDF requires, and skips a byte order mark, like {@link MappedCSVReader}.
+     * Malformed bytes are replaced rather than reported, as in the memory-mapped path.
+     */
+    static BufferedReader open(String path) throws IOException {
+        return skipByteOrderMark(new BufferedReader(new InputStreamReader(Files.newInputStream(Paths.get(path)), StandardCharsets.UTF_8)));
+    }
+
+    private static BufferedReader skipByteOrderMark(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+        return reader;
+    }
+
     public void close() {
         try {
             in.close();
@@ -60,58 +79,19 @@ public class CSVParser {
 
     public enum FSAState {NORMAL_MODE, IN_QUOTES, AFTER_QUOTES_IN_QUOTE;}
     /**
+     * Parses a row into a list of column values. Bulk readers should use a {@link CSVTokenizer} directly,
+     * which avoids creating strings for unused columns.
+     *
      * @param csvRow A row string from csv file
      * @return list of parsed column values
      */
     public static List<String> getColumns(String csvRow) {
-        CharSequence row = csvRow;
-
-        FSAState currentState = FSAState.NORMAL_MODE;
-        List<String> columnContents = new ArrayList<>();
-
-        StringBuilder currentColumn = new StringBuilder();
-        for (int i = 0; i < row.length(); i++) {
-            char currentChar = row.charAt(i);
-            switch (currentChar) {
-                case ',':
-                    if (currentState == FSAState.NORMAL_MODE) {
-                        columnContents.add(currentColumn.toString());
-                        currentColumn = new StringBuilder();
-                    } else if (currentState == FSAState.AFTER_QUOTES_IN_QUOTE) {
-                        currentState = FSAState.NORMAL_MODE;
-                        columnContents.add(currentColumn.toString());
-                        currentColumn = new StringBuilder();
-                    } else if (currentState == FSAState.IN_QUOTES) {
-                        currentColumn.append(',');
-                    }
-                    break;
-                case '"':
-                    if (currentState == FSAState.NORMAL_MODE) {
-                        currentState = FSAState.IN_QUOTES;
-                        if (currentColumn.length() > 1) {
-                            System.err.println("CSV parsing error: found unescaped quotation mark in middle of field value, assuming that a column separator is missing!");
-                            System.err.println("    malformed row: " + row);
-                            columnContents.add(currentColumn.toString());
-                            currentColumn = new StringBuilder();
-                        }
-                    } else if (currentState == FSAState.IN_QUOTES) {
-                        currentState = FSAState.AFTER_QUOTES_IN_QUOTE;
-                    } else if (currentState == FSAState.AFTER_QUOTES_IN_QUOTE) {
-                        currentColumn.append('\"');
-                        currentState = FSAState.IN_QUOTES;
-                    }
-                    break;
-                default:
-                    if (currentState == FSAState.AFTER_QUOTES_IN_QUOTE) {
-                        System.err.println("CSV parsing error: found single quotation mark in middle of quoted field value, assuming that it was intended to be escaped!");
-                        System.err.println("    malformed row: " + row);
-                        currentColumn.append('\"');
-                        currentState = FSAState.IN_QUOTES;
-                    }
-                    currentColumn.append(currentChar);
-            }
+        CSVTokenizer tokenizer = CSVTokenizer.forCurrentThread();
+        int fieldCount = tokenizer.tokenize(csvRow);
+        List<String> columnContents = new ArrayList<>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            columnContents.add(tokenizer.field(i));
         }
-         columnContents.add(currentColumn.toString());
         return columnContents;
     }
 
@@ -0,0 +1,302 @@
+package de.tuebingen.sfs.cldfjava.io;
+
+import de.tuebingen.sfs.cldfjava.io.CSVParser.FSAState;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A reusable tokenizer for CSV rows which implements the same regular grammar (including error recovery) as
+ * {@link CSVParser#getColumns(String)}, but does not allocate per row or per field.
+ * Fields are exposed as slices into the tokenized row; strings are only created for fields that are requested via
+ * {@link #field(int)}. Rows can be given as character sequences or as UTF-8 encoded byte ranges, in which case the
+ * offsets are byte offsets and only the requested fields are decoded. A tokenizer holds the state of the last row only and must not be shared between threads,
+ * use {@link #forCurrentThread()} to get a per-thread instance.
+ */
+public class CSVTokenizer {
+    private static final ThreadLocal<CSVTokenizer> LOCAL = ThreadLocal.withInitial(CSVTokenizer::new);
+
+    private CharSequence row;
+    private ByteBuffer bytes; //set instead of row for UTF-8 encoded rows
+    private int rowStart;
+    private int rowEnd;
+    private byte[] scratch = new byte[256];
+    private int fieldCount;
+    //content slice of each field; for fields which are not plain, the raw range that has to be unescaped
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    //fields containing escaped or stray quotation marks, whose content is not a contiguous slice of the row
+    private boolean[] escaped = new boolean[16];
+
+    /**
+     * @return the tokenizer instance owned by the current thread
+     */
+    public static CSVTokenizer forCurrentThread() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Splits a row into fields. The row must not be modified until its fields have been read.
+     *
+     * @param csvRow A row string from csv file
+     * @return the number of fields in the row
+     */
+    public int tokenize(CharSequence csvRow) {
+        row = csvRow;
+        bytes = null;
+        return scan(0, csvRow.length());
+    }
+
+    /**
+     * Splits a UTF-8 encoded row into fields. The buffer must not be modified until the fields have been read.
+     * Only absolute reads are used, so several tokenizers can share one buffer.
+     *
+     * @param buffer the buffer containing the row
+     * @param start  the offset of the first byte of the row
+     * @param end    the offset after the last byte of the row, excluding line terminators
+     * @return the number of fields in the row
+     */
+    public int tokenize(ByteBuffer buffer, int start, int end) {
+        row = null;
+        bytes = buffer;
+        return scan(start, end);
+    }
+
+    private int scan(int start, int end) {
+        rowStart = start;
+        rowEnd = end;
+        fieldCount = 0;
+
+        FSAState currentState = FSAState.NORMAL_MODE;
+        int fieldStart = start;
+        int contentLength = 0; //length of the field value parsed so far, needed for error recovery
+        int quotes = 0; //quotation marks in the current field
+        for (int i = start; i < end; i++) {
+            int currentChar = unit(i);
+            switch (currentChar) {
+                case ',':
+                    if (currentState == FSAState.IN_QUOTES) {
+                        contentLength++;
+                    } else {
+                        currentState = FSAState.NORMAL_MODE;
+                        addField(fieldStart, i, quotes);
+                        fieldStart = i + 1;
+                        contentLength = 0;
+                        quotes = 0;
+                    }
+                    break;
+                case '"':
+                    if (currentState == FSAState.NORMAL_MODE) {
+                        currentState = FSAState.IN_QUOTES;
+                        if (contentLength > 1) {
+                            System.err.println("CSV parsing error: found unescaped quotation mark in middle of field value, assuming that a column separator is missing!");
+                            System.err.println("    malformed row: " + rowText());
+                            addField(fieldStart, i, quotes);
+                            fieldStart = i;
+                            contentLength = 0;
+                            quotes = 0;
+                        }
+                    } else if (currentState == FSAState.IN_QUOTES) {
+                        currentState = FSAState.AFTER_QUOTES_IN_QUOTE;
+                    } else if (currentState == FSAState.AFTER_QUOTES_IN_QUOTE) {
+                        contentLength++;
+                        currentState = FSAState.IN_QUOTES;
+                    }
+                    quotes++;
+                    break;
+                default:
+                    if (currentState == FSAState.AFTER_QUOTES_IN_QUOTE) {
+                        System.err.println("CSV parsing error: found single quotation mark in middle of quoted field value, assuming that it was intended to be escaped!");
+                        System.err.println("    malformed row: " + rowText());
+                        contentLength++;
+                        currentState = FSAState.IN_QUOTES;
+                    }
+                    contentLength += weight(currentChar);
+            }
+        }
+        addField(fieldStart, end, quotes);
+        return fieldCount;
+    }
+
+    private int unit(int i) {
+        return bytes == null ? row.charAt(i) : bytes.get(i) & 0xFF;
+    }
+
+    /**
+     * @return the number of UTF-16 chars a code unit contributes to a field value, so that error recovery
+     * behaves the same on bytes as on chars
+     */
+    private int weight(int unit) {
+        if (bytes == null || unit < 0x80) {
+            return 1;
+        }
+        if (unit < 0xC0) {
+            return 0; //continuation byte
+        }
+        return unit >= 0xF0 ? 2 : 1; //supplementary characters are surrogate pairs
+    }
+
+    private void addField(int start, int end, int quotes) {
+        if (fieldCount == starts.length) {
+            int capacity = fieldCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            escaped = Arrays.copyOf(escaped, capacity);
+        }
+        if (quotes == 2 && unit(start) == '"' && unit(end - 1) == '"') {
+            //a properly quoted field: the content is the slice between the quotation marks
+            starts[fieldCount] = start + 1;
+            ends[fieldCount] = end - 1;
+            escaped[fieldCount] = false;
+        } else {
+            starts[fieldCount] = start;
+            ends[fieldCount] = end;
+            escaped[fieldCount] = quotes > 0;
+        }
+        fieldCount++;
+    }
+
+    /**
+     * @return the number of fields in the last tokenized row
+     */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @return the start offset of a field in the row; for escaped fields, of the raw field text
+     */
+    public int start(int field) {
+        return starts[field];
+    }
+
+    /**
+     * @return the end offset (exclusive) of a field in the row; for escaped fields, of the raw field text
+     */
+    public int end(int field) {
+        return ends[field];
+    }
+
+    /**
+     * @return whether the field value has to be unescaped, i.e. is not exactly the slice between start and end
+     */
+    public boolean isEscaped(int field) {
+        return escaped[field];
+    }
+
+    /**
+     * @return whether the field value is the empty string
+     */
+    public boolean isEmpty(int field) {
+        if (escaped[field]) {
+            return unescape(starts[field], ends[field]).isEmpty();
+        }
+        return starts[field] == ends[field];
+    }
+
+    /**
+     * @return the value of a field; this is the only method that allocates a string
+     */
+    public String field(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        if (escaped[field]) {
+            return unescape(start, end);
+        }
+        if (start == end) {
+            return "";
+        }
+        if (bytes != null) {
+            return decode(start, end);
+        }
+        if (row instanceof String) {
+            return ((String) row).substring(start, end);
+        }
+        return row.subSequence(start, end).toString();
+    }
+
+    /**
+     * Compares a field value to a string without creating a string for the field.
+     */
+    public boolean fieldEquals(int field, String value) {
+        if (escaped[field]) {
+            return unescape(starts[field], ends[field]).equals(value);
+        }
+        int start = starts[field];
+        int length = ends[field] - start;
+        if (length != value.length()) {
+            //for UTF-8 rows, a value with non-ASCII characters can have the same length in chars but not in bytes
+            return bytes != null && length > value.length() && field(field).equals(value);
+        }
+        for (int i = 0; i < length; i++) {
+            int c = value.charAt(i);
+            if (bytes != null && c >= 0x80) {
+                return field(field).equals(value);
+            }
+            if (unit(start + i) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the complete text of the last tokenized row, e.g. for error messages
+     */
+    public String rowText() {
+        if (bytes != null) {
+            return decode(rowStart, rowEnd);
+        }
+        return row.subSequence(rowStart, rowEnd).toString();
+    }
+
+    private String decode(int start, int end) {
+        int length = end - start;
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        bytes.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replays the state machine of {@link #tokenize} on the raw text of a single field to build its value.
+     * Field boundaries have already been determined, so separators cannot occur here outside of quotes.
+     */
+    private String unescape(int start, int end) {
+        FSAState currentState = FSAState.NORMAL_MODE;
+        if (bytes != null && end - start > scratch.length) {
+            scratch = new byte[Math.max(end - start, scratch.length * 2)];
+        }
+        StringBuilder currentColumn = bytes == null ? new StringBuilder(end - start) : null;
+        int length = 0; //length of the unescaped UTF-8 value in scratch
+        for (int i = start; i < end; i++) {
+            int currentChar = unit(i);
+            switch (currentChar) {
+                case '"':
+                    if (currentState == FSAState.NORMAL_MODE) {
+                        currentState = FSAState.IN_QUOTES;
+                        continue;
+                    } else if (currentState == FSAState.IN_QUOTES) {
+                        currentState = FSAState.AFTER_QUOTES_IN_QUOTE;
+                        continue;
+                    }
+                    currentState = FSAState.IN_QUOTES;
+                    break;
+                default:
+                    if (currentState == FSAState.AFTER_QUOTES_IN_QUOTE) {
+                        if (bytes == null) currentColumn.append('\"');
+                        else scratch[length++] = '"';
+                        currentState = FSAState.IN_QUOTES;
+                    }
+            }
+            if (bytes == null) currentColumn.append((char) currentChar);
+            else scratch[length++] = (byte) currentChar;
+        }
+        if (bytes != null) {
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        return currentColumn.toString();
+    }
+}
@@ -0,0 +1,150 @@
+package de.tuebingen.sfs.cldfjava.io;
+
+import de.tuebingen.sfs.cldfjava.data.CLDFForm;
+import de.tuebingen.sfs.cldfjava.util.StringDictionaries;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a FormTable row by row, so that only the current row is held in memory.
+ * Forms get dense integer IDs in file order, exactly as in {@link CLDFImport#readFormTable}; malformed rows are skipped
+ * and reported to the exception list given to the constructor.
+ */
+public class FormTableReader implements Iterator<CLDFForm>, Closeable {
+    private final String path;
+    private final BufferedReader bf;
+    private final CSVTokenizer tokens = new CSVTokenizer();
+    private final List<String[]> exceptions;
+    private final RowMapper<CLDFForm> mapper;
+    private final int idColumn;
+
+    private int rowNumber = 0;
+    private int formID = 0;
+    private CLDFForm nextForm = null;
+    private String nextOriginalId = null;
+    private String originalId = null;
+
+    /**
+     * @param path            of the file to read
+     * @param propertyColumns a map of properties and their columns, see {@link CLDFImport#createColumnPropertyMap}
+     * @param exceptions      list to report malformed rows to
+     */
+    public FormTableReader(String path, Map<String, String> propertyColumns, List<String[]> exceptions) throws IOException {
+        this(path, propertyColumns, exceptions, null);
+    }
+
+    /**
+     * @param path            of the file to read
+     * @param propertyColumns a map of properties and their columns, see {@link CLDFImport#createColumnPropertyMap}
+     * @param exceptions      list to report malformed rows to
+     * @param dictionaries    the column dictionaries to deduplicate repeated values with, or null
+     */
+    public FormTableReader(String path, Map<String, String> propertyColumns, List<String[]> exceptions,
+                           StringDictionaries dictionaries) throws IOException {
+        this(path, propertyColumns, exceptions, dictionaries, IPAFormCanonization.getCanonizer());
+    }
+
+    /**
+     * @param path            of the file to read
+     * @param propertyColumns a map of properties and their columns, see {@link CLDFImport#createColumnPropertyMap}
+     * @param exceptions      list to report malformed rows to
+     * @param dictionaries    the column dictionaries to deduplicate repeated values with, or null
+     * @param canonizer       the canonization profile for the form and segments columns
+     */
+    public FormTableReader(String path, Map<String, String> propertyColumns, List<String[]> exceptions,
+                           StringDictionaries dictionaries, IPACanonizer canonizer) throws IOException {
+        this.path = path;
+        this.exceptions = exceptions;
+        this.bf = CSVParser.open(path);
+        this.mapper = new RowMapper<>(TableSchema.forms(canonizer), CSVParser.getColumns(bf.readLine()), propertyColumns, dictionaries);
+        this.idColumn = mapper.column("id");
+    }
+
+    /**
+     * Streams the forms of a FormTable. Closing the stream closes the underlying file.
+     */
+    public Stream<CLDFForm> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * Calls the visitor on every remaining form, then closes the file.
+     */
+    public void forEachRemaining(Consumer<? super CLDFForm> visitor) {
+        try {
+            while (hasNext()) {
+                visitor.accept(next());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextForm == null) {
+            advance();
+        }
+        return nextForm != null;
+    }
+
+    @Override
+    public CLDFForm next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        CLDFForm form = nextForm;
+        originalId = nextOriginalId;
+        nextForm = null;
+        nextOriginalId = null;
+        return form;
+    }
+
+    /**
+     * @return the ID given in the file for the form last returned by {@link #next()}
+     */
+    public String getOriginalId() {
+        return originalId;
+    }
+
+    @Override
+    public void close() {
+        try {
+            bf.close();
+        } catch (IOException e) {
+            System.err.println("WARNING: unexpected IO exception when closing FormTableReader!");
+            e.printStackTrace();
+        }
+    }
+
+    private void advance() {
+        String line;
+        try {
+            while ((line = bf.readLine()) != null) {
+                rowNumber++;
+                //parsed column values of each row
+                tokens.tokenize(line);
+                CLDFForm formEntry = mapper.map(tokens);
+                if (formEntry == null) {
+                    exceptions.add(new String[]{"row", path, rowNumber + "", line});
+                    continue;
+                }
+                //if form id is a string, create an integer ID
+                formEntry.setId(formID++);
+                nextOriginalId = tokens.field(idColumn);
+                nextForm = formEntry;
+                return;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package de.tuebingen.sfs.cldfjava.io;
+
+import java.util.*;
+
+/**
+ * A compiled set of rewrite rules for IPA strings, such as the default profile of {@link IPAFormCanonization}.
+ * The first character of a rule is looked up in a two-level table indexed by the UTF-16 code unit, and the rest of
+ * a multi-character rule in a trie below it; at each position the longest matching rule is applied. A rule for a
+ * supplementary character is stored under its surrogate pair, as a two-unit rule, so rules behave as if keyed by
+ * code point, and the char[] methods need no decoding.
+ * Optionally, parenthesized parts are dropped, like the comments in the form column of many datasets.
+ * <p>
+ * Strings without any match are returned as they are, without copying. Rewritten strings are kept in a bounded
+ * memo, because the same forms and segments recur across languages and datasets. A canonizer is immutable and
+ * can be used from several threads.
+ */
+public class IPACanonizer {
+    public static final int DEFAULT_MEMO_CAPACITY = 4096;
+
+    private final Map<String, String> rules;
+    private final boolean dropParenthesized;
+    private final Node[][] pages = new Node[256][]; //the first character of a rule, split into high and low byte
+    private final int maxExpansion;
+    private final Entry[] memo; //direct-mapped, entries are replaced on collision
+    private final ThreadLocal<char[][]> scratch = ThreadLocal.withInitial(() -> new char[][]{new char[64], new char[64]});
+
+    private static final class Node {
+        char[] replacement; //null if no rule ends here
+        char[] labels = new char[0]; //sorted
+        Node[] children = new Node[0];
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i < 0 ? null : children[i];
+        }
+
+        Node addChild(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            i = -i - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            newLabels[i] = c;
+            newChildren[i] = new Node();
+            System.arraycopy(labels, i, newLabels, i + 1, labels.length - i);
+            System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[i];
+        }
+    }
+
+    private static final class Entry {
+        final String raw;
+        final String canonized;
+
+        Entry(String raw, String canonized) {
+            this.raw = raw;
+            this.canonized = canonized;
+        }
+    }
+
+    /**
+     * Creates a canonizer that drops parenthesized parts and memoizes up to {@link #DEFAULT_MEMO_CAPACITY} strings.
+     *
+     * @param rules the replacements by the strings they replace
+     */
+    public IPACanonizer(Map<String, String> rules) {
+        this(rules, true, DEFAULT_MEMO_CAPACITY);
+    }
+
+    /**
+     * @param rules             the replacements by the strings they replace
+     * @param dropParenthesized whether to drop everything from an opening parenthesis to the next closing one
+     * @param memoCapacity      the number of rewritten strings to remember, 0 to disable the memo
+     */
+    public IPACanonizer(Map<String, String> rules, boolean dropParenthesized, int memoCapacity) {
+        if (memoCapacity < 0) {
+            throw new IllegalArgumentException("negative memo capacity " + memoCapacity);
+        }
+        this.rules = Collections.unmodifiableMap(new LinkedHashMap<>(rules));
+        this.dropParenthesized = dropParenthesized;
+        int expansion = 1;
+        for (Map.Entry<String, String> rule : this.rules.entrySet()) {
+            String from = rule.getKey();
+            if (from.isEmpty()) {
+                throw new IllegalArgumentException("empty rule for " + rule.getValue());
+            }
+            Node[] page = pages[from.charAt(0) >>> 8];
+            if (page == null) {
+                page = pages[from.charAt(0) >>> 8] = new Node[256];
+            }
+            Node node = page[from.charAt(0) & 0xff];
+            if (node == null) {
+                node = page[from.charAt(0) & 0xff] = new Node();
+            }
+            for (int i = 1; i < from.length(); i++) {
+                node = node.addChild(from.charAt(i));
+            }
+            node.replacement = rule.getValue().toCharArray();
+            expansion = Math.max(expansion, (node.replacement.length + from.length() - 1) / from.length());
+        }
+        this.maxExpansion = expansion;
+        this.memo = memoCapacity == 0 ? null : new Entry[Integer.highestOneBit(Math.max(1, memoCapacity - 1)) << 1];
+    }
+
+    /**
+     * @return a canonizer with the rules of this one and the given ones, which replace rules for the same strings
+     */
+    public IPACanonizer extend(Map<String, String> additionalRules) {
+        Map<String, String> combined = new LinkedHashMap<>(rules);
+        combined.putAll(additionalRules);
+        return new IPACanonizer(combined, dropParenthesized, memo == null ? 0 : memo.length);
+    }
+
+    public Map<String, String> getRules() {
+        return rules;
+    }
+
+    public boolean isDropParenthesized() {
+        return dropParenthesized;
+    }
+
+    /**
+     * @return a bound on the length of a rewritten string relative to the input, for sizing the output of
+     * {@link #process(char[], int, int, char[], int)}
+     */
+    public int maxExpansion() {
+        return maxExpansion;
+    }
+
+    public String process(String raw) {
+        int first = firstCandidate(raw);
+        if (first < 0) {
+            return raw;
+        }
+        Entry[] memo = this.memo;
+        int slot = 0;
+        if (memo != null) {
+            slot = slot(raw.hashCode(), memo.length);
+            Entry entry = memo[slot];
+            if (entry != null && entry.raw.equals(raw)) {
+                return entry.canonized;
+            }
+        }
+        char[][] buffers = scratch.get();
+        char[] in = buffers[0];
+        if (in.length < raw.length()) {
+            in = buffers[0] = new char[Integer.highestOneBit(raw.length()) << 1];
+        }
+        raw.getChars(0, raw.length(), in, 0);
+        int bound = raw.length() * maxExpansion;
+        char[] out = buffers[1];
+        if (out.length < bound) {
+            out = buffers[1] = new char[Integer.highestOneBit(bound) << 1];
+        }
+        System.arraycopy(in, 0, out, 0, first);
+        int length = rewrite(in, first, raw.length(), out, first);
+        String canonized = sameContent(raw, out, length) ? raw : new String(out, 0, length);
+        if (memo != null) {
+            memo[slot] = new Entry(raw, canonized);
+        }
+        return canonized;
+    }
+
+    /**
+     * Canonizes a batch of strings, sharing one set of buffers between them.
+     *
+     * @return the canonized strings, in the order of the input
+     */
+    public String[] processAll(String[] raws) {
+        String[] canonized = new String[raws.length];
+        for (int i = 0; i < raws.length; i++) {
+            canonized[i] = raws[i] == null ? null : process(raws[i]);
+        }
+        return canonized;
+    }
+
+    /**
+     * Canonizes a range of a char buffer into another buffer, without allocating.
+     * The output needs room for {@code (to - from) * maxExpansion()} chars; it must not overlap with the input.
+     *
+     * @return the end of the output written, exclusive
+     */
+    public int process(char[] input, int from, int to, char[] output, int outputFrom) {
+        Objects.checkFromToIndex(from, to, input.length);
+        return rewrite(input, from, to, output, outputFrom);
+    }
+
+    //the position of the first character that starts a rule or a parenthesis, -1 if there is none
+    private int firstCandidate(String raw) {
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (root(c) != null || (dropParenthesized && c == '(')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Node root(char c) {
+        Node[] page = pages[c >>> 8];
+        return page == null ? null : page[c & 0xff];
+    }
+
+    private int rewrite(char[] in, int from, int to, char[] out, int pos) {
+        int i = from;
+        while (i < to) {
+            char c = in[i];
+            //longest match
+            char[] replacement = null;
+            int matched = 0;
+            Node node = root(c);
+            for (int length = 1; node != null; length++) {
+                if (node.replacement != null) {
+                    replacement = node.replacement;
+                    matched = length;
+                }
+                if (i + length >= to) break;
+                node = node.child(in[i + length]);
+            }
+            if (replacement != null) {
+                System.arraycopy(replacement, 0, out, pos, replacement.length);
+                pos += replacement.length;
+                i += matched;
+            } else if (dropParenthesized && c == '(') {
+                i++;
+                while (i < to && in[i] != ')') i++;
+                i++; //skip the closing parenthesis
+            } else {
+                out[pos++] = c;
+                i++;
+            }
+        }
+        return pos;
+    }
+
+    private static boolean sameContent(String raw, char[] chars, int length) {
+        if (raw.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (raw.charAt(i) != chars[i]) return false;
+        }
+        return true;
+    }
+
+    private static int slot(int hash, int length) {
+        return (hash ^ (hash >>> 16)) & (length - 1);
+    }
+}
@@ -1,100 +1,114 @@
 package de.tuebingen.sfs.cldfjava.io;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * The default canonization profile for forms and segments.
+ * The rules are compiled into an {@link IPACanonizer}. {@link #replacements} is a read-only view of them; further
+ * replacements are registered with {@link #addReplacement(char, String)}, which recompiles the profile for all later
+ * canonizations, including those of imports that use the default profile. Profiles for single imports are built
+ * with {@link IPACanonizer#extend(Map)} on {@link #getCanonizer()} and passed to {@link CLDFImport#setCanonizer(IPACanonizer)}.
+ */
 public class IPAFormCanonization {
-    public static Map<Character,String> replacements;
+    private static final Map<Character, String> defaults = new ConcurrentHashMap<>();
+    public static final Map<Character,String> replacements = Collections.unmodifiableMap(defaults);
+    private static volatile IPACanonizer canonizer;
 
     static {
-        replacements = new HashMap<>();
-        replacements.put('g', "ɡ"); //more correct way of encoding the IPA symbol (stable glyph properties)
+        defaults.put('g', "ɡ"); //more correct way of encoding the IPA symbol (stable glyph properties)
         //various Unicode codepoints that should be canonized as combinations of base glyphs and combining chars
         // acute accent
-        replacements.put('á', "á");
-        replacements.put('é', "é");
-        replacements.put('í', "í");
-        replacements.put('ó', "ó");
-        replacements.put('ú', "ú");
-        replacements.put('ý', "ý");
+        defaults.put('á', "á");
+        defaults.put('é', "é");
+        defaults.put('í', "í");
+        defaults.put('ó', "ó");
+        defaults.put('ú', "ú");
+        defaults.put('ý', "ý");
         // grave accent
-        replacements.put('à', "à");
-        replacements.put('è', "è");
-        replacements.put('ì', "ì");
-        replacements.put('ò', "ò");
-        replacements.put('ù', "ù");
-        replacements.put('ỳ', "ỳ");
+        defaults.put('à', "à");
+        defaults.put('è', "è");
+        defaults.put('ì', "ì");
+        defaults.put('ò', "ò");
+        defaults.put('ù', "ù");
+        defaults.put('ỳ', "ỳ");
         // double acute
-        replacements.put('ő', "ő");
-        replacements.put('ű', "ű");
+        defaults.put('ő', "ő");
+        defaults.put('ű', "ű");
         // double grave
-        replacements.put('ȁ', "ȁ");
-        replacements.put('ȅ', "ȅ");
-        replacements.put('ȉ', "ȉ");
-        replacements.put('ȍ', "ȍ");
-        replacements.put('ȕ', "ȕ");
+        defaults.put('ȁ', "ȁ");
+        defaults.put('ȅ', "ȅ");
+        defaults.put('ȉ', "ȉ");
+        defaults.put('ȍ', "ȍ");
+        defaults.put('ȕ', "ȕ");
         // circumflex
-        replacements.put('â', "â"); 
-        replacements.put('ê', "ê");
-        replacements.put('î', "î");
-        replacements.put('ô', "ô");
-        replacements.put('û', "û");
-        replacements.put('ŷ', "ŷ");
+        defaults.put('â', "â"); 
+        defaults.put('ê', "ê");
+        defaults.put('î', "î");
+        defaults.put('ô', "ô");
+        defaults.put('û', "û");
+        defaults.put('ŷ', "ŷ");
         // caron
-        replacements.put('ǎ', "ǎ");
-        replacements.put('ě', "ě");
-        replacements.put('ǐ', "ǐ");
-        replacements.put('ǒ', "ǒ");
-        replacements.put('ǔ', "ǔ");
+        defaults.put('ǎ', "ǎ");
+        defaults.put('ě', "ě");
+        defaults.put('ǐ', "ǐ");
+        defaults.put('ǒ', "ǒ");
+        defaults.put('ǔ', "ǔ");
         // trema
-        replacements.put('ä', "ä");
-        replacements.put('ë', "ë");
-        replacements.put('ï', "ï");
-        replacements.put('ö', "ö");
-        replacements.put('ü', "ü");
-        replacements.put('ÿ', "ÿ");
+        defaults.put('ä', "ä");
+        defaults.put('ë', "ë");
+        defaults.put('ï', "ï");
+        defaults.put('ö', "ö");
+        defaults.put('ü', "ü");
+        defaults.put('ÿ', "ÿ");
         // tilde
-        replacements.put('ã', "ã");
-        replacements.put('ẽ', "ẽ");
-        replacements.put('ĩ', "ĩ");
-        replacements.put('õ', "õ");
-        replacements.put('ũ', "ũ");
-        replacements.put('ỹ', "ỹ");
+        defaults.put('ã', "ã");
+        defaults.put('ẽ', "ẽ");
+        defaults.put('ĩ', "ĩ");
+        defaults.put('õ', "õ");
+        defaults.put('ũ', "ũ");
+        defaults.put('ỹ', "ỹ");
         // macron
-        replacements.put('ā', "ā");
-        replacements.put('ē', "ē");
-        replacements.put('ī', "ī");
-        replacements.put('ō', "ō");
-        replacements.put('ū', "ū");
-        replacements.put('ȳ', "ȳ");
+        defaults.put('ā', "ā");
+        defaults.put('ē', "ē");
+        defaults.put('ī', "ī");
+        defaults.put('ō', "ō");
+        defaults.put('ū', "ū");
+        defaults.put('ȳ', "ȳ");
         // breve
-        replacements.put('ă', "ǎ");
-        replacements.put('ĕ', "ě");
-        replacements.put('ĭ', "ǐ");
-        replacements.put('ŏ', "ǒ");
-        replacements.put('ŭ', "ǔ");
+        defaults.put('ă', "ǎ");
+        defaults.put('ĕ', "ě");
+        defaults.put('ĭ', "ǐ");
+        defaults.put('ŏ', "ǒ");
+        defaults.put('ŭ', "ǔ");
         // exclamation mark vs. click
-        replacements.put('!', "ǃ");
+        defaults.put('!', "ǃ");
+
+        canonizer = compile();
+    }
+
+    private static IPACanonizer compile() {
+        Map<String, String> rules = new LinkedHashMap<>();
+        defaults.forEach((c, replacement) -> rules.put(String.valueOf(c), replacement));
+        return new IPACanonizer(rules);
+    }
+
+    /**
+     * Adds a replacement to the default profile, or changes an existing one.
+     * Canonizers obtained from {@link #getCanonizer()} before stay as they were.
+     */
+    public static synchronized void addReplacement(char c, String replacement) {
+        defaults.put(c, replacement);
+        canonizer = compile();
+    }
+
+    public static IPACanonizer getCanonizer() {
+        return canonizer;
     }
 
     public static String process(String rawForm) {
-        boolean inParentheses = false;
-        StringBuilder canonized = new StringBuilder();
-        for (int i = 0; i < rawForm.length(); i++) {
-            char c = rawForm.charAt(i);
-            if (inParentheses) {
-                if (c == ')') inParentheses = false;
-                continue;
-            }
-            String replacement = replacements.get(c);
-            if (replacement != null) {
-                canonized.append(replacement);
-            }
-            else {
-                if (c == '(') inParentheses = true;
-                else canonized.append(c);
-            }
-        }
-        return canonized.toString();
+        return canonizer.process(rawForm);
     }
 }
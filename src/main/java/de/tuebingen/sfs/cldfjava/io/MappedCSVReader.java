@@ -0,0 +1,222 @@
+package de.tuebingen.sfs.cldfjava.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Parses a UTF-8 encoded CSV file in parallel by memory-mapping it and splitting it into chunks at record boundaries.
+ * Delimiters are found by scanning the mapped bytes, and fields are only decoded when a visitor asks for them.
+ * As with the line-based readers, every line is a record, so malformed quoting is recovered from within a row
+ * (see {@link CSVTokenizer}) and never spills over into the following rows.
+ * The file is mapped as a whole, so it must be smaller than 2 GB.
+ */
+public class MappedCSVReader implements Closeable {
+    public static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int dataStart; //offset of the first record after the header
+    private final List<String> header;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Called for every record of a chunk, on the thread parsing the chunk.
+     *
+     * @param <A> the type of the per-chunk result
+     */
+    public interface RecordVisitor<A> {
+        /**
+         * @param record        the tokenized record, valid only during the call
+         * @param recordInChunk the index of the record within its chunk, see {@link Chunk#getFirstRecord()}
+         * @param result        the result object of the chunk
+         */
+        void visit(CSVTokenizer record, int recordInChunk, A result);
+    }
+
+    /**
+     * The result of parsing one chunk of the file.
+     */
+    public static class Chunk<A> {
+        private final A result;
+        private final int recordCount;
+        private int firstRecord;
+
+        Chunk(A result, int recordCount) {
+            this.result = result;
+            this.recordCount = recordCount;
+        }
+
+        public A getResult() {
+            return result;
+        }
+
+        /**
+         * @return the number of records in this chunk
+         */
+        public int getRecordCount() {
+            return recordCount;
+        }
+
+        /**
+         * @return the index of the first record of this chunk in the file, counting from 0 after the header
+         */
+        public int getFirstRecord() {
+            return firstRecord;
+        }
+    }
+
+    public MappedCSVReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        long fileSize = channel.size();
+        if (fileSize > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("file too large to be mapped: " + path);
+        }
+        size = (int) fileSize;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+        int start = 0;
+        //skip a UTF-8 byte order mark
+        if (size >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB && (buffer.get(2) & 0xFF) == 0xBF) {
+            start = 3;
+        }
+        int headerEnd = findRecordEnd(start, size);
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        int fieldCount = tokenizer.tokenize(buffer, start, trimLineEnd(start, headerEnd));
+        header = new ArrayList<>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            header.add(tokenizer.field(i));
+        }
+        dataStart = Math.min(headerEnd + 1, size);
+    }
+
+    /**
+     * @return the column names from the first record of the file
+     */
+    public List<String> getHeader() {
+        return header;
+    }
+
+    /**
+     * @param chunkSize the approximate number of bytes parsed by one task
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Parses all records after the header in parallel. Each chunk is parsed by one task with its own tokenizer
+     * and result object; the chunks are returned in file order, so results can be merged deterministically.
+     *
+     * @param pool         the pool to run the chunk tasks on
+     * @param chunkResults creates the result object of a chunk
+     * @param visitor      called for each record of a chunk, in file order within the chunk
+     * @return the parsed chunks in file order
+     */
+    public <A> List<Chunk<A>> parse(ForkJoinPool pool, Supplier<A> chunkResults, RecordVisitor<A> visitor) {
+        int[] boundaries = findChunkBoundaries();
+        List<Callable<Chunk<A>>> tasks = new ArrayList<>(boundaries.length - 1);
+        for (int c = 0; c < boundaries.length - 1; c++) {
+            int chunkStart = boundaries[c];
+            int chunkEnd = boundaries[c + 1];
+            tasks.add(() -> parseChunk(chunkStart, chunkEnd, chunkResults.get(), visitor));
+        }
+        List<Chunk<A>> chunks = invokeAll(pool, tasks);
+        int firstRecord = 0;
+        for (Chunk<A> chunk : chunks) {
+            chunk.firstRecord = firstRecord;
+            firstRecord += chunk.recordCount;
+        }
+        return chunks;
+    }
+
+    private <A> Chunk<A> parseChunk(int start, int end, A result, RecordVisitor<A> visitor) {
+        CSVTokenizer tokenizer = new CSVTokenizer();
+        int recordInChunk = 0;
+        int pos = start;
+        while (pos < end) {
+            int recordEnd = findRecordEnd(pos, end);
+            tokenizer.tokenize(buffer, pos, trimLineEnd(pos, recordEnd));
+            visitor.visit(tokenizer, recordInChunk++, result);
+            pos = recordEnd + 1;
+        }
+        return new Chunk<>(result, recordInChunk);
+    }
+
+    /**
+     * Splits the data part of the file into chunks of roughly equal size which start at line boundaries.
+     */
+    private int[] findChunkBoundaries() {
+        int dataSize = size - dataStart;
+        int chunkCount = Math.max(1, (int) ((dataSize + (long) chunkSize - 1) / chunkSize));
+        int[] boundaries = new int[chunkCount + 1];
+        boundaries[0] = dataStart;
+        for (int c = 1; c < chunkCount; c++) {
+            int nominal = dataStart + (int) Math.min((long) c * chunkSize, dataSize);
+            if (boundaries[c - 1] > nominal) {
+                //the previous chunk already extends past this one, so this chunk is empty
+                boundaries[c] = boundaries[c - 1];
+            } else {
+                boundaries[c] = Math.min(findRecordEnd(nominal, size) + 1, size);
+            }
+        }
+        boundaries[chunkCount] = size;
+        return boundaries;
+    }
+
+    /**
+     * @return the offset of the newline ending the record which contains pos, or the end offset
+     */
+    private int findRecordEnd(int pos, int end) {
+        for (int i = pos; i < end; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private int trimLineEnd(int start, int end) {
+        return end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) {
+        List<ForkJoinTask<T>> forkJoinTasks = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            forkJoinTasks.add(ForkJoinTask.adapt(task));
+        }
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(forkJoinTasks);
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> {
+                ForkJoinTask.invokeAll(forkJoinTasks);
+            }));
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<T> task : forkJoinTasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("WARNING: unexpected IO exception when closing MappedCSVReader!");
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package de.tuebingen.sfs.cldfjava.io;
+
+import de.tuebingen.sfs.cldfjava.data.PropertyMap;
+import de.tuebingen.sfs.cldfjava.util.StringDictionaries;
+import de.tuebingen.sfs.cldfjava.util.StringDictionary;
+
+import java.util.*;
+
+/**
+ * A {@link TableSchema} compiled against the header of a table file. Column indices, setters and the shared
+ * property key set are resolved once per table, so that mapping a row does no lookups and creates no
+ * per-row maps apart from the property values array. Values are deduplicated through the dictionary of their column.
+ * Columns are matched case-insensitively; property keys keep the spelling of the header.
+ *
+ * @param <T> the type of the row objects
+ */
+class RowMapper<T> {
+    private final TableSchema<T> schema;
+    private final int columnCount;
+    private final Map<String, Integer> bindingColumns = new HashMap<>();
+    //compiled field setters: the column of each setter, or -1 if a required column is missing
+    private final int[] setterColumns;
+    private final TableSchema.DictionarySetter<T>[] setters;
+    private final StringDictionary[] setterDictionaries;
+    private final boolean missingRequired;
+    //columns that are not bound to fields and go into the property map
+    private final int[] propertyColumns;
+    private final PropertyMap.Keys propertyKeys;
+    private final StringDictionary[] propertyDictionaries;
+
+    /**
+     * @param schema          the table schema
+     * @param header          the column names from the header of the file
+     * @param propertyColumns a map of properties and their columns, see {@link CLDFImport#createColumnPropertyMap}
+     * @param dictionaries    the column dictionaries for repeated values, or null to store every value as read
+     */
+    RowMapper(TableSchema<T> schema, List<String> header, Map<String, String> propertyColumns, StringDictionaries dictionaries) {
+        this.schema = schema;
+        this.columnCount = header.size();
+        Map<String, Integer> columnIndex = new HashMap<>();
+        for (int i = header.size() - 1; i >= 0; i--) {
+            columnIndex.put(header.get(i).toLowerCase(), i);
+        }
+
+        boolean[] bound = new boolean[header.size()];
+        boolean missingRequired = false;
+        List<Integer> setterColumns = new ArrayList<>();
+        List<TableSchema.DictionarySetter<T>> setters = new ArrayList<>();
+        List<StringDictionary> setterDictionaries = new ArrayList<>();
+        for (TableSchema.Binding<T> binding : schema.bindings) {
+            int column = resolve(binding, columnIndex, propertyColumns);
+            if (column == -1) {
+                //rows cannot be mapped without required columns, so all of them will be reported as malformed
+                missingRequired |= binding.required;
+                continue;
+            }
+            bound[column] = true;
+            bindingColumns.put(binding.name, column);
+            if (binding.setter != null) {
+                setterColumns.add(column);
+                setters.add(binding.setter);
+                setterDictionaries.add(dictionary(dictionaries, schema.table, binding.name));
+            }
+        }
+        this.missingRequired = missingRequired;
+        this.setterColumns = setterColumns.stream().mapToInt(Integer::intValue).toArray();
+        this.setters = toSetterArray(setters);
+        this.setterDictionaries = setterDictionaries.toArray(new StringDictionary[0]);
+
+        //in order to fill the "properties" map, collect the columns that don't have a separate field
+        //if a column name occurs twice, the later column wins
+        Map<String, Integer> remainedColumns = new LinkedHashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            if (!bound[i]) {
+                remainedColumns.remove(header.get(i));
+                remainedColumns.put(header.get(i), i);
+            }
+        }
+        this.propertyColumns = remainedColumns.values().stream().mapToInt(Integer::intValue).toArray();
+        this.propertyKeys = new PropertyMap.Keys(new ArrayList<>(remainedColumns.keySet()));
+        this.propertyDictionaries = new StringDictionary[propertyKeys.size()];
+        for (int j = 0; j < propertyDictionaries.length; j++) {
+            propertyDictionaries[j] = dictionary(dictionaries, schema.table, propertyKeys.get(j));
+        }
+    }
+
+    private static StringDictionary dictionary(StringDictionaries dictionaries, String table, String column) {
+        return dictionaries == null ? StringDictionary.NONE : dictionaries.get(table, column);
+    }
+
+    //generic arrays can only be created raw
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> TableSchema.DictionarySetter<T>[] toSetterArray(List<TableSchema.DictionarySetter<T>> setters) {
+        return setters.toArray(new TableSchema.DictionarySetter[0]);
+    }
+
+    private static int resolve(TableSchema.Binding<?> binding, Map<String, Integer> columnIndex, Map<String, String> propertyColumns) {
+        for (String candidate : binding.candidates) {
+            String columnName = propertyColumns.get(candidate);
+            Integer column = columnName == null ? null : columnIndex.get(columnName.toLowerCase());
+            if (column == null) {
+                column = columnIndex.get(candidate.toLowerCase());
+            }
+            if (column != null) {
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param name the first candidate of a binding, e.g. "id"
+     * @return the column bound to it, or -1
+     */
+    int column(String name) {
+        return bindingColumns.getOrDefault(name, -1);
+    }
+
+    /**
+     * @param tokens the tokenized row
+     * @return the row object, or null if the row is malformed
+     */
+    T map(CSVTokenizer tokens) {
+        //if the amount of column names and the amount of retrieved column values are not the same, there must be some error in row formatting
+        if (tokens.fieldCount() != columnCount || missingRequired) {
+            return null;
+        }
+        T entry = schema.factory.get();
+        try {
+            for (int i = 0; i < setters.length; i++) {
+                setters[i].set(entry, tokens.field(setterColumns[i]), setterDictionaries[i]);
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (schema.propertySetter != null) {
+            String[] values = new String[propertyColumns.length];
+            for (int j = 0; j < propertyColumns.length; j++) {
+                values[j] = propertyDictionaries[j].intern(tokens.field(propertyColumns[j]));
+            }
+            schema.propertySetter.accept(entry, new PropertyMap(propertyKeys, values));
+        }
+        return entry;
+    }
+}
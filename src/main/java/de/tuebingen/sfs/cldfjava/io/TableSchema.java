@@ -0,0 +1,168 @@
+package de.tuebingen.sfs.cldfjava.io;
+
+import de.tuebingen.sfs.cldfjava.data.CLDFCognateJudgement;
+import de.tuebingen.sfs.cldfjava.data.CLDFCognateSet;
+import de.tuebingen.sfs.cldfjava.data.CLDFForm;
+import de.tuebingen.sfs.cldfjava.data.CLDFLanguage;
+import de.tuebingen.sfs.cldfjava.data.CLDFParameter;
+import de.tuebingen.sfs.cldfjava.util.StringDictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Describes how the columns of a CLDF table are bound to the fields of its row objects.
+ * A schema is compiled against the header of a concrete file by {@link RowMapper}.
+ *
+ * @param <T> the type of the row objects
+ */
+class TableSchema<T> {
+    /**
+     * Sets a field of a row object from a column value.
+     */
+    interface FieldSetter<T> {
+        void set(T entry, String value);
+    }
+
+    /**
+     * Sets a field of a row object from a column value, using the dictionary of the column to share repeated
+     * values or objects derived from them.
+     */
+    interface DictionarySetter<T> {
+        void set(T entry, String value, StringDictionary dictionary);
+    }
+
+    /**
+     * A field binding. The candidates are tried in order; each candidate is looked up as a CLDF property
+     * in the metadata first, then as a column name in the header.
+     */
+    static class Binding<T> {
+        final String name;
+        final String[] candidates;
+        final DictionarySetter<T> setter; //null for columns that are only read as keys
+        final boolean required;
+
+        Binding(DictionarySetter<T> setter, boolean required, String... candidates) {
+            this.name = candidates[0];
+            this.candidates = candidates;
+            this.setter = setter;
+            this.required = required;
+        }
+    }
+
+    final String table; //the CLDF component, used to name the column dictionaries
+    final Supplier<T> factory;
+    final List<Binding<T>> bindings = new ArrayList<>();
+    BiConsumer<T, Map<String, String>> propertySetter; //receives the values of all unbound columns, if not null
+
+    TableSchema(String table, Supplier<T> factory) {
+        this.table = table;
+        this.factory = factory;
+    }
+
+    /**
+     * Binds a required column whose values are interned before they are set.
+     */
+    TableSchema<T> required(String property, FieldSetter<T> setter) {
+        return requiredWith(property, interning(setter));
+    }
+
+    TableSchema<T> requiredWith(String property, DictionarySetter<T> setter) {
+        bindings.add(new Binding<>(setter, true, property));
+        return this;
+    }
+
+    /**
+     * Binds an optional column whose values are interned before they are set.
+     */
+    TableSchema<T> optional(FieldSetter<T> setter, String... candidates) {
+        return optionalWith(interning(setter), candidates);
+    }
+
+    TableSchema<T> optionalWith(DictionarySetter<T> setter, String... candidates) {
+        bindings.add(new Binding<>(setter, false, candidates));
+        return this;
+    }
+
+    private static <T> DictionarySetter<T> interning(FieldSetter<T> setter) {
+        return setter == null ? null : (entry, value, dictionary) -> setter.set(entry, dictionary.intern(value));
+    }
+
+    TableSchema<T> properties(BiConsumer<T, Map<String, String>> propertySetter) {
+        this.propertySetter = propertySetter;
+        return this;
+    }
+
+    /**
+     * @param canonizer the canonization profile for the form and segments columns
+     */
+    static TableSchema<CLDFForm> forms(IPACanonizer canonizer) {
+        return new TableSchema<>("FormTable", CLDFForm::new)
+                .required("id", null) //replaced by dense integer IDs, see CLDFImport#readFormTable
+                .required("languageReference", CLDFForm::setLangID)
+                //each form gets its own list, as before, but the IDs in it are shared
+                .requiredWith("parameterReference", (form, value, dictionary) ->
+                        form.setParamIDs(Arrays.asList(internAll(value.split(";"), dictionary))))
+                .optionalWith((form, value, dictionary) -> form.setForm(dictionary.intern(canonizer.process(value))), "form")
+                //value doesn't always have a specified property name, and is sometimes cold differently
+                .optional(CLDFForm::setOrigValue, "Value", "value")
+                .optional(CLDFForm::setComment, "comment")
+                .optionalWith((form, value, dictionary) -> form.setSegments(internAll(canonizer.process(value).split(" "), dictionary)), "segments")
+                .optional(CLDFForm::setOrthography, "Orthography", "Local_Orthography")
+                .properties(CLDFForm::setProperties);
+    }
+
+    static final TableSchema<CLDFLanguage> LANGUAGES = new TableSchema<>("LanguageTable", CLDFLanguage::new)
+            .required("id", CLDFLanguage::setLangID)
+            .optional(CLDFLanguage::setIso, "iso639P3code")
+            .optional(CLDFLanguage::setGlottocode, "glottocode")
+            .optional(CLDFLanguage::setMacroarea, "macroarea")
+            .optional(CLDFLanguage::setName, "name")
+            .optional(CLDFLanguage::setFamily, "Family")
+            //an empty value is read as NaN
+            .optionalWith((language, value, dictionary) -> language.setLatitude(parseCoordinate(value)), "latitude")
+            .optionalWith((language, value, dictionary) -> language.setLongitude(parseCoordinate(value)), "longitude")
+            .properties(CLDFLanguage::setProperties);
+
+    static final TableSchema<CLDFParameter> PARAMETERS = new TableSchema<>("ParameterTable", CLDFParameter::new)
+            .required("id", CLDFParameter::setParamID)
+            .optional(CLDFParameter::setName, "name")
+            .optional(CLDFParameter::setConcepticonID, "concepticonReference")
+            .optional(CLDFParameter::setConcepticon, "concepticon_proposed", "concepticon_gloss", "concepticon")
+            .optional(CLDFParameter::setSemanticField, "semantic_field")
+            .properties(CLDFParameter::setProperties);
+
+    static final TableSchema<CLDFCognateSet> COGNATE_SETS = new TableSchema<>("CognatesetTable", CLDFCognateSet::new)
+            .required("id", CLDFCognateSet::setCogsetID)
+            .optional(CLDFCognateSet::setDescription, "description")
+            .optionalWith((cogset, value, dictionary) -> cogset.setSources(Arrays.asList(internAll(value.split(";"), dictionary))), "source");
+
+    /**
+     * The cognate table refers to forms by their original IDs, which are translated to dense form IDs while reading.
+     * Judgements for unknown forms get the form reference -1.
+     *
+     * @param formsOldToNew the mapping from original to dense form IDs
+     */
+    static TableSchema<CLDFCognateJudgement> cognates(Map<String, Integer> formsOldToNew) {
+        return new TableSchema<>("CognateTable", CLDFCognateJudgement::new)
+                .required("id", null)
+                .requiredWith("formReference", (cognate, value, dictionary) -> cognate.setFormReference(formsOldToNew.getOrDefault(value, -1)))
+                .required("cognatesetReference", CLDFCognateJudgement::setCognatesetReference);
+    }
+
+    //segment inventories and reference lists are small, so the values of all rows share few instances
+    private static String[] internAll(String[] values, StringDictionary dictionary) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = dictionary.intern(values[i]);
+        }
+        return values;
+    }
+
+    private static float parseCoordinate(String value) {
+        return value.isEmpty() ? Float.NaN : Float.parseFloat(value);
+    }
+}
@@ -0,0 +1,520 @@
+package de.tuebingen.sfs.cldfjava.util;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable compressed set of non-negative ints, in the style of a roaring bitmap.
+ * Values are partitioned by their upper 16 bits into chunks; a chunk with at most 4096 values is stored as a sorted
+ * char array, a fuller chunk as a 65536-bit bitmap. Set operations work chunk by chunk and share untouched chunks
+ * between their operands and the result.
+ */
+public final class CompressedBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int WORDS = 1024;
+
+    public static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Container[0]);
+
+    private final char[] keys; //upper 16 bits of the values in each chunk, ascending
+    private final Container[] containers;
+    private final int cardinality;
+
+    private CompressedBitmap(char[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+        int cardinality = 0;
+        for (Container container : containers) {
+            cardinality += container.cardinality();
+        }
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * @param values ascending, distinct, non-negative values
+     */
+    public static CompressedBitmap of(int... values) {
+        //one container per run of values with the same upper 16 bits, without going through a Builder
+        char[] keys = new char[4];
+        Container[] containers = new Container[4];
+        int chunks = 0;
+        int last = -1;
+        for (int from = 0; from < values.length; ) {
+            int key = values[from] >>> 16;
+            int to = from;
+            while (to < values.length && values[to] >>> 16 == key) {
+                if (values[to] <= last) {
+                    throw new IllegalArgumentException("values have to be ascending and non-negative, got " + values[to] + " after " + last);
+                }
+                last = values[to++];
+            }
+            if (chunks == keys.length) {
+                keys = Arrays.copyOf(keys, chunks * 2);
+                containers = Arrays.copyOf(containers, chunks * 2);
+            }
+            keys[chunks] = (char) key;
+            containers[chunks++] = container(values, from, to);
+            from = to;
+        }
+        return new CompressedBitmap(Arrays.copyOf(keys, chunks), Arrays.copyOf(containers, chunks));
+    }
+
+    /**
+     * @return the bitmap of all values from (inclusive) to (exclusive)
+     */
+    public static CompressedBitmap range(int from, int to) {
+        Builder builder = new Builder();
+        for (int value = from; value < to; value++) {
+            builder.add(value);
+        }
+        return builder.build();
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int chunk = Arrays.binarySearch(keys, (char) (value >>> 16));
+        return chunk >= 0 && containers[chunk].contains((char) value);
+    }
+
+    public CompressedBitmap and(CompressedBitmap other) {
+        char[] resultKeys = new char[Math.min(keys.length, other.keys.length)];
+        Container[] result = new Container[resultKeys.length];
+        int n = 0;
+        for (int i = 0, j = 0; i < keys.length && j < other.keys.length; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = and(containers[i], other.containers[j]);
+                if (container != null) {
+                    resultKeys[n] = keys[i];
+                    result[n++] = container;
+                }
+                i++;
+                j++;
+            }
+        }
+        return new CompressedBitmap(Arrays.copyOf(resultKeys, n), Arrays.copyOf(result, n));
+    }
+
+    public CompressedBitmap or(CompressedBitmap other) {
+        char[] resultKeys = new char[keys.length + other.keys.length];
+        Container[] result = new Container[resultKeys.length];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || i < keys.length && keys[i] < other.keys[j]) {
+                resultKeys[n] = keys[i];
+                result[n++] = containers[i++];
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                resultKeys[n] = other.keys[j];
+                result[n++] = other.containers[j++];
+            } else {
+                resultKeys[n] = keys[i];
+                result[n++] = or(containers[i++], other.containers[j++]);
+            }
+        }
+        return new CompressedBitmap(Arrays.copyOf(resultKeys, n), Arrays.copyOf(result, n));
+    }
+
+    /**
+     * @return the values of this bitmap that are not in the other one
+     */
+    public CompressedBitmap andNot(CompressedBitmap other) {
+        char[] resultKeys = new char[keys.length];
+        Container[] result = new Container[keys.length];
+        int n = 0;
+        for (int i = 0, j = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container container = j < other.keys.length && other.keys[j] == keys[i] ? andNot(containers[i], other.containers[j]) : containers[i];
+            if (container != null) {
+                resultKeys[n] = keys[i];
+                result[n++] = container;
+            }
+        }
+        return new CompressedBitmap(Arrays.copyOf(resultKeys, n), Arrays.copyOf(result, n));
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int chunk = 0; chunk < keys.length; chunk++) {
+            containers[chunk].forEach(keys[chunk] << 16, action);
+        }
+    }
+
+    /**
+     * @return the values in ascending order
+     */
+    public int[] toArray() {
+        int[] values = new int[cardinality];
+        int n = 0;
+        for (int chunk = 0; chunk < keys.length; chunk++) {
+            n = containers[chunk].copyTo(keys[chunk] << 16, values, n);
+        }
+        return values;
+    }
+
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int chunk = 0;
+            private int[] values = new int[0];
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (next == values.length && chunk < keys.length) {
+                    values = new int[containers[chunk].cardinality()];
+                    containers[chunk].copyTo(keys[chunk] << 16, values, 0);
+                    chunk++;
+                    next = 0;
+                }
+                return next < values.length;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return values[next++];
+            }
+        };
+    }
+
+    public IntStream stream() {
+        int characteristics = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+        return StreamSupport.intStream(Spliterators.spliterator(iterator(), cardinality, characteristics), false);
+    }
+
+    /**
+     * @return the approximate size of the bitmap in bytes
+     */
+    public long estimateSize() {
+        long size = 16 + 2L * keys.length + 4L * containers.length;
+        for (Container container : containers) {
+            size += container instanceof ArrayContainer ? 16 + 2L * container.cardinality() : 16 + 8L * WORDS;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CompressedBitmap)) {
+            return false;
+        }
+        CompressedBitmap other = (CompressedBitmap) o;
+        return cardinality == other.cardinality && Arrays.equals(toArray(), other.toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * Builds a bitmap from values added in ascending order.
+     */
+    public static class Builder {
+        private char[] keys = new char[4];
+        private Container[] containers = new Container[4];
+        private int chunks = 0;
+        private char[] lows = new char[16]; //grown on demand up to a full chunk
+        private int size = 0;
+        private int currentKey = -1;
+        private int last = -1;
+
+        /**
+         * @throws IllegalArgumentException if the value is negative or not larger than the previous one
+         */
+        public Builder add(int value) {
+            if (value <= last) {
+                throw new IllegalArgumentException("values have to be ascending and non-negative, got " + value + " after " + last);
+            }
+            last = value;
+            int key = value >>> 16;
+            if (key != currentKey) {
+                flush();
+                currentKey = key;
+            }
+            if (size == lows.length) {
+                lows = Arrays.copyOf(lows, Math.min(size * 2, 65536));
+            }
+            lows[size++] = (char) value;
+            return this;
+        }
+
+        private void flush() {
+            if (size > 0) {
+                if (chunks == keys.length) {
+                    keys = Arrays.copyOf(keys, chunks * 2);
+                    containers = Arrays.copyOf(containers, chunks * 2);
+                }
+                keys[chunks] = (char) currentKey;
+                containers[chunks++] = container(lows, size);
+                size = 0;
+            }
+        }
+
+        public CompressedBitmap build() {
+            flush();
+            return new CompressedBitmap(Arrays.copyOf(keys, chunks), Arrays.copyOf(containers, chunks));
+        }
+    }
+
+    //chunks
+
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract int copyTo(int high, int[] out, int position);
+    }
+
+    private static final class ArrayContainer extends Container {
+        final char[] values;
+
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, low) >= 0;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (char value : values) {
+                action.accept(high | value);
+            }
+        }
+
+        @Override
+        int copyTo(int high, int[] out, int position) {
+            for (char value : values) {
+                out[position++] = high | value;
+            }
+            return position;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+        final int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int w = 0; w < WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    action.accept(high | w << 6 | Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+
+        @Override
+        int copyTo(int high, int[] out, int position) {
+            for (int w = 0; w < WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    out[position++] = high | w << 6 | Long.numberOfTrailingZeros(word);
+                }
+            }
+            return position;
+        }
+    }
+
+    //the smallest representation of the values, or null if there are none
+    private static Container container(char[] values, int size) {
+        if (size == 0) {
+            return null;
+        }
+        if (size <= ARRAY_LIMIT) {
+            return new ArrayContainer(Arrays.copyOf(values, size));
+        }
+        long[] words = new long[WORDS];
+        for (int i = 0; i < size; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        return new BitmapContainer(words, size);
+    }
+
+    //the chunk of values[from..to), which share their upper 16 bits
+    private static Container container(int[] values, int from, int to) {
+        int size = to - from;
+        if (size <= ARRAY_LIMIT) {
+            char[] lows = new char[size];
+            for (int i = 0; i < size; i++) {
+                lows[i] = (char) values[from + i];
+            }
+            return new ArrayContainer(lows);
+        }
+        long[] words = new long[WORDS];
+        for (int i = from; i < to; i++) {
+            words[(char) values[i] >>> 6] |= 1L << values[i];
+        }
+        return new BitmapContainer(words, size);
+    }
+
+    private static Container container(long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        if (cardinality > ARRAY_LIMIT) {
+            return new BitmapContainer(words, cardinality);
+        }
+        char[] values = new char[cardinality];
+        int n = 0;
+        for (int w = 0; w < WORDS; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                values[n++] = (char) (w << 6 | Long.numberOfTrailingZeros(word));
+            }
+        }
+        return container(values, n);
+    }
+
+    private static Container and(Container a, Container b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+            char[] x = ((ArrayContainer) a).values;
+            char[] y = ((ArrayContainer) b).values;
+            char[] result = new char[Math.min(x.length, y.length)];
+            int n = 0;
+            for (int i = 0, j = 0; i < x.length && j < y.length; ) {
+                if (x[i] < y[j]) i++;
+                else if (x[i] > y[j]) j++;
+                else {
+                    result[n++] = x[i];
+                    i++;
+                    j++;
+                }
+            }
+            return container(result, n);
+        }
+        if (a instanceof ArrayContainer || b instanceof ArrayContainer) {
+            ArrayContainer array = (ArrayContainer) (a instanceof ArrayContainer ? a : b);
+            Container bitmap = a instanceof ArrayContainer ? b : a;
+            char[] result = new char[array.values.length];
+            int n = 0;
+            for (char value : array.values) {
+                if (bitmap.contains(value)) result[n++] = value;
+            }
+            return container(result, n);
+        }
+        long[] x = ((BitmapContainer) a).words;
+        long[] y = ((BitmapContainer) b).words;
+        long[] result = new long[WORDS];
+        for (int w = 0; w < WORDS; w++) {
+            result[w] = x[w] & y[w];
+        }
+        return container(result);
+    }
+
+    private static Container or(Container a, Container b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer) {
+            char[] x = ((ArrayContainer) a).values;
+            char[] y = ((ArrayContainer) b).values;
+            char[] result = new char[x.length + y.length];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < x.length || j < y.length) {
+                if (j == y.length || i < x.length && x[i] < y[j]) result[n++] = x[i++];
+                else if (i == x.length || x[i] > y[j]) result[n++] = y[j++];
+                else {
+                    result[n++] = x[i++];
+                    j++;
+                }
+            }
+            return container(result, n);
+        }
+        long[] result = words(a);
+        if (b instanceof ArrayContainer) {
+            for (char value : ((ArrayContainer) b).values) {
+                result[value >>> 6] |= 1L << value;
+            }
+        } else {
+            long[] y = ((BitmapContainer) b).words;
+            for (int w = 0; w < WORDS; w++) {
+                result[w] |= y[w];
+            }
+        }
+        return container(result);
+    }
+
+    private static Container andNot(Container a, Container b) {
+        if (a instanceof ArrayContainer) {
+            char[] x = ((ArrayContainer) a).values;
+            char[] result = new char[x.length];
+            int n = 0;
+            for (char value : x) {
+                if (!b.contains(value)) result[n++] = value;
+            }
+            return n == x.length ? a : container(result, n);
+        }
+        long[] result = words(a);
+        if (b instanceof ArrayContainer) {
+            for (char value : ((ArrayContainer) b).values) {
+                result[value >>> 6] &= ~(1L << value);
+            }
+        } else {
+            long[] y = ((BitmapContainer) b).words;
+            for (int w = 0; w < WORDS; w++) {
+                result[w] &= ~y[w];
+            }
+        }
+        return container(result);
+    }
+
+    //a modifiable copy of the bits of a chunk
+    private static long[] words(Container container) {
+        if (container instanceof BitmapContainer) {
+            return ((BitmapContainer) container).words.clone();
+        }
+        long[] words = new long[WORDS];
+        for (char value : ((ArrayContainer) container).values) {
+            words[value >>> 6] |= 1L << value;
+        }
+        return words;
+    }
+}
@@ -0,0 +1,247 @@
+package de.tuebingen.sfs.cldfjava.util;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * A map from small non-negative integer keys to values, stored in an array indexed by the key.
+ * Meant for the dense IDs handed out by CLDFImport, where it avoids the boxed key and the node of each hash map entry.
+ * Iteration is in ascending key order. Null values are not permitted, negative keys are never contained.
+ *
+ * @param <V> the type of the values
+ */
+public class DenseIntMap<V> extends AbstractMap<Integer, V> {
+    private Object[] values;
+    private int size = 0;
+    private int upperBound = 0; //one more than the largest key
+    private int modCount = 0;
+
+    public DenseIntMap() {
+        this(16);
+    }
+
+    public DenseIntMap(int capacity) {
+        this.values = new Object[Math.max(capacity, 1)];
+    }
+
+    public DenseIntMap(Map<Integer, ? extends V> map) {
+        this(map.size());
+        putAll(map);
+    }
+
+    /**
+     * @return the value for a key, or null; without boxing the key
+     */
+    @SuppressWarnings("unchecked")
+    public V getAt(int key) {
+        return key >= 0 && key < upperBound ? (V) values[key] : null;
+    }
+
+    /**
+     * Puts a value without boxing the key.
+     *
+     * @return the previous value, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V putAt(int key, V value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("negative key " + key);
+        }
+        Objects.requireNonNull(value);
+        if (key >= values.length) {
+            values = Arrays.copyOf(values, Math.max(key + 1, values.length * 2));
+        }
+        V old = (V) values[key];
+        values[key] = value;
+        if (old == null) {
+            size++;
+            modCount++;
+            upperBound = Math.max(upperBound, key + 1);
+        }
+        return old;
+    }
+
+    /**
+     * @return one more than the largest key, i.e. the length of the array returned by {@link #toArray(IntFunction)}
+     */
+    public int upperBound() {
+        return upperBound;
+    }
+
+    /**
+     * @return whether the keys are exactly 0..size()-1
+     */
+    public boolean isDense() {
+        return size == upperBound;
+    }
+
+    /**
+     * @param generator creates an array of the value type with the given length
+     * @return a copy of the values, indexed by key; null where there is no value
+     */
+    public V[] toArray(IntFunction<V[]> generator) {
+        V[] array = generator.apply(upperBound);
+        System.arraycopy(values, 0, array, 0, upperBound);
+        return array;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer && getAt((Integer) key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer ? getAt((Integer) key) : null;
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return putAt(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        if (!(key instanceof Integer)) {
+            return null;
+        }
+        int k = (Integer) key;
+        if (k < 0 || k >= upperBound || values[k] == null) {
+            return null;
+        }
+        V old = (V) values[k];
+        values[k] = null;
+        size--;
+        modCount++;
+        while (upperBound > 0 && values[upperBound - 1] == null) {
+            upperBound--;
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, upperBound, null);
+        size = 0;
+        upperBound = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new KeyIterator<>() {
+                    @Override
+                    Entry<Integer, V> element(int key) {
+                        return new SimpleEntry<>(key, getAt(key)) {
+                            @Override
+                            public V setValue(V value) {
+                                super.setValue(value);
+                                return putAt(key, value);
+                            }
+                        };
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Integer> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new KeyIterator<>() {
+                    @Override
+                    Integer element(int key) {
+                        return key;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new KeyIterator<>() {
+                    @Override
+                    V element(int key) {
+                        return getAt(key);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private abstract class KeyIterator<E> implements Iterator<E> {
+        private int next = advance(0);
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        private int advance(int key) {
+            while (key < upperBound && values[key] == null) key++;
+            return key;
+        }
+
+        abstract E element(int key);
+
+        @Override
+        public boolean hasNext() {
+            return next < upperBound;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= upperBound) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = advance(next + 1);
+            return element(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last == -1) {
+                throw new IllegalStateException();
+            }
+            DenseIntMap.this.remove(last);
+            expectedModCount = modCount;
+            last = -1;
+        }
+    }
+}
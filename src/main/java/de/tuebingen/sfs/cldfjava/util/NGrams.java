@@ -0,0 +1,180 @@
+package de.tuebingen.sfs.cldfjava.util;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * N-grams over symbol sequences, packed into longs. Symbols are non-negative ints, usually segment codes of a
+ * {@link SegmentAlphabet} or Unicode code points, so that diacritics stay with their base characters as far as the
+ * input allows. Each symbol takes a fixed number of bits; it is stored as symbol + 1, with 0 for the boundary
+ * symbol that pads the ends of a sequence. n-grams of the same n and bit width have distinct packed values,
+ * and packed values are never negative, so -1 marks an n-gram with a symbol that does not fit into the bit width.
+ * <p>
+ * Unlike {@link StringUtils#getBigramList(String)} and its relatives, which split by UTF-16 char, nothing here
+ * creates strings.
+ */
+public class NGrams {
+    /**
+     * The symbol returned by {@link #unpack(long, int, int)} for the padding at the ends of a sequence.
+     */
+    public static final int BOUNDARY = -1;
+
+    /**
+     * The bit width that fits all code points.
+     */
+    public static final int CODE_POINT_BITS = 21;
+
+    /**
+     * @return the bit width for the symbols 0..alphabetSize-1 and the boundary
+     */
+    public static int bitsPerSymbol(int alphabetSize) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(alphabetSize));
+    }
+
+    /**
+     * @return the largest n whose n-grams fit into a long at the bit width
+     */
+    public static int maxN(int bits) {
+        return 63 / bits;
+    }
+
+    /**
+     * @return the number of n-grams of a sequence, see {@link #extract(int[], int, int, boolean, int, long[], int)}
+     */
+    public static int count(int length, int n, boolean padded) {
+        if (length == 0) {
+            return 0;
+        }
+        return padded ? length + n - 1 : Math.max(0, length - n + 1);
+    }
+
+    /**
+     * Packs the n-grams of a symbol sequence into an array.
+     *
+     * @param symbols the symbols, of which the first length are used
+     * @param padded  whether to add n-1 boundary symbols at each end, so that every symbol is in n n-grams
+     * @param bits    the bit width of a symbol, at most 63 / n
+     * @param target  the array to write the n-grams to, which needs room for {@link #count(int, int, boolean)} values
+     * @return the number of n-grams written
+     */
+    public static int extract(int[] symbols, int length, int n, boolean padded, int bits, long[] target, int offset) {
+        checkWidth(n, bits);
+        int count = count(length, n, padded);
+        int shift = padded ? n - 1 : 0; //position of the first symbol in the padded sequence
+        long limit = 1L << bits;
+        long mask = (1L << (bits * (n - 1))) - 1; //keeps the last n-1 symbols
+        long gram = 0;
+        int invalidUntil = -1; //the last padded position that is covered by an invalid symbol
+        for (int p = 0; p < count + n - 1; p++) {
+            int i = p - shift;
+            long value = i >= 0 && i < length ? symbols[i] + 1L : 0;
+            if (value >= limit || value < 0) {
+                value = 0;
+                invalidUntil = p + n - 1;
+            }
+            gram = ((gram & mask) << bits) | value;
+            if (p >= n - 1) {
+                target[offset + p - n + 1] = p <= invalidUntil ? -1 : gram;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the packed n-grams of a symbol sequence
+     */
+    public static long[] ngrams(int[] symbols, int n, boolean padded, int bits) {
+        long[] grams = new long[count(symbols.length, n, padded)];
+        extract(symbols, symbols.length, n, padded, bits, grams, 0);
+        return grams;
+    }
+
+    /**
+     * @return the packed n-grams of the code points of a string, with n at most 3
+     */
+    public static long[] codePointNGrams(CharSequence s, int n, boolean padded) {
+        return ngrams(codePoints(s), n, padded, CODE_POINT_BITS);
+    }
+
+    /**
+     * @return the code points of a string; a plain loop, which is much cheaper than {@link String#codePoints()} for short strings
+     */
+    public static int[] codePoints(CharSequence s) {
+        int[] codePoints = new int[s.length()];
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                codePoints[count++] = Character.toCodePoint(c, s.charAt(++i));
+            } else {
+                codePoints[count++] = c;
+            }
+        }
+        return count == codePoints.length ? codePoints : Arrays.copyOf(codePoints, count);
+    }
+
+    /**
+     * Packs the pairs of symbols with one symbol between them, the integer counterpart of
+     * {@link StringUtils#getExtendedBigramList(String)}.
+     *
+     * @return the number of pairs written, max(0, length - 2)
+     */
+    public static int extractGappedBigrams(int[] symbols, int length, int bits, long[] target, int offset) {
+        checkWidth(2, bits);
+        long limit = 1L << bits;
+        for (int i = 0; i + 2 < length; i++) {
+            long first = symbols[i] + 1L;
+            long second = symbols[i + 2] + 1L;
+            target[offset + i] = first >= limit || second >= limit ? -1 : first << bits | second;
+        }
+        return Math.max(0, length - 2);
+    }
+
+    /**
+     * Sorts n-grams and removes duplicates and invalid (-1) values, in place.
+     *
+     * @return the number of distinct n-grams, which are at the start of the array
+     */
+    public static int distinct(long[] grams, int length) {
+        Arrays.sort(grams, 0, length);
+        int distinct = 0;
+        for (int i = 0; i < length; i++) {
+            if (grams[i] >= 0 && (distinct == 0 || grams[distinct - 1] != grams[i])) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * @return the symbols of a packed n-gram, {@link #BOUNDARY} for padding
+     */
+    public static int[] unpack(long gram, int n, int bits) {
+        int[] symbols = new int[n];
+        long mask = (1L << bits) - 1;
+        for (int i = n - 1; i >= 0; i--) {
+            symbols[i] = (int) (gram & mask) - 1;
+            gram >>>= bits;
+        }
+        return symbols;
+    }
+
+    /**
+     * @param names the name of each symbol, e.g. {@link SegmentAlphabet#symbol(int)} or {@link Character#toString(int)}
+     * @return the n-gram as a string, with "#" for the boundary and the symbols separated by spaces
+     */
+    public static String toString(long gram, int n, int bits, IntFunction<String> names) {
+        StringBuilder builder = new StringBuilder();
+        for (int symbol : unpack(gram, n, bits)) {
+            if (builder.length() > 0) builder.append(' ');
+            builder.append(symbol == BOUNDARY ? "#" : names.apply(symbol));
+        }
+        return builder.toString();
+    }
+
+    private static void checkWidth(int n, int bits) {
+        if (n < 1 || bits < 1 || n * bits > 63) {
+            throw new IllegalArgumentException(n + "-grams of " + bits + "-bit symbols do not fit into a long");
+        }
+    }
+}
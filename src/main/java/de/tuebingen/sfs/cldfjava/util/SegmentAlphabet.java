@@ -0,0 +1,91 @@
+package de.tuebingen.sfs.cldfjava.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe alphabet of segments (sound symbols) that gives each distinct segment a small integer code,
+ * in the order the segments are first seen. Unlike a {@link StringDictionary}, an alphabet never saturates:
+ * segment inventories are small, and every segment needs a code so that forms can be stored and compared as code sequences.
+ * Codes are only meaningful together with their alphabet; databases that share an alphabet (see
+ * {@link StringDictionaries#getSegmentAlphabet()}) have comparable codes.
+ */
+public class SegmentAlphabet {
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] symbols = new String[64]; //by code, appended under the lock
+    private volatile int size = 0;
+
+    /**
+     * @return the code of a segment, which is assigned on first use
+     */
+    public int code(String segment) {
+        Integer code = codes.get(segment);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(segment);
+            if (code != null) {
+                return code;
+            }
+            if (size == symbols.length) {
+                symbols = Arrays.copyOf(symbols, size * 2);
+            }
+            int next = size;
+            symbols[next] = segment;
+            size = next + 1; //published before the code, so that readers of the code can look up its symbol
+            codes.put(segment, next);
+            return next;
+        }
+    }
+
+    /**
+     * @return the code of a segment, or -1 if it has none
+     */
+    public int codeOf(String segment) {
+        Integer code = codes.get(segment);
+        return code == null ? -1 : code;
+    }
+
+    public String symbol(int code) {
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("no segment with code " + code);
+        }
+        return symbols[code];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the segments by code
+     */
+    public String[] getSymbols() {
+        return Arrays.copyOf(symbols, size);
+    }
+
+    /**
+     * @return the codes of the segments, assigning codes to new ones
+     */
+    public int[] encode(String[] segments) {
+        int[] encoded = new int[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            encoded[i] = code(segments[i]);
+        }
+        return encoded;
+    }
+
+    public String[] decode(int[] codes) {
+        String[] decoded = new String[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            decoded[i] = symbol(codes[i]);
+        }
+        return decoded;
+    }
+
+    @Override
+    public String toString() {
+        return size + " segments";
+    }
+}
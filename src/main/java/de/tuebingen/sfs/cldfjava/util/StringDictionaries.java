@@ -0,0 +1,61 @@
+package de.tuebingen.sfs.cldfjava.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The column dictionaries used by an import, keyed by table and column name.
+ * One instance can be shared by several imports, so that datasets with the same columns share their values.
+ */
+public class StringDictionaries {
+    private final Map<String, StringDictionary> dictionaries = new ConcurrentHashMap<>();
+    private final SegmentAlphabet segmentAlphabet = new SegmentAlphabet();
+
+    /**
+     * @return the dictionary for a column, which is created on first use
+     */
+    public StringDictionary get(String table, String column) {
+        return dictionaries.computeIfAbsent(table + "/" + column, name -> new StringDictionary());
+    }
+
+    /**
+     * @return the alphabet that the segments of the databases loaded with these dictionaries are coded in
+     */
+    public SegmentAlphabet getSegmentAlphabet() {
+        return segmentAlphabet;
+    }
+
+    /**
+     * @return the dictionaries by "table/column" name
+     */
+    public Map<String, StringDictionary> getDictionaries() {
+        return new TreeMap<>(dictionaries);
+    }
+
+    /**
+     * @return the estimated number of heap bytes saved by deduplication over all columns
+     */
+    public long getSavedBytes() {
+        long saved = 0;
+        for (StringDictionary dictionary : dictionaries.values()) {
+            saved += dictionary.getSavedBytes();
+        }
+        return saved;
+    }
+
+    /**
+     * @return a report of the dictionary of each column that was used and the memory it saved
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, StringDictionary> entry : getDictionaries().entrySet()) {
+            if (entry.getValue().getLookups() == 0) {
+                continue; //columns that are parsed rather than stored as strings
+            }
+            report.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        report.append("total: ").append(getSavedBytes()).append(" bytes saved");
+        return report.toString();
+    }
+}
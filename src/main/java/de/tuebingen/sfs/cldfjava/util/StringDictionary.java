@@ -0,0 +1,182 @@
+package de.tuebingen.sfs.cldfjava.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A thread-safe dictionary for the values of one column. Each distinct value gets a dense integer code and one
+ * canonical string instance, so that repeated values share memory. Columns with many distinct values (IDs, forms)
+ * gain nothing from this, so the dictionary saturates once it has seen mostly new values or reached its
+ * maximum size; from then on, unknown values are passed through unchanged and get no code.
+ */
+public class StringDictionary {
+    /**
+     * A dictionary that does not store anything, for imports without deduplication.
+     */
+    public static final StringDictionary NONE = new StringDictionary(0);
+
+    public static final int DEFAULT_MAX_SIZE = 1 << 16;
+    private static final int SATURATION_SAMPLE = 4096; //lookups before the share of distinct values is checked
+
+    private final int maxSize;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16]; //by code, appended under the lock
+    private int size = 0;
+    private volatile boolean saturated;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    private static final class Entry {
+        final String value;
+        final int code;
+        volatile Object derived;
+
+        Entry(String value, int code) {
+            this.value = value;
+            this.code = code;
+        }
+    }
+
+    public StringDictionary() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of distinct values
+     */
+    public StringDictionary(int maxSize) {
+        this.maxSize = maxSize;
+        this.saturated = maxSize == 0;
+    }
+
+    /**
+     * @return the canonical instance of the value, or the value itself if it is not in the dictionary
+     */
+    public String intern(String value) {
+        Entry entry = lookup(value);
+        return entry == null ? value : entry.value;
+    }
+
+    /**
+     * @return the code of the value, which is added to the dictionary if it is not saturated; -1 otherwise
+     */
+    public int encode(String value) {
+        Entry entry = lookup(value);
+        return entry == null ? -1 : entry.code;
+    }
+
+    /**
+     * @return the value with the given code
+     */
+    public String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * Caches an immutable object derived from a value, e.g. a split list, so that rows with the same value share it.
+     *
+     * @param value     the value
+     * @param converter creates the derived object; the result must not be modified by callers
+     * @return the shared derived object, or a new one if the value is not in the dictionary
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V derive(String value, Function<String, V> converter) {
+        Entry entry = lookup(value);
+        if (entry == null) {
+            return converter.apply(value);
+        }
+        Object derived = entry.derived;
+        if (derived == null) {
+            //concurrent conversions of the same value are harmless, one of the equal results wins
+            derived = converter.apply(entry.value);
+            entry.derived = derived;
+        }
+        return (V) derived;
+    }
+
+    private Entry lookup(String value) {
+        if (value == null || saturated && entries.isEmpty()) {
+            return null;
+        }
+        lookups.increment();
+        Entry entry = entries.get(value);
+        if (entry != null) {
+            hits.increment();
+            savedBytes.add(estimateSize(value));
+            return entry;
+        }
+        if (saturated) {
+            return null;
+        }
+        synchronized (this) {
+            entry = entries.get(value);
+            if (entry != null) {
+                return entry;
+            }
+            long lookupCount = lookups.sum();
+            if (size >= maxSize || (lookupCount >= SATURATION_SAMPLE && size * 2L > lookupCount)) {
+                saturated = true;
+                return null;
+            }
+            String[] values = this.values;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            this.values = values;
+            entry = new Entry(value, size++);
+            entries.put(value, entry);
+            return entry;
+        }
+    }
+
+    /**
+     * @return the number of distinct values in the dictionary
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return whether the dictionary has stopped accepting new values
+     */
+    public boolean isSaturated() {
+        return saturated;
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the estimated number of heap bytes saved by returning canonical instances instead of copies
+     */
+    public long getSavedBytes() {
+        return savedBytes.sum();
+    }
+
+    /**
+     * Estimates the heap size of a string with compressed object pointers: the String object plus its byte array,
+     * with one byte per char for Latin-1 strings and two otherwise.
+     */
+    public static long estimateSize(String value) {
+        boolean latin1 = true;
+        for (int i = 0; i < value.length() && latin1; i++) {
+            latin1 = value.charAt(i) < 256;
+        }
+        long arrayBytes = 16 + (long) value.length() * (latin1 ? 1 : 2);
+        return 24 + ((arrayBytes + 7) & ~7L);
+    }
+
+    public String toString() {
+        return size() + " values" + (saturated ? " (saturated)" : "") + ", " + getHits() + "/" + getLookups() + " hits, "
+                + getSavedBytes() + " bytes saved";
+    }
+}